@@ -0,0 +1,161 @@
+package com.appiancorp.solutionsconsulting.plugin.delimfiletools.benchmarks;
+
+import com.appiancorp.suiteapi.content.ContentService;
+import com.appiancorp.suiteapi.type.Datatype;
+import com.appiancorp.suiteapi.type.NamedTypedValue;
+import com.appiancorp.suiteapi.type.TypeService;
+import com.appiancorp.type.AppianTypeLong;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * In-memory stand-ins for the services Appian injects, so the helpers can be benchmarked without a running Appian.
+ * Only the methods the plugin calls are implemented; anything else throws UnsupportedOperationException.
+ */
+public class FakeAppianServices {
+
+    private static final Map<Long, Datatype> TYPES = new HashMap<>();
+
+    static {
+        addScalar(AppianTypeLong.STRING, AppianTypeLong.LIST_OF_STRING);
+        addScalar(AppianTypeLong.INTEGER, AppianTypeLong.LIST_OF_INTEGER);
+        addScalar(AppianTypeLong.DOUBLE, AppianTypeLong.LIST_OF_DOUBLE);
+        addScalar(AppianTypeLong.BOOLEAN, AppianTypeLong.LIST_OF_BOOLEAN);
+        addScalar(AppianTypeLong.DATE, AppianTypeLong.LIST_OF_DATE);
+        addScalar(AppianTypeLong.TIMESTAMP, AppianTypeLong.LIST_OF_TIMESTAMP);
+        addScalar(AppianTypeLong.DICTIONARY, AppianTypeLong.LIST_OF_DICTIONARY);
+        addScalar(AppianTypeLong.VARIANT, AppianTypeLong.LIST_OF_VARIANT);
+    }
+
+    private static void addScalar(Long type, Long listType) {
+        TYPES.put(type, new FakeDatatype(type, listType, null));
+        TYPES.put(listType, new FakeDatatype(listType, null, type));
+    }
+
+
+    /**
+     * A TypeService that knows the system types the plugin builds its results from
+     */
+    public static TypeService typeService() {
+        return (TypeService) Proxy.newProxyInstance(TypeService.class.getClassLoader(), new Class[]{TypeService.class}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getType":
+                    Datatype datatype = TYPES.get((Long) args[0]);
+                    if (datatype == null) throw new IllegalArgumentException("Unknown type " + args[0]);
+                    return datatype;
+                case "getDatatypeProperties":
+                    return null;
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "equals":
+                    return proxy == args[0];
+                case "toString":
+                    return "FakeTypeService";
+                default:
+                    throw new UnsupportedOperationException("FakeTypeService." + method.getName());
+            }
+        });
+    }
+
+
+    /**
+     * A ContentService whose documents are plain files on disk; created documents are new temporary files
+     */
+    public static class Documents {
+        private final Map<Long, File> files = new ConcurrentHashMap<>();
+        private final AtomicLong nextId = new AtomicLong(1000);
+
+        public Long add(File file) {
+            Long id = nextId.incrementAndGet();
+            files.put(id, file);
+            return id;
+        }
+
+        public ContentService contentService() {
+            return (ContentService) Proxy.newProxyInstance(ContentService.class.getClassLoader(), new Class[]{ContentService.class}, (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "getDocumentInputStream":
+                        return new FileInputStream(getFile((Long) args[0]));
+                    case "getInternalFilename":
+                        return getFile((Long) args[0]).getAbsolutePath();
+                    case "create":
+                        File created = File.createTempFile("fake-document", ".bin");
+                        created.deleteOnExit();
+                        return add(created);
+                    case "setSizeOfDocumentVersion":
+                        getFile((Long) args[0]);
+                        return null;
+                    case "delete":
+                        File deleted = files.remove((Long) args[0]);
+                        if (deleted == null) throw new IllegalArgumentException("Unknown document " + args[0]);
+                        deleted.delete();
+                        return null;
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    case "equals":
+                        return proxy == args[0];
+                    case "toString":
+                        return "FakeContentService";
+                    default:
+                        throw new UnsupportedOperationException("FakeContentService." + method.getName());
+                }
+            });
+        }
+
+        private File getFile(Long id) {
+            File file = files.get(id);
+            if (file == null) throw new IllegalArgumentException("Unknown document " + id);
+            return file;
+        }
+    }
+
+
+    private static class FakeDatatype extends Datatype {
+        private final Long id;
+        private final Long list;
+        private final Long typeof;
+
+        FakeDatatype(Long id, Long list, Long typeof) {
+            this.id = id;
+            this.list = list;
+            this.typeof = typeof;
+        }
+
+        @Override
+        public Long getId() {
+            return id;
+        }
+
+        @Override
+        public Long getList() {
+            return list;
+        }
+
+        @Override
+        public Long getTypeof() {
+            return typeof;
+        }
+
+        @Override
+        public boolean isListType() {
+            return typeof != null;
+        }
+
+        @Override
+        public boolean isRecordType() {
+            return false;
+        }
+
+        @Override
+        public NamedTypedValue[] getInstanceProperties() {
+            return new NamedTypedValue[0];
+        }
+    }
+}
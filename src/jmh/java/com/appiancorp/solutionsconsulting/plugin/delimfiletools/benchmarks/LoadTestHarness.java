@@ -0,0 +1,324 @@
+package com.appiancorp.solutionsconsulting.plugin.delimfiletools.benchmarks;
+
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.expressions.ParseDelimFile;
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.expressions.ParseRfc4180File;
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.expressions.ReadLinesFromTextFile;
+import com.appiancorp.suiteapi.common.paging.PagingInfo;
+import com.appiancorp.suiteapi.content.ContentService;
+import com.appiancorp.suiteapi.type.TypeService;
+import com.appiancorp.suiteapi.type.TypedValue;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * Drives the parse and read functions from many threads at once, the way a busy interface does when many users open
+ * the same file-backed grid, and reports throughput, latency percentiles, allocation rate and peak heap.
+ * <p>
+ * Options (all optional):
+ * <pre>
+ *   --threads 200                                        concurrent callers
+ *   --warmup 10 --duration 60                            seconds
+ *   --docs small=1000x10:70,medium=50000x20:25,large=500000x30:5
+ *                                                        documents as name=rows x columns:weight
+ *   --ops parseDelimFile:50,parseRfc4180File:30,readLinesFromTextFile:20
+ *                                                        functions to call, with weights
+ *   --pages 1                                            each call reads a random page from the first N
+ *   --batchSize 50                                       rows per page
+ *   --sequential false                                   if true, each thread pages forward in order instead of at random
+ *   --prefetch false                                     passes prefetchNextPage to the parse functions
+ *   --cache false                                        passes cacheResult to the parse functions
+ * </pre>
+ * e.g. gradlew loadTest -PloadTestArgs="--threads 200 --docs grid=20000x15:1 --ops parseDelimFile:1"
+ */
+public class LoadTestHarness {
+
+    private enum Op {parseDelimFile, parseRfc4180File, readLinesFromTextFile}
+
+    private static class Doc {
+        final String name;
+        final int rows;
+        final Long id;
+
+        Doc(String name, int rows, Long id) {
+            this.name = name;
+            this.rows = rows;
+            this.id = id;
+        }
+    }
+
+    private final TypeService typeService = FakeAppianServices.typeService();
+    private final FakeAppianServices.Documents documents = new FakeAppianServices.Documents();
+    private final ContentService contentService = documents.contentService();
+
+    private final ParseDelimFile parseDelimFile = new ParseDelimFile();
+    private final ParseRfc4180File parseRfc4180File = new ParseRfc4180File();
+    private final ReadLinesFromTextFile readLinesFromTextFile = new ReadLinesFromTextFile();
+
+    private int threads = 50;
+    private int warmupSeconds = 10;
+    private int durationSeconds = 30;
+    private int pages = 1;
+    private int batchSize = 50;
+    private boolean sequential = false;
+    private boolean prefetch = false;
+    private boolean cache = false;
+    private final ThreadLocal<int[]> nextPage = ThreadLocal.withInitial(() -> new int[1]);
+    private final List<Doc> docs = new ArrayList<>();
+    private int[] docWeights;
+    private final List<Op> ops = new ArrayList<>();
+    private int[] opWeights;
+
+    private final AtomicLong errors = new AtomicLong();
+
+
+    public static void main(String[] args) throws Exception {
+        LoadTestHarness harness = new LoadTestHarness();
+        harness.configure(args);
+        harness.run();
+    }
+
+
+    private void configure(String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<>();
+        options.put("--docs", "small=1000x10:70,medium=50000x20:25,large=500000x30:5");
+        options.put("--ops", "parseDelimFile:50,parseRfc4180File:30,readLinesFromTextFile:20");
+        for (int i = 0; i + 1 < args.length; i += 2)
+            options.put(args[i], args[i + 1]);
+
+        if (options.containsKey("--threads")) threads = Integer.parseInt(options.get("--threads"));
+        if (options.containsKey("--warmup")) warmupSeconds = Integer.parseInt(options.get("--warmup"));
+        if (options.containsKey("--duration")) durationSeconds = Integer.parseInt(options.get("--duration"));
+        if (options.containsKey("--pages")) pages = Integer.parseInt(options.get("--pages"));
+        if (options.containsKey("--batchSize")) batchSize = Integer.parseInt(options.get("--batchSize"));
+        if (options.containsKey("--sequential")) sequential = Boolean.parseBoolean(options.get("--sequential"));
+        if (options.containsKey("--prefetch")) prefetch = Boolean.parseBoolean(options.get("--prefetch"));
+        if (options.containsKey("--cache")) cache = Boolean.parseBoolean(options.get("--cache"));
+
+        String[] docSpecs = options.get("--docs").split(",");
+        docWeights = new int[docSpecs.length];
+        for (int i = 0; i < docSpecs.length; i++) {
+            String[] nameAndRest = docSpecs[i].split("=");
+            String[] sizeAndWeight = nameAndRest[1].split(":");
+            String[] rowsAndColumns = sizeAndWeight[0].split("x");
+            int rows = Integer.parseInt(rowsAndColumns[0]);
+            int columns = Integer.parseInt(rowsAndColumns[1]);
+
+            File file = SyntheticFiles.csv(rows, columns, 0.1, "\n");
+            docs.add(new Doc(nameAndRest[0], rows, documents.add(file)));
+            docWeights[i] = Integer.parseInt(sizeAndWeight[1]);
+            System.out.printf("Document %s: %,d rows x %d columns, %,d bytes%n", nameAndRest[0], rows, columns, file.length());
+        }
+
+        String[] opSpecs = options.get("--ops").split(",");
+        opWeights = new int[opSpecs.length];
+        for (int i = 0; i < opSpecs.length; i++) {
+            String[] opAndWeight = opSpecs[i].split(":");
+            ops.add(Op.valueOf(opAndWeight[0]));
+            opWeights[i] = Integer.parseInt(opAndWeight[1]);
+        }
+    }
+
+
+    private void run() throws InterruptedException {
+        System.out.printf("Warming up for %ds with %d threads...%n", warmupSeconds, threads);
+        drive(warmupSeconds);
+
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+            pool.resetPeakUsage();
+
+        System.out.printf("Measuring for %ds...%n", durationSeconds);
+        errors.set(0);
+        Result result = drive(durationSeconds);
+        result.print();
+    }
+
+
+    private Result drive(int seconds) throws InterruptedException {
+        final long endNanos = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        final LatencyRecorder[] recorders = new LatencyRecorder[threads];
+        final long[] allocatedBytes = new long[threads];
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(threads);
+
+        for (int t = 0; t < threads; t++) {
+            final int index = t;
+            recorders[t] = new LatencyRecorder();
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                    long allocatedBefore = threadAllocatedBytes();
+                    while (System.nanoTime() < endNanos) {
+                        long callStart = System.nanoTime();
+                        call();
+                        recorders[index].record(System.nanoTime() - callStart);
+                    }
+                    allocatedBytes[index] = threadAllocatedBytes() - allocatedBefore;
+                } catch (InterruptedException ignored) {
+                } finally {
+                    done.countDown();
+                }
+            }, "load-" + t);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        long startNanos = System.nanoTime();
+        start.countDown();
+        done.await();
+        long elapsedNanos = System.nanoTime() - startNanos;
+
+        return new Result(recorders, allocatedBytes, elapsedNanos);
+    }
+
+
+    private void call() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Doc doc = docs.get(pick(docWeights, random));
+        Op op = ops.get(pick(opWeights, random));
+
+        int maxPage = Math.max(1, Math.min(pages, doc.rows / batchSize));
+        int page;
+        if (sequential) {
+            int[] counter = nextPage.get();
+            page = counter[0]++ % maxPage;
+        } else {
+            page = random.nextInt(maxPage);
+        }
+        int startIndex = page * batchSize + 1;
+        PagingInfo pagingInfo = new PagingInfo(startIndex, batchSize);
+
+        try {
+            TypedValue result = null;
+            switch (op) {
+                case parseDelimFile:
+                    result = parseDelimFile.parseDelimFile(typeService, contentService, doc.id, ",", true, "\\", "\"",
+                            false, false, false, false, pagingInfo, null, null, prefetch, cache);
+                    break;
+                case parseRfc4180File:
+                    result = parseRfc4180File.parseRfc4180File(typeService, contentService, doc.id, true, false, pagingInfo, null, null, prefetch, cache);
+                    break;
+                case readLinesFromTextFile:
+                    result = readLinesFromTextFile.readLinesFromTextFile(typeService, contentService, doc.id, startIndex, batchSize);
+                    break;
+            }
+            if (!succeeded(result)) errors.incrementAndGet();
+        } catch (RuntimeException e) {
+            errors.incrementAndGet();
+        }
+    }
+
+
+    /**
+     * The functions report most failures in the dictionary they return, with success set to false, rather than
+     * by throwing
+     */
+    private static boolean succeeded(TypedValue result) {
+        if (result == null || !(result.getValue() instanceof Map)) return false;
+        for (Map.Entry<?, ?> entry : ((Map<?, ?>) result.getValue()).entrySet()) {
+            Object key = entry.getKey() instanceof TypedValue ? ((TypedValue) entry.getKey()).getValue() : entry.getKey();
+            if (!"success".equals(key)) continue;
+            Object value = entry.getValue() instanceof TypedValue ? ((TypedValue) entry.getValue()).getValue() : entry.getValue();
+            return Boolean.TRUE.equals(value) || Long.valueOf(1).equals(value);
+        }
+        return true;
+    }
+
+
+    private static int pick(int[] weights, ThreadLocalRandom random) {
+        int total = 0;
+        for (int weight : weights) total += weight;
+        int r = random.nextInt(total);
+        for (int i = 0; i < weights.length; i++) {
+            r -= weights[i];
+            if (r < 0) return i;
+        }
+        return weights.length - 1;
+    }
+
+
+    private static long threadAllocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean)
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        return 0;
+    }
+
+
+    private static long peakHeapBytes() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.getPeakUsage() != null)
+                peak += pool.getPeakUsage().getUsed();
+        }
+        return peak;
+    }
+
+
+    /**
+     * Collects one thread's call latencies without boxing
+     */
+    private static class LatencyRecorder {
+        private long[] nanos = new long[1024];
+        private int size = 0;
+
+        void record(long latency) {
+            if (size == nanos.length) nanos = Arrays.copyOf(nanos, size * 2);
+            nanos[size++] = latency;
+        }
+    }
+
+
+    private class Result {
+        private final long[] latencies;
+        private final long allocatedBytes;
+        private final long elapsedNanos;
+
+        Result(LatencyRecorder[] recorders, long[] allocatedBytes, long elapsedNanos) {
+            int total = 0;
+            for (LatencyRecorder recorder : recorders) total += recorder.size;
+            latencies = new long[total];
+            int offset = 0;
+            for (LatencyRecorder recorder : recorders) {
+                System.arraycopy(recorder.nanos, 0, latencies, offset, recorder.size);
+                offset += recorder.size;
+            }
+            Arrays.sort(latencies);
+
+            long allocated = 0;
+            for (long bytes : allocatedBytes) allocated += bytes;
+            this.allocatedBytes = allocated;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        private double percentileMillis(double percentile) {
+            if (latencies.length == 0) return 0;
+            int index = (int) Math.min(latencies.length - 1, Math.ceil(percentile / 100.0 * latencies.length) - 1);
+            return latencies[Math.max(0, index)] / 1e6;
+        }
+
+        void print() {
+            double seconds = elapsedNanos / 1e9;
+            System.out.printf("Calls:           %,d (%,d errors)%n", latencies.length, errors.get());
+            System.out.printf("Throughput:      %,.1f calls/s%n", latencies.length / seconds);
+            System.out.printf("Latency p50:     %,.2f ms%n", percentileMillis(50));
+            System.out.printf("Latency p99:     %,.2f ms%n", percentileMillis(99));
+            System.out.printf("Latency p999:    %,.2f ms%n", percentileMillis(99.9));
+            System.out.printf("Latency max:     %,.2f ms%n", latencies.length == 0 ? 0 : latencies[latencies.length - 1] / 1e6);
+            System.out.printf("Allocation rate: %,.1f MB/s%n", allocatedBytes / seconds / (1024 * 1024));
+            System.out.printf("Peak heap used:  %,.1f MB%n", peakHeapBytes() / (1024.0 * 1024));
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.appiancorp.solutionsconsulting.plugin.delimfiletools.benchmarks;
+
+import com.appiancorp.ps.plugins.typetransformer.AppianTypeFactory;
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers.ByteBudget;
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers.ParseHelper;
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers.ProfileHelper;
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers.SearchHelper;
+import com.appiancorp.suiteapi.common.paging.PagingInfo;
+import com.appiancorp.suiteapi.content.ContentService;
+import com.appiancorp.suiteapi.type.TypedValue;
+import com.opencsv.CSVParserBuilder;
+import com.opencsv.ICSVParser;
+import com.opencsv.RFC4180ParserBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Benchmarks the read paths of ParseHelper against synthetic documents
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParseBenchmark {
+
+    @Param({"10000", "100000"})
+    public int rows;
+
+    @Param({"5", "50"})
+    public int columns;
+
+    @Param({"0.0", "0.3"})
+    public double quoteDensity;
+
+    @Param({"LF", "CRLF"})
+    public String lineEnding;
+
+    private File file;
+    private Long document;
+    private ContentService contentService;
+    private AppianTypeFactory typeFactory;
+    private ICSVParser delimParser;
+    private ICSVParser rfc4180Parser;
+    private String lastPageToken;
+
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        file = SyntheticFiles.csv(rows, columns, quoteDensity, "CRLF".equals(lineEnding) ? "\r\n" : "\n");
+
+        FakeAppianServices.Documents documents = new FakeAppianServices.Documents();
+        document = documents.add(file);
+        contentService = documents.contentService();
+        typeFactory = AppianTypeFactory.newInstance(FakeAppianServices.typeService());
+
+        delimParser = new CSVParserBuilder().withSeparator(',').withQuoteChar('"').withEscapeChar('\\').build();
+        rfc4180Parser = new RFC4180ParserBuilder().build();
+
+        // Read everything before the last page once, keeping the token that resumes at it
+        TypedValue leadIn = ParseHelper.parseFile(contentService, typeFactory, delimParser, document, true, false,
+                new PagingInfo(1, rows - 1000), new ByteBudget(Long.MAX_VALUE), null, false, false);
+        for (Map.Entry<?, ?> entry : ((Map<?, ?>) leadIn.getValue()).entrySet()) {
+            if ("continuationToken".equals(((TypedValue) entry.getKey()).getValue()))
+                lastPageToken = (String) ((TypedValue) entry.getValue()).getValue();
+        }
+    }
+
+
+    @Benchmark
+    public TypedValue parseFirstPage() throws Exception {
+        return ParseHelper.parseFile(contentService, typeFactory, delimParser, document, true, false, new PagingInfo(1, 1000), budget(), null, false, false);
+    }
+
+    @Benchmark
+    public TypedValue parseLastPage() throws Exception {
+        return ParseHelper.parseFile(contentService, typeFactory, delimParser, document, true, false, new PagingInfo(rows - 999, 1000), budget(), null, false, false);
+    }
+
+    @Benchmark
+    public TypedValue parseLastPageWithToken() throws Exception {
+        return ParseHelper.parseFile(contentService, typeFactory, delimParser, document, true, false, new PagingInfo(1, 1000), budget(), lastPageToken, false, false);
+    }
+
+    @Benchmark
+    public TypedValue parseFirstPageCached() throws Exception {
+        return ParseHelper.parseFile(contentService, typeFactory, delimParser, document, true, false, new PagingInfo(1, 1000), budget(), null, false, true);
+    }
+
+    @Benchmark
+    public TypedValue parseRfc4180FirstPageWithCount() throws Exception {
+        return ParseHelper.parseFile(contentService, typeFactory, rfc4180Parser, document, true, true, new PagingInfo(1, 1000), budget(), null, false, false);
+    }
+
+    private static ByteBudget budget() {
+        return new ByteBudget(ByteBudget.getGlobalLimit());
+    }
+
+    @Benchmark
+    public int countLines() {
+        return ParseHelper.countLinesInFile(file);
+    }
+
+    @Benchmark
+    public TypedValue readFirstLines() {
+        return ParseHelper.readLinesInFile(typeFactory, file.getAbsolutePath(), 1, 1000);
+    }
+
+    @Benchmark
+    public TypedValue readLastLines() {
+        return ParseHelper.readLinesInFile(typeFactory, file.getAbsolutePath(), rows - 998, 1000);
+    }
+
+    @Benchmark
+    public TypedValue grepLiteral() {
+        return SearchHelper.grepFile(typeFactory, file, "no such text", false, false, 100, null);
+    }
+
+    @Benchmark
+    public TypedValue grepRegex() {
+        return SearchHelper.grepFile(typeFactory, file, "no such \\d+", true, false, 100, null);
+    }
+
+    @Benchmark
+    public TypedValue readTailLines() {
+        return ParseHelper.readLinesInFile(typeFactory, file.getAbsolutePath(), -1000, -1);
+    }
+
+    @Benchmark
+    public TypedValue profile() {
+        return ProfileHelper.profileFile(typeFactory, file, delimParser, true, 5);
+    }
+}
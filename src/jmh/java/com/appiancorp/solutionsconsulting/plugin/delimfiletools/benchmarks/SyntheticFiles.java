@@ -0,0 +1,86 @@
+package com.appiancorp.solutionsconsulting.plugin.delimfiletools.benchmarks;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+
+/**
+ * Generates repeatable CSV files for the benchmarks. The same arguments always produce the same file.
+ */
+public class SyntheticFiles {
+
+    private static final String ALPHABET = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789 ";
+
+    /**
+     * Writes an RFC 4180 style CSV file with a header row
+     *
+     * @param rows         Number of data rows (not counting the header)
+     * @param columns      Number of fields per row
+     * @param quoteDensity Fraction (0 to 1) of fields written quoted, containing a separator and an escaped quote
+     * @param lineEnding   "\n" or "\r\n"
+     * @return A temporary file, deleted on exit
+     * @throws IOException If the file could not be written
+     */
+    public static File csv(int rows, int columns, double quoteDensity, String lineEnding) throws IOException {
+        File file = File.createTempFile("synthetic-" + rows + "x" + columns + "-", ".csv");
+        file.deleteOnExit();
+
+        Random random = new Random(rows * 31L + columns);
+        try (Writer writer = new BufferedWriter(new FileWriter(file), 1 << 16)) {
+            for (int c = 0; c < columns; c++) {
+                if (c > 0) writer.write(',');
+                writer.write("column_" + (c + 1));
+            }
+            writer.write(lineEnding);
+
+            for (int r = 0; r < rows; r++) {
+                for (int c = 0; c < columns; c++) {
+                    if (c > 0) writer.write(',');
+                    String field = text(random, 4 + random.nextInt(13));
+                    if (random.nextDouble() < quoteDensity)
+                        writer.write("\"" + field + ", \"\"quoted\"\"\"");
+                    else
+                        writer.write(field);
+                }
+                writer.write(lineEnding);
+            }
+        }
+        return file;
+    }
+
+
+    /**
+     * @param rows    Number of rows
+     * @param columns Number of fields per row
+     * @return Rows of random text, for the write benchmarks
+     */
+    public static List<String[]> rows(int rows, int columns) {
+        return rows(new Random(rows * 17L + columns), rows, columns);
+    }
+
+
+    private static List<String[]> rows(Random random, int rows, int columns) {
+        List<String[]> data = new ArrayList<>(rows);
+        for (int r = 0; r < rows; r++) {
+            String[] row = new String[columns];
+            for (int c = 0; c < columns; c++)
+                row[c] = text(random, 4 + random.nextInt(13));
+            data.add(row);
+        }
+        return data;
+    }
+
+
+    private static String text(Random random, int length) {
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++)
+            chars[i] = ALPHABET.charAt(random.nextInt(ALPHABET.length()));
+        return new String(chars);
+    }
+}
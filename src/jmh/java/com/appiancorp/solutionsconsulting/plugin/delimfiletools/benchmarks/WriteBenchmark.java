@@ -0,0 +1,78 @@
+package com.appiancorp.solutionsconsulting.plugin.delimfiletools.benchmarks;
+
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers.WriteHelper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.Writer;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Benchmarks WriteHelper.writeDelimFileToWriter, writing to a Writer that discards its output
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WriteBenchmark {
+
+    @Param({"10000", "100000"})
+    public int rows;
+
+    @Param({"5", "50"})
+    public int columns;
+
+    @Param({"false", "true"})
+    public boolean applyQuotesToAll;
+
+    @Param({"LF", "CRLF"})
+    public String lineEnding;
+
+    private String[] header;
+    private List<String[]> data;
+
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        data = SyntheticFiles.rows(rows, columns);
+        header = new String[columns];
+        for (int c = 0; c < columns; c++)
+            header[c] = "column " + (c + 1);
+    }
+
+
+    @Benchmark
+    public void writeDelimFileToWriter() throws Exception {
+        WriteHelper.writeDelimFileToWriter(new NullWriter(), header, data, ',', '"', applyQuotesToAll, '"',
+                "CRLF".equals(lineEnding) ? "\r\n" : "\n");
+    }
+
+
+    private static class NullWriter extends Writer {
+        @Override
+        public void write(char[] cbuf, int off, int len) {
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.appiancorp.solutionsconsulting.plugin.delimfiletools.exceptions;
+
+public class AdmissionRejectedException extends Exception {
+
+    private String errorCode = "AdmissionRejected";
+
+    public AdmissionRejectedException(String message, String errorCode) {
+        super(message);
+        this.errorCode = errorCode;
+    }
+
+    public AdmissionRejectedException(String message) {
+        super(message);
+    }
+
+    public String getErrorCode() {
+        return this.errorCode;
+    }
+}
@@ -0,0 +1,21 @@
+package com.appiancorp.solutionsconsulting.plugin.delimfiletools.exceptions;
+
+public class InvalidContinuationTokenException extends Exception {
+
+    private String errorCode = "InvalidContinuationToken";
+
+    public InvalidContinuationTokenException(String message, String errorCode) {
+        super(message);
+        this.errorCode = errorCode;
+    }
+
+    public InvalidContinuationTokenException(String message) {
+        super(message);
+    }
+
+    public String getErrorCode() {
+        return this.errorCode;
+    }
+
+
+}
@@ -1,5 +1,6 @@
 package com.appiancorp.solutionsconsulting.plugin.delimfiletools.expressions;
 
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers.DocumentVersion;
 import com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers.ParseHelper;
 import com.appiancorp.suiteapi.content.ContentService;
 import com.appiancorp.suiteapi.content.exceptions.InvalidContentException;
@@ -26,14 +27,15 @@ public class CountLinesInTextFile {
             ContentService contentService,
             @Parameter @DocumentDataType Long textFile) {
 
-//        String filePath;
-//        try {
-//            filePath = contentService.getInternalFilename(textFile);
-//        } catch (InvalidContentException e) {
-//            LOG.error("InvalidContentException caught: " + e.getMessage());
-//            return -1;
-//        }
+        // Read the document's own file, whose line index can be carried on when a new version only appends lines
+        DocumentVersion version;
+        try {
+            version = DocumentVersion.resolve(contentService, textFile);
+        } catch (InvalidContentException e) {
+            LOG.error("InvalidContentException caught: " + e.getMessage());
+            return -1;
+        }
 
-        return ParseHelper.countLinesInFile(ParseHelper.getFileFromAppian(contentService, textFile));
+        return ParseHelper.countLinesInVersion(version);
     }
 }
\ No newline at end of file
@@ -0,0 +1,87 @@
+package com.appiancorp.solutionsconsulting.plugin.delimfiletools.expressions;
+
+import com.appiancorp.ps.plugins.typetransformer.AppianList;
+import com.appiancorp.ps.plugins.typetransformer.AppianObject;
+import com.appiancorp.ps.plugins.typetransformer.AppianTypeFactory;
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers.DocumentVersion;
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers.HeaderRecord;
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers.ParseHelper;
+import com.appiancorp.suiteapi.content.ContentService;
+import com.appiancorp.suiteapi.content.exceptions.InvalidContentException;
+import com.appiancorp.suiteapi.expression.annotations.Function;
+import com.appiancorp.suiteapi.expression.annotations.Parameter;
+import com.appiancorp.suiteapi.knowledge.DocumentDataType;
+import com.appiancorp.suiteapi.type.AppianType;
+import com.appiancorp.suiteapi.type.TypeService;
+import com.appiancorp.suiteapi.type.TypedValue;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.core.Logger;
+
+import java.io.IOException;
+
+
+@DelimFileToolsCategory
+public class GetDelimFileHeader {
+    private static final Logger LOG = (Logger) LogManager.getLogger(GetDelimFileHeader.class);
+
+    /**
+     * Reads only the header record of a delimited file, for listing its columns without parsing any rows.
+     *
+     * @param typeService    TypeService injected by Appian
+     * @param contentService ContentService injected by Appian
+     * @param delimitedFile  ID of Appian Document to read
+     * @param separator      The delimiter separating entries; omit to read the file as RFC 4180 CSV
+     * @param quoteChar      The character used for quoted elements; defaults to "
+     * @param escapeChar     The character used for escaping a separator or quote; defaults to \ (ignored for RFC 4180)
+     * @return a Dictionary containing the success value, an error message, names (the header's values as written), fieldNames (the keys parseDelimFile() gives them) and columnCount
+     */
+    @Function
+    public TypedValue getDelimFileHeader(
+            TypeService typeService,
+            ContentService contentService,
+            @Parameter @DocumentDataType Long delimitedFile,
+            @Parameter(required = false) String separator,
+            @Parameter(required = false) String quoteChar,
+            @Parameter(required = false) String escapeChar
+    ) {
+        LOG.debug("Executing getDelimFileHeader - delimitedFile: {}, separator: '{}', quoteChar: '{}', escapeChar: '{}';",
+                delimitedFile, separator, quoteChar, escapeChar);
+
+        AppianTypeFactory typeFactory = AppianTypeFactory.newInstance(typeService);
+
+        // Validate the parameters
+        String errorMessage = ParseHelper.validateParserSettings(separator, quoteChar, escapeChar);
+        if (errorMessage != null && !errorMessage.isEmpty()) {
+            return ParseHelper.getErrorReturnValue(typeFactory, errorMessage);
+        }
+
+        HeaderRecord header;
+        try {
+            DocumentVersion version = DocumentVersion.resolve(contentService, delimitedFile);
+            header = HeaderRecord.read(version, ParseHelper.delimited(ParseHelper.buildParser(separator, quoteChar, escapeChar)));
+        } catch (InvalidContentException e) {
+            errorMessage = "InvalidContentException caught: " + e.getMessage();
+            LOG.error(errorMessage);
+            return ParseHelper.getErrorReturnValue(typeFactory, errorMessage);
+        } catch (IOException e) {
+            errorMessage = "IOException caught: " + e.getMessage();
+            LOG.error(errorMessage);
+            return ParseHelper.getErrorReturnValue(typeFactory, errorMessage);
+        }
+
+        AppianObject dictionary = (AppianObject) typeFactory.createElement(AppianType.DICTIONARY);
+        dictionary.put("success", typeFactory.createBoolean(true));
+        dictionary.put("names", toList(typeFactory, header.getNames()));
+        dictionary.put("fieldNames", toList(typeFactory, header.getFieldNames()));
+        dictionary.put("columnCount", typeFactory.createLong((long) header.getNames().length));
+        return typeFactory.toTypedValue(dictionary);
+    }
+
+
+    private static AppianList toList(AppianTypeFactory typeFactory, String[] values) {
+        AppianList list = typeFactory.createList(AppianType.STRING);
+        for (String value : values)
+            list.add(typeFactory.createString(value));
+        return list;
+    }
+}
@@ -0,0 +1,46 @@
+package com.appiancorp.solutionsconsulting.plugin.delimfiletools.expressions;
+
+import com.appiancorp.ps.plugins.typetransformer.AppianObject;
+import com.appiancorp.ps.plugins.typetransformer.AppianTypeFactory;
+import com.appiancorp.security.auth.SecurityContextProvider;
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers.DelimFileToolsMetrics;
+import com.appiancorp.suiteapi.expression.annotations.Function;
+import com.appiancorp.suiteapi.type.AppianType;
+import com.appiancorp.suiteapi.type.TypeService;
+import com.appiancorp.suiteapi.type.TypedValue;
+
+import java.util.Map;
+
+
+@DelimFileToolsCategory
+public class GetDelimFileToolsMetrics {
+
+    /**
+     * Returns the plugin's counters and per-phase timings, the same values published through JMX. Only available to
+     * system administrators.
+     *
+     * @param typeService             TypeService injected by Appian
+     * @param securityContextProvider SecurityContextProvider injected by Appian, used to check the caller is an administrator
+     * @return A Dictionary containing the success value, an error message, and a Dictionary of metric names to values
+     */
+    @Function
+    public TypedValue getDelimFileToolsMetrics(TypeService typeService, SecurityContextProvider securityContextProvider) {
+        AppianTypeFactory typeFactory = AppianTypeFactory.newInstance(typeService);
+        AppianObject dictionary = (AppianObject) typeFactory.createElement(AppianType.DICTIONARY);
+
+        if (!securityContextProvider.get().isSysAdmin()) {
+            dictionary.put("success", typeFactory.createBoolean(false));
+            dictionary.put("errorMessage", typeFactory.createString("Only system administrators can view the Delimited File Tools metrics."));
+            return typeFactory.toTypedValue(dictionary);
+        }
+
+        AppianObject metrics = (AppianObject) typeFactory.createElement(AppianType.DICTIONARY);
+        for (Map.Entry<String, Long> metric : DelimFileToolsMetrics.getSnapshot().entrySet())
+            metrics.put(metric.getKey(), typeFactory.createLong(metric.getValue()));
+
+        dictionary.put("success", typeFactory.createBoolean(true));
+        dictionary.put("values", metrics);
+
+        return typeFactory.toTypedValue(dictionary);
+    }
+}
@@ -0,0 +1,97 @@
+package com.appiancorp.solutionsconsulting.plugin.delimfiletools.expressions;
+
+import com.appiancorp.ps.plugins.typetransformer.AppianTypeFactory;
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers.ParseHelper;
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers.SearchHelper;
+import com.appiancorp.suiteapi.content.ContentService;
+import com.appiancorp.suiteapi.content.exceptions.InvalidContentException;
+import com.appiancorp.suiteapi.expression.annotations.Function;
+import com.appiancorp.suiteapi.expression.annotations.Parameter;
+import com.appiancorp.suiteapi.knowledge.DocumentDataType;
+import com.appiancorp.suiteapi.type.TypeService;
+import com.appiancorp.suiteapi.type.TypedValue;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.core.Logger;
+
+import java.io.File;
+
+
+@DelimFileToolsCategory
+public class GrepTextFile {
+    private static final Logger LOG = (Logger) LogManager.getLogger(GrepTextFile.class);
+
+    private static final int DEFAULT_MAX_RESULTS = 100;
+
+    /**
+     * Searches a text file for lines containing some text or matching a regular expression, in a single pass that
+     * stops as soon as enough matches have been found.
+     *
+     * @param typeService    TypeService injected by Appian
+     * @param contentService ContentService injected by Appian
+     * @param textFile       ID of Appian Document to search
+     * @param pattern        The text to find, or a regular expression if isRegex is true
+     * @param isRegex        If true, pattern is a regular expression; otherwise it is found literally
+     * @param ignoreCase     If true, matching ignores case (only A-Z for a literal pattern)
+     * @param maxResults     The most matches to return; defaults to 100
+     * @param quoteChar      For delimited files with quoted fields that contain line breaks, the quote character, so that each record is matched as a whole
+     * @return a Dictionary containing the success value, an error message, and an array of Dictionaries of lineNumber and line as the values, plus matchCount, linesScanned and truncated (true if there were more matches than maxResults)
+     */
+    @Function
+    public TypedValue grepTextFile(
+            TypeService typeService,
+            ContentService contentService,
+            @Parameter @DocumentDataType Long textFile,
+            @Parameter String pattern,
+            @Parameter(required = false) Boolean isRegex,
+            @Parameter(required = false) Boolean ignoreCase,
+            @Parameter(required = false) Integer maxResults,
+            @Parameter(required = false) String quoteChar
+    ) {
+        LOG.debug("Executing grepTextFile - textFile: {}, isRegex: {}, ignoreCase: {}, maxResults: {}, quoteChar: '{}';",
+                textFile, isRegex, ignoreCase, maxResults, quoteChar);
+
+        AppianTypeFactory typeFactory = AppianTypeFactory.newInstance(typeService);
+
+        // Validate the parameters
+        String errorMessage = validateParameters(pattern, maxResults, quoteChar);
+        if (errorMessage != null && !errorMessage.isEmpty()) {
+            return ParseHelper.getErrorReturnValue(typeFactory, errorMessage);
+        }
+
+        File file;
+        try {
+            file = new File(contentService.getInternalFilename(textFile));
+        } catch (InvalidContentException e) {
+            errorMessage = "InvalidContentException caught: " + e.getMessage();
+            LOG.error(errorMessage);
+            return ParseHelper.getErrorReturnValue(typeFactory, errorMessage);
+        }
+
+        return SearchHelper.grepFile(typeFactory, file, pattern,
+                Boolean.TRUE.equals(isRegex),
+                Boolean.TRUE.equals(ignoreCase),
+                maxResults == null ? DEFAULT_MAX_RESULTS : maxResults,
+                quoteChar == null || quoteChar.isEmpty() ? null : quoteChar.charAt(0));
+    }
+
+
+    /**
+     * Validates the function arguments
+     *
+     * @return An error message (null means validation passes)
+     */
+    private String validateParameters(String pattern, Integer maxResults, String quoteChar) {
+        if (pattern == null || pattern.isEmpty())
+            return "You must supply a pattern to search for";
+
+        if (maxResults != null && maxResults < 1)
+            return "The maxResults must be greater than or equal to 1";
+
+        if (quoteChar != null && quoteChar.length() > 1)
+            return "You must supply a single character as the quote character";
+        if (quoteChar != null && !quoteChar.isEmpty() && quoteChar.charAt(0) > 127)
+            return "The quote character must be an ASCII character";
+
+        return null;
+    }
+}
@@ -3,6 +3,9 @@ package com.appiancorp.solutionsconsulting.plugin.delimfiletools.expressions;
 
 import com.appiancorp.ps.plugins.typetransformer.AppianObject;
 import com.appiancorp.ps.plugins.typetransformer.AppianTypeFactory;
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.exceptions.InvalidCdtException;
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.exceptions.InvalidDictionaryException;
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers.FormatSpec;
 import com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers.TypeHelper;
 import com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers.WriteHelper;
 import com.appiancorp.suiteapi.common.exceptions.PrivilegeException;
@@ -33,7 +36,8 @@ public class ObjectsToDelimitedText {
                                              @Parameter String quoteChar,
                                              @Parameter Boolean applyQuotesToAll,
                                              @Parameter String escapeChar,
-                                             @Parameter String lineEnd
+                                             @Parameter String lineEnd,
+                                             @Parameter(required = false) TypedValue formatSpec
     ) {
         AppianTypeFactory typeFactory = AppianTypeFactory.newInstance(typeService);
         AppianObject dictionary = (AppianObject) typeFactory.createElement(AppianType.DICTIONARY);
@@ -83,7 +87,18 @@ public class ObjectsToDelimitedText {
         else
             header = null;
 
-        List<String[]> rows = WriteHelper.getValueStringsFromSourceObjects(typeService, sourceObjects);
+        List<String[]> rows;
+        try {
+            rows = WriteHelper.getValueStringsFromSourceObjects(typeService, sourceObjects, FormatSpec.fromTypedValue(typeService, formatSpec));
+        } catch (InvalidDictionaryException e) {
+            dictionary.put("success", typeFactory.createBoolean(false));
+            dictionary.put("errorMessage", typeFactory.createString("Invalid formatSpec: " + e.getLocalizedMessage()));
+            return typeFactory.toTypedValue(dictionary);
+        } catch (InvalidCdtException e) {
+            dictionary.put("success", typeFactory.createBoolean(false));
+            dictionary.put("errorMessage", typeFactory.createString("Invalid sourceObjects: " + e.getLocalizedMessage()));
+            return typeFactory.toTypedValue(dictionary);
+        }
 
         // Get memory writer since we're just returning text
         StringWriter writer = new StringWriter();
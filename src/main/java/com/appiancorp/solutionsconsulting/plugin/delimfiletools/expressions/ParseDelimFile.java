@@ -1,6 +1,7 @@
 package com.appiancorp.solutionsconsulting.plugin.delimfiletools.expressions;
 
 import com.appiancorp.ps.plugins.typetransformer.AppianTypeFactory;
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers.ByteBudget;
 import com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers.ParseHelper;
 import com.appiancorp.suiteapi.common.paging.PagingInfo;
 import com.appiancorp.suiteapi.content.ContentService;
@@ -37,7 +38,11 @@ public class ParseDelimFile {
      * @param ignoreLeadingWhiteSpace If true, white space in front of a quote in a field is ignored
      * @param includeTotalCount       If true, the results will contain 'totalLines' with the number of lines in the Document
      * @param pagingInfo              An a!pagingInfo() instance. Allows for batching of the file. Sorting not yet supported.
-     * @return a Dictionary containing the success value, an error message, and an array of Dictionaries as the values. If a header row is included, value Dictionary key names will be the values of the first row, otherwise they will be the 1-based number of the column.
+     * @param maxResultBytes          Limits the estimated size of the values returned; omit to use the plugin-wide limit
+     * @param continuationToken       The 'continuationToken' from the previous page's results; the parse resumes where that page ended and pagingInfo.startIndex is ignored
+     * @param prefetchNextPage        If true, the next page is read in the background so that paging forward is served from memory
+     * @param cacheResult             If true, the result is kept in memory and returned to identical calls on the same document version without parsing again
+     * @return a Dictionary containing the success value, an error message, and an array of Dictionaries as the values, 'truncated' with the 'nextStartIndex' to continue from if the result reached its size limit, and a 'continuationToken' for the next page unless the end of the file was reached. If a header row is included, value Dictionary key names will be the values of the first row, otherwise they will be the 1-based number of the column.
      */
     @Function
     public TypedValue parseDelimFile(
@@ -53,21 +58,16 @@ public class ParseDelimFile {
             @Parameter Boolean strictQuotes,
             @Parameter Boolean ignoreLeadingWhiteSpace,
             @Parameter Boolean includeTotalCount,
-            @Parameter(required = false) @Type(namespace = Type.APPIAN_NAMESPACE, name = PagingInfo.LOCAL_PART) PagingInfo pagingInfo
+            @Parameter(required = false) @Type(namespace = Type.APPIAN_NAMESPACE, name = PagingInfo.LOCAL_PART) PagingInfo pagingInfo,
+            @Parameter(required = false) Integer maxResultBytes,
+            @Parameter(required = false) String continuationToken,
+            @Parameter(required = false) Boolean prefetchNextPage,
+            @Parameter(required = false) Boolean cacheResult
     ) {
-        LOG.debug("Executing parseDelimFile - " +
-                "delimitedFile: " + delimitedFile +
-                ", separator: '" + separator +
-                "', hasHeaderRow: " + Boolean.toString(hasHeaderRow) +
-                ", escapeChar: '" + escapeChar +
-                "', quoteChar: '" + quoteChar +
-                "', ignoreQuotes: " + Boolean.toString(ignoreQuotes) +
-                ", strictQuotes: " + Boolean.toString(strictQuotes) +
-                ", ignoreLeadingWhiteSpace: " + Boolean.toString(ignoreLeadingWhiteSpace) +
-                ", includeTotalCount: " + Boolean.toString(includeTotalCount) +
-                ", pagingInfo: " + Boolean.toString(pagingInfo != null) +
-                ";"
-        );
+        LOG.debug("Executing parseDelimFile - delimitedFile: {}, separator: '{}', hasHeaderRow: {}, escapeChar: '{}', quoteChar: '{}', " +
+                        "ignoreQuotes: {}, strictQuotes: {}, ignoreLeadingWhiteSpace: {}, includeTotalCount: {}, pagingInfo: {}, maxResultBytes: {}, continuationToken: {}, prefetchNextPage: {}, cacheResult: {};",
+                delimitedFile, separator, hasHeaderRow, escapeChar, quoteChar,
+                ignoreQuotes, strictQuotes, ignoreLeadingWhiteSpace, includeTotalCount, pagingInfo != null, maxResultBytes, continuationToken != null, prefetchNextPage, cacheResult);
 
         AppianTypeFactory typeFactory = AppianTypeFactory.newInstance(typeService);
 
@@ -89,7 +89,8 @@ public class ParseDelimFile {
 
         // Parse the file
         try {
-            return ParseHelper.parseFile(contentService, typeFactory, parser, delimitedFile, hasHeaderRow, includeTotalCount, pagingInfo);
+            return ParseHelper.parseFile(contentService, typeFactory, parser, delimitedFile, hasHeaderRow, includeTotalCount, pagingInfo,
+                    ByteBudget.forCall(maxResultBytes), continuationToken, Boolean.TRUE.equals(prefetchNextPage), Boolean.TRUE.equals(cacheResult));
         } catch (InvalidContentException e) {
             errorMessage = "InvalidContentException caught: " + e.getMessage();
             LOG.error(errorMessage);
@@ -0,0 +1,93 @@
+package com.appiancorp.solutionsconsulting.plugin.delimfiletools.expressions;
+
+import com.appiancorp.ps.plugins.typetransformer.AppianTypeFactory;
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers.BatchParser;
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers.ByteBudget;
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers.ParseHelper;
+import com.appiancorp.suiteapi.common.paging.PagingInfo;
+import com.appiancorp.suiteapi.content.ContentService;
+import com.appiancorp.suiteapi.expression.annotations.Function;
+import com.appiancorp.suiteapi.expression.annotations.Parameter;
+import com.appiancorp.suiteapi.knowledge.DocumentDataType;
+import com.appiancorp.suiteapi.type.Type;
+import com.appiancorp.suiteapi.type.TypeService;
+import com.appiancorp.suiteapi.type.TypedValue;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.core.Logger;
+
+
+@DelimFileToolsCategory
+public class ParseDelimFiles {
+    private static final Logger LOG = (Logger) LogManager.getLogger(ParseDelimFiles.class);
+
+
+    /**
+     * A function to parse several delimited files with the same settings at once, instead of one by one with a!forEach.
+     *
+     * @param typeService       TypeService injected by Appian
+     * @param contentService    ContentService injected by Appian
+     * @param delimitedFiles    IDs of the Appian Documents to parse
+     * @param separator         The delimiter separating entries; omit to read the files as RFC 4180 CSV
+     * @param hasHeaderRow      If true, the first line of each file contains the column / field names
+     * @param quoteChar         The character used for quoted elements; defaults to "
+     * @param escapeChar        The character used for escaping a separator or quote; defaults to \ (ignored for RFC 4180)
+     * @param includeTotalCount If true, each document's result will contain 'totalLines' with the number of lines in it
+     * @param pagingInfo        An a!pagingInfo() instance, applied to each document. Sorting not yet supported.
+     * @param maxResultBytes    Limits the estimated size of all the values returned together; omit to use the plugin-wide limit
+     * @return a Dictionary containing the success value, an error message, documentsParsed, documentsFailed, and an array of Dictionaries as the values, one per document in the order given, each with the 'document' ID and the same fields as parseDelimFile() returns
+     */
+    @Function
+    public TypedValue parseDelimFiles(
+            TypeService typeService,
+            ContentService contentService,
+            @Parameter @DocumentDataType Long[] delimitedFiles,
+            @Parameter(required = false) String separator,
+            @Parameter(required = false) Boolean hasHeaderRow,
+            @Parameter(required = false) String quoteChar,
+            @Parameter(required = false) String escapeChar,
+            @Parameter(required = false) Boolean includeTotalCount,
+            @Parameter(required = false) @Type(namespace = Type.APPIAN_NAMESPACE, name = PagingInfo.LOCAL_PART) PagingInfo pagingInfo,
+            @Parameter(required = false) Integer maxResultBytes
+    ) {
+        LOG.debug("Executing parseDelimFiles - delimitedFiles: {}, separator: '{}', hasHeaderRow: {}, quoteChar: '{}', escapeChar: '{}', includeTotalCount: {}, pagingInfo: {}, maxResultBytes: {};",
+                delimitedFiles == null ? 0 : delimitedFiles.length, separator, hasHeaderRow, quoteChar, escapeChar, includeTotalCount, pagingInfo != null, maxResultBytes);
+
+        AppianTypeFactory typeFactory = AppianTypeFactory.newInstance(typeService);
+
+        // Validate the parameters
+        String errorMessage = validateParameters(delimitedFiles, separator, quoteChar, escapeChar, pagingInfo);
+        if (errorMessage != null && !errorMessage.isEmpty()) {
+            return ParseHelper.getErrorReturnValue(typeFactory, errorMessage);
+        }
+
+        // Parse the files
+        return BatchParser.parseFiles(contentService, typeFactory, ParseHelper.delimited(ParseHelper.buildParser(separator, quoteChar, escapeChar)),
+                delimitedFiles, Boolean.TRUE.equals(hasHeaderRow), Boolean.TRUE.equals(includeTotalCount), pagingInfo, ByteBudget.forCall(maxResultBytes));
+    }
+
+
+    /**
+     * Validates the function arguments
+     *
+     * @return An error message (null means validation passes)
+     */
+    private String validateParameters(Long[] delimitedFiles, String separator, String quoteChar, String escapeChar, PagingInfo pagingInfo) {
+        if (delimitedFiles == null || delimitedFiles.length == 0)
+            return "You must supply at least one document to parse";
+        for (Long delimitedFile : delimitedFiles)
+            if (delimitedFile == null)
+                return "The delimitedFiles must not contain nulls";
+
+        String errorMessage = ParseHelper.validateParserSettings(separator, quoteChar, escapeChar);
+        if (errorMessage != null) return errorMessage;
+
+        if (pagingInfo != null) {
+            if (pagingInfo.getStartIndex() < 1)
+                return "The pagingInfo.startIndex must be greater than or equal to 1";
+            if (pagingInfo.getBatchSize() == 0)
+                return "The pagingInfo.batchSize must be greater than or equal to 1";
+        }
+
+        return null;
+    }
+}
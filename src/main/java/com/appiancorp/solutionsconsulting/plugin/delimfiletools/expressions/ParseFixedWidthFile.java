@@ -0,0 +1,102 @@
+package com.appiancorp.solutionsconsulting.plugin.delimfiletools.expressions;
+
+import com.appiancorp.ps.plugins.typetransformer.AppianTypeFactory;
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.exceptions.InvalidDictionaryException;
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers.ByteBudget;
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers.FixedWidthLayout;
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers.ParseHelper;
+import com.appiancorp.suiteapi.common.paging.PagingInfo;
+import com.appiancorp.suiteapi.content.ContentService;
+import com.appiancorp.suiteapi.content.exceptions.InvalidContentException;
+import com.appiancorp.suiteapi.expression.annotations.Function;
+import com.appiancorp.suiteapi.expression.annotations.Parameter;
+import com.appiancorp.suiteapi.knowledge.DocumentDataType;
+import com.appiancorp.suiteapi.type.Type;
+import com.appiancorp.suiteapi.type.TypeService;
+import com.appiancorp.suiteapi.type.TypedValue;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.core.Logger;
+
+
+@DelimFileToolsCategory
+public class ParseFixedWidthFile {
+    private static final Logger LOG = (Logger) LogManager.getLogger(ParseFixedWidthFile.class);
+
+
+    /**
+     * A function to parse a fixed-width text file, slicing each line into the columns of a layout.
+     *
+     * @param typeService       TypeService injected by Appian
+     * @param contentService    ContentService injected by Appian
+     * @param fixedWidthFile    ID of Appian Document to parse
+     * @param layout            A list of Dictionaries, one per column, of name, start (1-based), length, and optionally trim (default true) and type (integer, decimal, boolean, date, datetime or text)
+     * @param hasHeaderRow      If true, the first line of the file is skipped
+     * @param includeTotalCount If true, the results will contain 'totalLines' with the number of lines in the Document
+     * @param pagingInfo        An a!pagingInfo() instance. Allows for batching of the file. Sorting not yet supported.
+     * @param maxResultBytes    Limits the estimated size of the values returned; omit to use the plugin-wide limit
+     * @param continuationToken The 'continuationToken' from the previous page's results; the parse resumes where that page ended and pagingInfo.startIndex is ignored
+     * @param prefetchNextPage  If true, the next page is read in the background so that paging forward is served from memory
+     * @param cacheResult       If true, the result is kept in memory and returned to identical calls on the same document version without parsing again
+     * @return a Dictionary containing the success value, an error message, and an array of Dictionaries keyed by the layout's column names as the values, 'truncated' with the 'nextStartIndex' to continue from if the result reached its size limit, and a 'continuationToken' for the next page unless the end of the file was reached.
+     */
+    @Function
+    public TypedValue parseFixedWidthFile(
+            TypeService typeService,
+            ContentService contentService,
+            @Parameter @DocumentDataType Long fixedWidthFile,
+            @Parameter TypedValue layout,
+            @Parameter(required = false) Boolean hasHeaderRow,
+            @Parameter(required = false) Boolean includeTotalCount,
+            @Parameter(required = false) @Type(namespace = Type.APPIAN_NAMESPACE, name = PagingInfo.LOCAL_PART) PagingInfo pagingInfo,
+            @Parameter(required = false) Integer maxResultBytes,
+            @Parameter(required = false) String continuationToken,
+            @Parameter(required = false) Boolean prefetchNextPage,
+            @Parameter(required = false) Boolean cacheResult
+    ) {
+        LOG.debug("Executing parseFixedWidthFile - fixedWidthFile: {}, hasHeaderRow: {}, includeTotalCount: {}, pagingInfo: {}, maxResultBytes: {}, continuationToken: {}, prefetchNextPage: {}, cacheResult: {};",
+                fixedWidthFile, hasHeaderRow, includeTotalCount, pagingInfo != null, maxResultBytes, continuationToken != null, prefetchNextPage, cacheResult);
+
+        AppianTypeFactory typeFactory = AppianTypeFactory.newInstance(typeService);
+
+        // Validate the parameters
+        String errorMessage = validateParameters(pagingInfo);
+        if (errorMessage != null && !errorMessage.isEmpty()) {
+            return ParseHelper.getErrorReturnValue(typeFactory, errorMessage);
+        }
+
+        // Compile the layout
+        FixedWidthLayout fixedWidthLayout;
+        try {
+            fixedWidthLayout = FixedWidthLayout.fromTypedValue(typeService, layout);
+        } catch (InvalidDictionaryException e) {
+            return ParseHelper.getErrorReturnValue(typeFactory, "Invalid layout: " + e.getMessage());
+        }
+
+        // Parse the file
+        try {
+            return ParseHelper.parseFile(contentService, typeFactory, fixedWidthLayout, fixedWidthFile, hasHeaderRow, includeTotalCount, pagingInfo,
+                    ByteBudget.forCall(maxResultBytes), continuationToken, Boolean.TRUE.equals(prefetchNextPage), Boolean.TRUE.equals(cacheResult));
+        } catch (InvalidContentException e) {
+            errorMessage = "InvalidContentException caught: " + e.getMessage();
+            LOG.error(errorMessage);
+            return ParseHelper.getErrorReturnValue(typeFactory, errorMessage);
+        }
+    }
+
+
+    /**
+     * Validates the function arguments
+     *
+     * @return An error message (null means validation passes)
+     */
+    private String validateParameters(PagingInfo pagingInfo) {
+        if (pagingInfo != null) {
+            if (pagingInfo.getStartIndex() < 1)
+                return "The pagingInfo.startIndex must be greater than or equal to 1";
+            if (pagingInfo.getBatchSize() == 0)
+                return "The pagingInfo.batchSize must be greater than or equal to 1";
+        }
+
+        return null;
+    }
+}
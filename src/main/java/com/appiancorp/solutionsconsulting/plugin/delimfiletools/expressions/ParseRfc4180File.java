@@ -1,6 +1,7 @@
 package com.appiancorp.solutionsconsulting.plugin.delimfiletools.expressions;
 
 import com.appiancorp.ps.plugins.typetransformer.AppianTypeFactory;
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers.ByteBudget;
 import com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers.ParseHelper;
 import com.appiancorp.suiteapi.common.paging.PagingInfo;
 import com.appiancorp.suiteapi.content.ContentService;
@@ -31,7 +32,11 @@ public class ParseRfc4180File {
      * @param hasHeaderRow      If true, the first line of the file contains the column / field names
      * @param includeTotalCount If true, the results will contain 'totalLines' with the number of lines in the Document
      * @param pagingInfo        An a!pagingInfo() instance. Allows for batching of the file. Sorting not yet supported.
-     * @return a Dictionary containing the success value, an error message, and an array of Dictionaries as the values. If a header row is included, value Dictionary key names will be the values of the first row, otherwise they will be the 1-based number of the column.
+     * @param maxResultBytes    Limits the estimated size of the values returned; omit to use the plugin-wide limit
+     * @param continuationToken The 'continuationToken' from the previous page's results; the parse resumes where that page ended and pagingInfo.startIndex is ignored
+     * @param prefetchNextPage  If true, the next page is read in the background so that paging forward is served from memory
+     * @param cacheResult       If true, the result is kept in memory and returned to identical calls on the same document version without parsing again
+     * @return a Dictionary containing the success value, an error message, and an array of Dictionaries as the values, 'truncated' with the 'nextStartIndex' to continue from if the result reached its size limit, and a 'continuationToken' for the next page unless the end of the file was reached. If a header row is included, value Dictionary key names will be the values of the first row, otherwise they will be the 1-based number of the column.
      * @see <a href="http://ap.pn/2gQaWj0">Wikipedia page on CSV standards</a>
      * @see <a href="https://tools.ietf.org/html/rfc4180">RFC 4180</a>
      */
@@ -42,15 +47,14 @@ public class ParseRfc4180File {
             @Parameter @DocumentDataType Long csvFile,
             @Parameter(required = false) Boolean hasHeaderRow,
             @Parameter(required = false) Boolean includeTotalCount,
-            @Parameter(required = false) @Type(namespace = Type.APPIAN_NAMESPACE, name = PagingInfo.LOCAL_PART) PagingInfo pagingInfo
+            @Parameter(required = false) @Type(namespace = Type.APPIAN_NAMESPACE, name = PagingInfo.LOCAL_PART) PagingInfo pagingInfo,
+            @Parameter(required = false) Integer maxResultBytes,
+            @Parameter(required = false) String continuationToken,
+            @Parameter(required = false) Boolean prefetchNextPage,
+            @Parameter(required = false) Boolean cacheResult
     ) {
-        LOG.debug("Executing parseRfc4180File - " +
-                "csvFile: " + csvFile +
-                ", hasHeaderRow: " + Boolean.toString(hasHeaderRow) +
-                "', includeTotalCount: " + Boolean.toString(includeTotalCount) +
-                "', pagingInfo: " + Boolean.toString(pagingInfo != null) +
-                ";"
-        );
+        LOG.debug("Executing parseRfc4180File - csvFile: {}, hasHeaderRow: {}, includeTotalCount: {}, pagingInfo: {}, maxResultBytes: {}, continuationToken: {}, prefetchNextPage: {}, cacheResult: {};",
+                csvFile, hasHeaderRow, includeTotalCount, pagingInfo != null, maxResultBytes, continuationToken != null, prefetchNextPage, cacheResult);
 
         AppianTypeFactory typeFactory = AppianTypeFactory.newInstance(typeService);
 
@@ -65,7 +69,8 @@ public class ParseRfc4180File {
 
         // Parse the file
         try {
-            return ParseHelper.parseFile(contentService, typeFactory, parser, csvFile, hasHeaderRow, includeTotalCount, pagingInfo);
+            return ParseHelper.parseFile(contentService, typeFactory, parser, csvFile, hasHeaderRow, includeTotalCount, pagingInfo,
+                    ByteBudget.forCall(maxResultBytes), continuationToken, Boolean.TRUE.equals(prefetchNextPage), Boolean.TRUE.equals(cacheResult));
         } catch (InvalidContentException e) {
             errorMessage = "InvalidContentException caught: " + e.getMessage();
             LOG.error(errorMessage);
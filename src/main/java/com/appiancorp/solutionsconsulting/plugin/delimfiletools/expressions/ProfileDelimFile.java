@@ -0,0 +1,91 @@
+package com.appiancorp.solutionsconsulting.plugin.delimfiletools.expressions;
+
+import com.appiancorp.ps.plugins.typetransformer.AppianTypeFactory;
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers.DocumentVersion;
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers.ParseHelper;
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers.ProfileHelper;
+import com.appiancorp.suiteapi.content.ContentService;
+import com.appiancorp.suiteapi.content.exceptions.InvalidContentException;
+import com.appiancorp.suiteapi.expression.annotations.Function;
+import com.appiancorp.suiteapi.expression.annotations.Parameter;
+import com.appiancorp.suiteapi.knowledge.DocumentDataType;
+import com.appiancorp.suiteapi.type.TypeService;
+import com.appiancorp.suiteapi.type.TypedValue;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.core.Logger;
+
+
+@DelimFileToolsCategory
+public class ProfileDelimFile {
+    private static final Logger LOG = (Logger) LogManager.getLogger(ProfileDelimFile.class);
+
+    private static final int DEFAULT_TOP_VALUES = 5;
+    private static final int MAX_TOP_VALUES = 100;
+
+    /**
+     * Profiles each column of a delimited file in a single pass, without holding its rows in memory: null and blank
+     * counts, value lengths, numeric range, the inferred type, an approximate distinct count and the most frequent values.
+     *
+     * @param typeService    TypeService injected by Appian
+     * @param contentService ContentService injected by Appian
+     * @param delimitedFile  ID of Appian Document to profile
+     * @param separator      The delimiter separating entries; omit to read the file as RFC 4180 CSV
+     * @param hasHeaderRow   If true, the first line of the file contains the column / field names
+     * @param quoteChar      The character used for quoted elements; defaults to "
+     * @param escapeChar     The character used for escaping a separator or quote; defaults to \ (ignored for RFC 4180)
+     * @param topValues      The number of most frequent values to return per column; defaults to 5
+     * @return a Dictionary containing the success value, an error message, rowCount, and an array of Dictionaries as the values, one per column, of name, inferredType, valueCount, nullCount, blankCount, minLength, maxLength, minNumber, maxNumber, distinctEstimate and topValues (value and count)
+     */
+    @Function
+    public TypedValue profileDelimFile(
+            TypeService typeService,
+            ContentService contentService,
+            @Parameter @DocumentDataType Long delimitedFile,
+            @Parameter(required = false) String separator,
+            @Parameter(required = false) Boolean hasHeaderRow,
+            @Parameter(required = false) String quoteChar,
+            @Parameter(required = false) String escapeChar,
+            @Parameter(required = false) Integer topValues
+    ) {
+        LOG.debug("Executing profileDelimFile - delimitedFile: {}, separator: '{}', hasHeaderRow: {}, quoteChar: '{}', escapeChar: '{}', topValues: {};",
+                delimitedFile, separator, hasHeaderRow, quoteChar, escapeChar, topValues);
+
+        AppianTypeFactory typeFactory = AppianTypeFactory.newInstance(typeService);
+
+        // Validate the parameters
+        String errorMessage = validateParameters(separator, quoteChar, escapeChar, topValues);
+        if (errorMessage != null && !errorMessage.isEmpty()) {
+            return ParseHelper.getErrorReturnValue(typeFactory, errorMessage);
+        }
+
+        DocumentVersion version;
+        try {
+            version = DocumentVersion.resolve(contentService, delimitedFile);
+        } catch (InvalidContentException e) {
+            errorMessage = "InvalidContentException caught: " + e.getMessage();
+            LOG.error(errorMessage);
+            return ParseHelper.getErrorReturnValue(typeFactory, errorMessage);
+        }
+
+        return ProfileHelper.profileFile(typeFactory, version,
+                ParseHelper.buildParser(separator, quoteChar, escapeChar),
+                Boolean.TRUE.equals(hasHeaderRow),
+                topValues == null ? DEFAULT_TOP_VALUES : topValues);
+    }
+
+
+    /**
+     * Validates the function arguments
+     *
+     * @return An error message (null means validation passes)
+     */
+    private String validateParameters(String separator, String quoteChar, String escapeChar, Integer topValues) {
+        String errorMessage = ParseHelper.validateParserSettings(separator, quoteChar, escapeChar);
+        if (errorMessage != null) return errorMessage;
+
+        if (topValues != null && (topValues < 0 || topValues > MAX_TOP_VALUES))
+            return "The topValues must be between 0 and " + MAX_TOP_VALUES;
+
+        return null;
+    }
+}
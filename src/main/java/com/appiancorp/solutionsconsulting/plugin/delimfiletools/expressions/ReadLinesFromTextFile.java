@@ -26,6 +26,8 @@ public class ReadLinesFromTextFile {
      *
      * @param contentService ContentService injected by Appian
      * @param textFile       ID of Appian Document to read
+     * @param startLine      The 1-based line to start reading from, or a negative number to start that many lines from the end (-100 and a lineCount of 100 or -1 returns the last 100 lines)
+     * @param lineCount      Number of lines to read, or -1 to read to the end of the file
      * @return A dictionary containing the results.
      */
     @Function
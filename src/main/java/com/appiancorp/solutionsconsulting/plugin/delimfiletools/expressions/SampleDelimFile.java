@@ -0,0 +1,105 @@
+package com.appiancorp.solutionsconsulting.plugin.delimfiletools.expressions;
+
+import com.appiancorp.ps.plugins.typetransformer.AppianTypeFactory;
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers.ByteBudget;
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers.DocumentVersion;
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers.ParseHelper;
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers.SampleHelper;
+import com.appiancorp.suiteapi.content.ContentService;
+import com.appiancorp.suiteapi.content.exceptions.InvalidContentException;
+import com.appiancorp.suiteapi.expression.annotations.Function;
+import com.appiancorp.suiteapi.expression.annotations.Parameter;
+import com.appiancorp.suiteapi.knowledge.DocumentDataType;
+import com.appiancorp.suiteapi.type.TypeService;
+import com.appiancorp.suiteapi.type.TypedValue;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.core.Logger;
+
+
+@DelimFileToolsCategory
+public class SampleDelimFile {
+    private static final Logger LOG = (Logger) LogManager.getLogger(SampleDelimFile.class);
+
+    private static final int MAX_SAMPLE_SIZE = 10000;
+    private static final long SEEK_THRESHOLD_BYTES = Long.getLong("delimfiletools.sample.seekThresholdBytes", 64L * 1024 * 1024);
+
+    /**
+     * Returns a random sample of the rows of a delimited file, either read uniformly in one pass or picked around
+     * random byte offsets without reading the whole file.
+     *
+     * @param typeService    TypeService injected by Appian
+     * @param contentService ContentService injected by Appian
+     * @param delimitedFile  ID of Appian Document to sample
+     * @param sampleSize     The number of rows to return, up to 10000
+     * @param separator      The delimiter separating entries; omit to read the file as RFC 4180 CSV
+     * @param hasHeaderRow   If true, the first line of the file contains the column / field names
+     * @param quoteChar      The character used for quoted elements; defaults to "
+     * @param escapeChar     The character used for escaping a separator or quote; defaults to \ (ignored for RFC 4180)
+     * @param method         "reservoir" or "seek"; defaults to "seek" for files larger than delimfiletools.sample.seekThresholdBytes (64 MB)
+     * @param seed           Seeds the random choices so the same sample is returned each time; omit for a new sample
+     * @param maxResultBytes Limits the estimated size of the values returned; omit to use the plugin-wide limit
+     * @return a Dictionary containing the success value, an error message, sampleSize, method, rowsScanned, truncated, and an array of Dictionaries as the values, in file order
+     */
+    @Function
+    public TypedValue sampleDelimFile(
+            TypeService typeService,
+            ContentService contentService,
+            @Parameter @DocumentDataType Long delimitedFile,
+            @Parameter Integer sampleSize,
+            @Parameter(required = false) String separator,
+            @Parameter(required = false) Boolean hasHeaderRow,
+            @Parameter(required = false) String quoteChar,
+            @Parameter(required = false) String escapeChar,
+            @Parameter(required = false) String method,
+            @Parameter(required = false) Long seed,
+            @Parameter(required = false) Integer maxResultBytes
+    ) {
+        LOG.debug("Executing sampleDelimFile - delimitedFile: {}, sampleSize: {}, separator: '{}', hasHeaderRow: {}, quoteChar: '{}', escapeChar: '{}', method: {}, seed: {}, maxResultBytes: {};",
+                delimitedFile, sampleSize, separator, hasHeaderRow, quoteChar, escapeChar, method, seed, maxResultBytes);
+
+        AppianTypeFactory typeFactory = AppianTypeFactory.newInstance(typeService);
+
+        // Validate the parameters
+        String errorMessage = validateParameters(sampleSize, separator, quoteChar, escapeChar, method);
+        if (errorMessage != null && !errorMessage.isEmpty()) {
+            return ParseHelper.getErrorReturnValue(typeFactory, errorMessage);
+        }
+
+        DocumentVersion version;
+        try {
+            version = DocumentVersion.resolve(contentService, delimitedFile);
+        } catch (InvalidContentException e) {
+            errorMessage = "InvalidContentException caught: " + e.getMessage();
+            LOG.error(errorMessage);
+            return ParseHelper.getErrorReturnValue(typeFactory, errorMessage);
+        }
+
+        String sampleMethod = method == null || method.isEmpty()
+                ? (version.getSize() > SEEK_THRESHOLD_BYTES ? SampleHelper.SEEK : SampleHelper.RESERVOIR)
+                : SampleHelper.normalizeMethod(method);
+
+        return SampleHelper.sampleFile(typeFactory, version,
+                ParseHelper.buildParser(separator, quoteChar, escapeChar),
+                Boolean.TRUE.equals(hasHeaderRow),
+                sampleSize, sampleMethod, seed, ByteBudget.forCall(maxResultBytes));
+    }
+
+
+    /**
+     * Validates the function arguments
+     *
+     * @return An error message (null means validation passes)
+     */
+    private String validateParameters(Integer sampleSize, String separator, String quoteChar, String escapeChar, String method) {
+        if (sampleSize == null || sampleSize < 1 || sampleSize > MAX_SAMPLE_SIZE)
+            return "The sampleSize must be between 1 and " + MAX_SAMPLE_SIZE;
+
+        String errorMessage = ParseHelper.validateParserSettings(separator, quoteChar, escapeChar);
+        if (errorMessage != null) return errorMessage;
+
+        if (method != null && !method.isEmpty() && SampleHelper.normalizeMethod(method) == null)
+            return "The method must be \"" + SampleHelper.RESERVOIR + "\" or \"" + SampleHelper.SEEK + "\"";
+
+        return null;
+    }
+}
@@ -0,0 +1,102 @@
+package com.appiancorp.solutionsconsulting.plugin.delimfiletools.expressions;
+
+import com.appiancorp.ps.plugins.typetransformer.AppianTypeFactory;
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.exceptions.InvalidDictionaryException;
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers.ParseHelper;
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers.ValidateHelper;
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers.ValidationSpec;
+import com.appiancorp.suiteapi.content.ContentService;
+import com.appiancorp.suiteapi.content.exceptions.InvalidContentException;
+import com.appiancorp.suiteapi.expression.annotations.Function;
+import com.appiancorp.suiteapi.expression.annotations.Parameter;
+import com.appiancorp.suiteapi.knowledge.DocumentDataType;
+import com.appiancorp.suiteapi.type.TypeService;
+import com.appiancorp.suiteapi.type.TypedValue;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.core.Logger;
+
+import java.io.File;
+
+
+@DelimFileToolsCategory
+public class ValidateDelimFile {
+    private static final Logger LOG = (Logger) LogManager.getLogger(ValidateDelimFile.class);
+
+    private static final int DEFAULT_MAX_VIOLATIONS = 100;
+
+    /**
+     * Checks every row of a delimited file against per-column rules in a single pass, returning only the violations.
+     *
+     * @param typeService    TypeService injected by Appian
+     * @param contentService ContentService injected by Appian
+     * @param delimitedFile  ID of Appian Document to validate
+     * @param rules          A Dictionary of column names to Dictionaries of rules: required, type, regex, maxLength and allowedValues
+     * @param separator      The delimiter separating entries; omit to read the file as RFC 4180 CSV
+     * @param hasHeaderRow   If true, the first line of the file contains the column / field names
+     * @param quoteChar      The character used for quoted elements; defaults to "
+     * @param escapeChar     The character used for escaping a separator or quote; defaults to \ (ignored for RFC 4180)
+     * @param maxViolations  The most violations to return; defaults to 100. All violations are counted regardless.
+     * @return a Dictionary containing the success value, an error message, valid, and an array of Dictionaries of rowNumber, lineNumber, column, columnIndex, rule, message and value as the values, plus rowCount, invalidRowCount, violationCount, violationsByColumn, violationsByRule and truncated (true if there were more violations than maxViolations)
+     */
+    @Function
+    public TypedValue validateDelimFile(
+            TypeService typeService,
+            ContentService contentService,
+            @Parameter @DocumentDataType Long delimitedFile,
+            @Parameter TypedValue rules,
+            @Parameter(required = false) String separator,
+            @Parameter(required = false) Boolean hasHeaderRow,
+            @Parameter(required = false) String quoteChar,
+            @Parameter(required = false) String escapeChar,
+            @Parameter(required = false) Integer maxViolations
+    ) {
+        LOG.debug("Executing validateDelimFile - delimitedFile: {}, separator: '{}', hasHeaderRow: {}, quoteChar: '{}', escapeChar: '{}', maxViolations: {};",
+                delimitedFile, separator, hasHeaderRow, quoteChar, escapeChar, maxViolations);
+
+        AppianTypeFactory typeFactory = AppianTypeFactory.newInstance(typeService);
+
+        // Validate the parameters
+        String errorMessage = validateParameters(separator, quoteChar, escapeChar, maxViolations);
+        if (errorMessage != null && !errorMessage.isEmpty()) {
+            return ParseHelper.getErrorReturnValue(typeFactory, errorMessage);
+        }
+
+        ValidationSpec spec;
+        try {
+            spec = ValidationSpec.fromTypedValue(typeService, rules);
+        } catch (InvalidDictionaryException e) {
+            return ParseHelper.getErrorReturnValue(typeFactory, "Invalid rules: " + e.getMessage());
+        }
+
+        File file;
+        try {
+            file = new File(contentService.getInternalFilename(delimitedFile));
+        } catch (InvalidContentException e) {
+            errorMessage = "InvalidContentException caught: " + e.getMessage();
+            LOG.error(errorMessage);
+            return ParseHelper.getErrorReturnValue(typeFactory, errorMessage);
+        }
+
+        return ValidateHelper.validateFile(typeFactory, file,
+                ParseHelper.buildParser(separator, quoteChar, escapeChar),
+                Boolean.TRUE.equals(hasHeaderRow),
+                spec,
+                maxViolations == null ? DEFAULT_MAX_VIOLATIONS : maxViolations);
+    }
+
+
+    /**
+     * Validates the function arguments
+     *
+     * @return An error message (null means validation passes)
+     */
+    private String validateParameters(String separator, String quoteChar, String escapeChar, Integer maxViolations) {
+        String errorMessage = ParseHelper.validateParserSettings(separator, quoteChar, escapeChar);
+        if (errorMessage != null) return errorMessage;
+
+        if (maxViolations != null && maxViolations < 0)
+            return "The maxViolations must be greater than or equal to 0";
+
+        return null;
+    }
+}
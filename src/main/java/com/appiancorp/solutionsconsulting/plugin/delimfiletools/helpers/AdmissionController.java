@@ -0,0 +1,173 @@
+package com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers;
+
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.exceptions.AdmissionRejectedException;
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers.DelimFileToolsMetrics.Counter;
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers.DelimFileToolsMetrics.Phase;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.core.Logger;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Limits how many heavy operations (large parses, compares, joins and writes) run at once across the whole plugin, so
+ * a burst of them cannot exhaust the heap Appian shares with every other user. Each operation is weighted by the
+ * bytes it is estimated to hold. Light operations, under delimfiletools.admission.heavyBytes (default 4 MB), are
+ * never held back. Heavy ones run while fewer than delimfiletools.admission.maxHeavy (4) are running and their
+ * weights fit within delimfiletools.admission.maxBytes (256 MB); the rest wait in turn, for up to
+ * delimfiletools.admission.timeoutMillis (30 seconds), in a queue of at most delimfiletools.admission.maxQueued (32).
+ * A call that finds the queue full is refused at once.
+ * <p>
+ * The queue depth and running operations are published as gauges, and the time spent waiting as the admissionWait
+ * phase.
+ */
+public class AdmissionController {
+    private static final Logger LOG = (Logger) LogManager.getLogger(AdmissionController.class);
+
+    /**
+     * The estimated size of a row once read, when nothing better is known
+     */
+    public static final long ESTIMATED_ROW_BYTES = 2048;
+
+    private static final long HEAVY_BYTES = Long.getLong("delimfiletools.admission.heavyBytes", 4L * 1024 * 1024);
+    private static final int MAX_HEAVY = Math.max(1, Integer.getInteger("delimfiletools.admission.maxHeavy", 4));
+    private static final long MAX_BYTES = Long.getLong("delimfiletools.admission.maxBytes", 256L * 1024 * 1024);
+    private static final long TIMEOUT_MILLIS = Long.getLong("delimfiletools.admission.timeoutMillis", 30000);
+    private static final int MAX_QUEUED = Math.max(0, Integer.getInteger("delimfiletools.admission.maxQueued", 32));
+
+    private static final Object LOCK = new Object();
+    private static final Deque<Permit> QUEUE = new ArrayDeque<>();
+    private static int running = 0;
+    private static long bytesInUse = 0;
+
+    private static final Permit LIGHT = new Permit(0);
+
+    static {
+        DelimFileToolsMetrics.registerGauge("admissionQueueDepth", AdmissionController::getQueueDepth);
+        DelimFileToolsMetrics.registerGauge("admissionRunning", AdmissionController::getRunning);
+        DelimFileToolsMetrics.registerGauge("admissionBytesInUse", AdmissionController::getBytesInUse);
+    }
+
+
+    /**
+     * The right to run one heavy operation, given back by closing it
+     */
+    public static class Permit implements AutoCloseable {
+        private final long weight;
+        private boolean released = false;
+
+        private Permit(long weight) {
+            this.weight = weight;
+        }
+
+        @Override
+        public void close() {
+            if (weight == 0) return;
+            synchronized (LOCK) {
+                if (released) return;
+                released = true;
+                running--;
+                bytesInUse -= weight;
+                LOCK.notifyAll();
+            }
+        }
+    }
+
+
+    /**
+     * Waits until an operation of the given size may run
+     *
+     * @param estimatedBytes The bytes the operation is expected to hold at its peak
+     * @return A Permit to close once the operation has finished
+     * @throws AdmissionRejectedException If the queue is full, the wait timed out, or the thread was interrupted
+     */
+    public static Permit acquire(long estimatedBytes) throws AdmissionRejectedException {
+        if (estimatedBytes < HEAVY_BYTES) return LIGHT;
+
+        // An operation larger than the whole allowance may still run, on its own
+        Permit permit = new Permit(Math.min(estimatedBytes, MAX_BYTES));
+        long start = System.nanoTime();
+
+        synchronized (LOCK) {
+            if (QUEUE.isEmpty() && fits(permit)) {
+                admit(permit);
+                return permit;
+            }
+            if (QUEUE.size() >= MAX_QUEUED) {
+                DelimFileToolsMetrics.increment(Counter.ADMISSION_REJECTED);
+                throw new AdmissionRejectedException("The server is busy with other large file operations (" + QUEUE.size()
+                        + " waiting); try again shortly", "AdmissionQueueFull");
+            }
+
+            QUEUE.addLast(permit);
+            long deadline = start + TimeUnit.MILLISECONDS.toNanos(TIMEOUT_MILLIS);
+            try {
+                while (QUEUE.peekFirst() != permit || !fits(permit)) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        DelimFileToolsMetrics.increment(Counter.ADMISSION_TIMEOUTS);
+                        throw new AdmissionRejectedException("Timed out after " + TIMEOUT_MILLIS
+                                + " ms waiting for other large file operations to finish; try again shortly", "AdmissionTimeout");
+                    }
+                    TimeUnit.NANOSECONDS.timedWait(LOCK, remaining);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new AdmissionRejectedException("Interrupted while waiting for other large file operations to finish", "AdmissionInterrupted");
+            } finally {
+                // Whether admitted or not, leave the queue and let the next in line look again
+                QUEUE.remove(permit);
+                LOCK.notifyAll();
+            }
+
+            admit(permit);
+        }
+
+        DelimFileToolsMetrics.record(Phase.ADMISSION_WAIT, start);
+        LOG.debug("Admitted an operation of {} bytes after {} ms", permit.weight, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        return permit;
+    }
+
+
+    /**
+     * @param rows The number of rows an operation will hold
+     * @return Its estimated size, at ESTIMATED_ROW_BYTES a row
+     */
+    public static long estimateRows(long rows) {
+        return rows > Long.MAX_VALUE / ESTIMATED_ROW_BYTES ? Long.MAX_VALUE : rows * ESTIMATED_ROW_BYTES;
+    }
+
+
+    private static boolean fits(Permit permit) {
+        return running < MAX_HEAVY && (running == 0 || bytesInUse + permit.weight <= MAX_BYTES);
+    }
+
+
+    private static void admit(Permit permit) {
+        running++;
+        bytesInUse += permit.weight;
+    }
+
+
+    public static long getQueueDepth() {
+        synchronized (LOCK) {
+            return QUEUE.size();
+        }
+    }
+
+
+    public static long getRunning() {
+        synchronized (LOCK) {
+            return running;
+        }
+    }
+
+
+    public static long getBytesInUse() {
+        synchronized (LOCK) {
+            return bytesInUse;
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers;
+
+import com.appiancorp.ps.plugins.typetransformer.AppianList;
+import com.appiancorp.ps.plugins.typetransformer.AppianObject;
+import com.appiancorp.ps.plugins.typetransformer.AppianTypeFactory;
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.exceptions.AdmissionRejectedException;
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.exceptions.InvalidFieldException;
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers.DelimFileToolsMetrics.Counter;
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers.DelimFileToolsMetrics.Phase;
+import com.appiancorp.suiteapi.common.paging.PagingInfo;
+import com.appiancorp.suiteapi.content.ContentService;
+import com.appiancorp.suiteapi.content.exceptions.InvalidContentException;
+import com.appiancorp.suiteapi.type.AppianType;
+import com.appiancorp.suiteapi.type.TypedValue;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.core.Logger;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * Parses several documents at once with the same settings, reading them in parallel on a small shared pool. Only the
+ * reading is done on the pool; the documents are looked up and their values built on the calling thread, which holds
+ * the user's Appian context.
+ * <p>
+ * Sized by the system properties delimfiletools.batch.threads (default 4) and delimfiletools.batch.queueSize (64).
+ * When the queue is full the calling thread reads the document itself, so a large batch slows down rather than fails.
+ */
+public class BatchParser {
+    private static final Logger LOG = (Logger) LogManager.getLogger(BatchParser.class);
+
+    // Also copies the pieces of SplitHelper, which only touch files
+    static final ThreadPoolExecutor EXECUTOR;
+
+    static {
+        int threads = Math.max(1, Integer.getInteger("delimfiletools.batch.threads", 4));
+        AtomicInteger threadNumber = new AtomicInteger();
+        EXECUTOR = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, Integer.getInteger("delimfiletools.batch.queueSize", 64))),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "delimfiletools-batch-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        EXECUTOR.allowCoreThreadTimeOut(true);
+    }
+
+
+    /**
+     * What was read from one document
+     */
+    private static final class Outcome {
+        private final ParsedPage page;
+        private final int totalLines;
+
+        Outcome(ParsedPage page, int totalLines) {
+            this.page = page;
+            this.totalLines = totalLines;
+        }
+    }
+
+
+    /**
+     * Parses one page of each document. The documents share one budget, so a large batch returns fewer rows from each
+     * rather than more in total; every document returns at least one row, and a document that is cut short is marked
+     * 'truncated' with the 'continuationToken' to carry on from with the single-document functions.
+     *
+     * @param contentService    ContentService injected by Appian
+     * @param typeFactory       An instance of the TypeTransformer's AppianTypeFactory, build using the TypeService injected by Appian
+     * @param format            How to split each record into fields; copied for each document
+     * @param documents         IDs of the Appian Documents to parse
+     * @param hasHeaderRow      If true, the first line of each file contains the column / field names
+     * @param includeTotalCount If true, each document's result will contain 'totalLines' with the number of lines in it
+     * @param pagingInfo        An a!pagingInfo() instance, applied to each document
+     * @param budget            Limits the estimated size of all the values returned together
+     * @return a Dictionary containing the success value, an error message, the number of documents that were parsed
+     * and that failed, and one parse result per document, in the order given, as the values
+     */
+    public static TypedValue parseFiles(ContentService contentService, AppianTypeFactory typeFactory, RecordFormat format, Long[] documents,
+                                        boolean hasHeaderRow, boolean includeTotalCount, PagingInfo pagingInfo, ByteBudget budget) {
+        long start = System.nanoTime();
+        int fingerprint = format.getFingerprint();
+
+        int maxRows = Integer.MAX_VALUE;
+        if (pagingInfo != null && pagingInfo.getBatchSize() > 0) // account for -1 to equal max
+            maxRows = pagingInfo.getBatchSize();
+        final int pageSize = maxRows;
+        final int startIndex = pagingInfo != null ? pagingInfo.getStartIndex() : 1;
+
+        // Look the documents up here, as Appian's services belong to the calling thread
+        DocumentVersion[] versions = new DocumentVersion[documents.length];
+        String[] errors = new String[documents.length];
+        long totalSize = 0;
+        for (int i = 0; i < documents.length; i++) {
+            try {
+                versions[i] = DocumentVersion.resolve(contentService, documents[i]);
+                totalSize += versions[i].getSize();
+            } catch (InvalidContentException e) {
+                errors[i] = "InvalidContentException caught: " + e.getMessage();
+            }
+        }
+
+        long estimatedBytes = Math.min(budget.getLimit(), Math.min(totalSize * 4, AdmissionController.estimateRows((long) maxRows * documents.length)));
+
+        List<Future<Outcome>> reads = new ArrayList<>(documents.length);
+        try (AdmissionController.Permit ignored = AdmissionController.acquire(estimatedBytes)) {
+            for (DocumentVersion version : versions) {
+                if (version == null) {
+                    reads.add(null);
+                    continue;
+                }
+                final RecordFormat documentFormat = format.copy();
+                reads.add(EXECUTOR.submit(() -> new Outcome(
+                        ParseHelper.readPage(version, documentFormat, hasHeaderRow, null, startIndex, pageSize, budget),
+                        includeTotalCount ? ParseHelper.countLinesInVersion(version) : -1)));
+            }
+
+            // Build the results in the order the documents were given
+            AppianList values = typeFactory.createList(AppianType.DICTIONARY);
+            int parsed = 0;
+            for (int i = 0; i < documents.length; i++) {
+                AppianObject result;
+                if (errors[i] == null) {
+                    try {
+                        Outcome outcome = reads.get(i).get();
+                        ContinuationToken nextToken = outcome.page.getNextToken(versions[i], fingerprint, hasHeaderRow);
+                        result = ParseHelper.getReturnValueElement(typeFactory, true, null, ParseHelper.toDictionaries(typeFactory, outcome.page, format.getFieldTypes()),
+                                outcome.page.getRows().size(), outcome.totalLines, outcome.page.isTruncated(), outcome.page.getNextStartIndex(),
+                                nextToken == null ? null : nextToken.encode());
+                        parsed++;
+                    } catch (ExecutionException e) {
+                        Throwable cause = e.getCause();
+                        errors[i] = cause instanceof IOException ? "IOException: " + cause.getMessage() : String.valueOf(cause);
+                        result = null;
+                    } catch (InvalidFieldException e) {
+                        errors[i] = e.getMessage();
+                        result = null;
+                    }
+                } else {
+                    result = null;
+                }
+
+                if (result == null) {
+                    LOG.debug("parseFiles: document {}: {}", documents[i], errors[i]);
+                    DelimFileToolsMetrics.increment(Counter.ERRORS);
+                    result = ParseHelper.getReturnValueElement(typeFactory, false, errors[i], null, 0, 0, false, 0, null);
+                }
+                result.put("document", typeFactory.createLong(documents[i]));
+                values.add(result);
+            }
+
+            AppianObject dictionary = (AppianObject) typeFactory.createElement(AppianType.DICTIONARY);
+            dictionary.put("success", typeFactory.createBoolean(true));
+            dictionary.put("values", values);
+            dictionary.put("documentsParsed", typeFactory.createLong((long) parsed));
+            dictionary.put("documentsFailed", typeFactory.createLong((long) (documents.length - parsed)));
+
+            DelimFileToolsMetrics.record(Phase.BATCH, start);
+            return typeFactory.toTypedValue(dictionary);
+
+        } catch (AdmissionRejectedException e) {
+            LOG.debug("parseFiles: {}", e.getMessage());
+            return ParseHelper.getErrorReturnValue(typeFactory, e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            for (Future<Outcome> read : reads)
+                if (read != null) read.cancel(true);
+            return ParseHelper.getErrorReturnValue(typeFactory, "Interrupted while parsing the documents");
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * Limits how large a parse result may grow, by the estimated heap size of the values built rather than by row count,
+ * so wide rows stop sooner than narrow ones.
+ * <p>
+ * The global limit is read from the system property delimfiletools.parse.maxResultBytes (default 16 MB). A call can
+ * pass its own limit instead. A budget is thread-safe and may be shared by several parses.
+ */
+public class ByteBudget {
+
+    public static final String MAX_RESULT_BYTES_PROPERTY = "delimfiletools.parse.maxResultBytes";
+    public static final long DEFAULT_MAX_RESULT_BYTES = 16L * 1024 * 1024;
+
+    // Rough heap cost of a Dictionary row and of each field in it, not counting the characters of the value
+    private static final int ROW_OVERHEAD_BYTES = 96;
+    private static final int FIELD_OVERHEAD_BYTES = 72;
+
+    private final long limit;
+    private final AtomicLong used = new AtomicLong();
+
+
+    public ByteBudget(long limit) {
+        this.limit = limit;
+    }
+
+
+    /**
+     * @param maxResultBytes The limit passed to a function, or null / less than 1 to use the global limit
+     * @return A new budget for one call
+     */
+    public static ByteBudget forCall(Integer maxResultBytes) {
+        if (maxResultBytes != null && maxResultBytes > 0)
+            return new ByteBudget(maxResultBytes);
+        return new ByteBudget(getGlobalLimit());
+    }
+
+
+    /**
+     * @return The limit from the delimfiletools.parse.maxResultBytes system property, or the default
+     */
+    public static long getGlobalLimit() {
+        long limit = Long.getLong(MAX_RESULT_BYTES_PROPERTY, DEFAULT_MAX_RESULT_BYTES);
+        return limit > 0 ? limit : DEFAULT_MAX_RESULT_BYTES;
+    }
+
+
+    /**
+     * @param row A parsed row
+     * @return The estimated heap size of the row once built into a Dictionary of Text values
+     */
+    public static long estimateRow(String[] row) {
+        long bytes = ROW_OVERHEAD_BYTES;
+        for (String field : row)
+            bytes += FIELD_OVERHEAD_BYTES + (field == null ? 0 : 2L * field.length());
+        return bytes;
+    }
+
+
+    /**
+     * Reserves bytes if they fit in what is left of the budget
+     *
+     * @param bytes The estimated size to add
+     * @return False, reserving nothing, if the bytes would take the budget over its limit
+     */
+    public boolean tryConsume(long bytes) {
+        long current;
+        do {
+            current = used.get();
+            if (current + bytes > limit) return false;
+        } while (!used.compareAndSet(current, current + bytes));
+        return true;
+    }
+
+
+    /**
+     * Reserves bytes whether or not they fit, e.g. so a result always contains at least one row
+     *
+     * @param bytes The estimated size to add
+     */
+    public void consume(long bytes) {
+        used.addAndGet(bytes);
+    }
+
+
+    public long getLimit() {
+        return limit;
+    }
+
+
+    public long getUsed() {
+        return used.get();
+    }
+}
@@ -0,0 +1,252 @@
+package com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers;
+
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.exceptions.InvalidCdtException;
+import com.appiancorp.suiteapi.type.Datatype;
+import com.appiancorp.suiteapi.type.DatatypeProperties;
+import com.appiancorp.suiteapi.type.NamedTypedValue;
+import com.appiancorp.suiteapi.type.TypeService;
+import com.appiancorp.suiteapi.type.TypedValue;
+import com.appiancorp.type.AppianTypeLong;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+/**
+ * A compiled plan for pulling the column values out of a Dictionary or CDT row, in a fixed column order.
+ * <p>
+ * CDT plans are built once per Datatype from its instance properties and cached. Nested CDT fields are flattened into
+ * dotted column names (e.g. "address.city") and each column is read by walking a fixed path of field indexes, so
+ * extracting a row never does a hash lookup. Dictionaries have no schema, so their plan is built from the keys of the
+ * first row, and every row is read with those same keys so the values always line up with the header.
+ */
+public class ColumnExtractor {
+
+    // Guards against self-referencing CDTs
+    private static final int MAX_NESTING_DEPTH = 8;
+
+    private static final ConcurrentHashMap<Long, ColumnExtractor> CDT_EXTRACTORS = new ConcurrentHashMap<>();
+
+    private final String[] columnNames;
+    private final Long[] columnTypes;
+    private final Object[][] paths; // each step is either an Integer field index (CDT) or a TypedValue key (Dictionary)
+
+
+    private ColumnExtractor(List<String> columnNames, List<Long> columnTypes, List<Object[]> paths) {
+        this.columnNames = columnNames.toArray(new String[columnNames.size()]);
+        this.columnTypes = columnTypes.toArray(new Long[columnTypes.size()]);
+        this.paths = paths.toArray(new Object[paths.size()][]);
+    }
+
+
+    /**
+     * Gets the extractor for the rows of the given sourceObjects
+     *
+     * @param typeService   TypeService injected by Appian
+     * @param sourceObjects A Dictionary or CDT, or a list of them
+     * @param rows          The rows returned by getRows() for the same sourceObjects
+     * @return The extractor, or null if there are no rows to take the Dictionary keys from
+     * @throws InvalidCdtException If the CDT's type could not be read
+     */
+    public static ColumnExtractor forSource(TypeService typeService, TypedValue sourceObjects, Object[] rows) throws InvalidCdtException {
+        switch (TypeHelper.getSourceKind(typeService, sourceObjects)) {
+            case LIST_OF_CDT:
+                try {
+                    return forCdt(typeService, typeService.getType(sourceObjects.getInstanceType()).getTypeof());
+                } catch (Exception e) {
+                    throw new InvalidCdtException("Invalid CDT");
+                }
+            case CDT:
+                return forCdt(typeService, sourceObjects.getInstanceType());
+            default:
+                return rows.length == 0 ? null : forDictionary(typeService, (Map<TypedValue, TypedValue>) rows[0]);
+        }
+    }
+
+
+    /**
+     * Gets the rows of the given sourceObjects, ready to be passed to extract(). CDT rows are left as their raw field
+     * arrays rather than being cast to Dictionaries.
+     *
+     * @param typeService   TypeService injected by Appian
+     * @param sourceObjects A Dictionary or CDT, or a list of them
+     * @return The rows
+     * @throws InvalidCdtException If the value is not a Dictionary or CDT, or a list of them
+     */
+    public static Object[] getRows(TypeService typeService, TypedValue sourceObjects) throws InvalidCdtException {
+        switch (TypeHelper.getSourceKind(typeService, sourceObjects)) {
+            case LIST_OF_DICTIONARY:
+            case LIST_OF_CDT:
+                Object value = sourceObjects.getValue();
+                return value == null ? new Object[0] : (Object[]) value;
+            case DICTIONARY:
+            case CDT:
+                return new Object[]{sourceObjects.getValue()};
+            default:
+                return TypeHelper.toMapList(typeService, sourceObjects).toArray();
+        }
+    }
+
+
+    /**
+     * Gets the cached extractor for a CDT, building it on first use
+     *
+     * @param typeService TypeService injected by Appian
+     * @param cdtType     The type ID of the CDT (not the list type)
+     * @return The extractor
+     * @throws InvalidCdtException If the CDT's type could not be read
+     */
+    public static ColumnExtractor forCdt(TypeService typeService, Long cdtType) throws InvalidCdtException {
+        ColumnExtractor extractor = CDT_EXTRACTORS.get(cdtType);
+        if (extractor != null) {
+            DelimFileToolsMetrics.increment(DelimFileToolsMetrics.Counter.EXTRACTOR_CACHE_HITS);
+            return extractor;
+        }
+        DelimFileToolsMetrics.increment(DelimFileToolsMetrics.Counter.EXTRACTOR_CACHE_MISSES);
+
+        List<String> names = new ArrayList<>();
+        List<Long> types = new ArrayList<>();
+        List<Object[]> paths = new ArrayList<>();
+        try {
+            addCdtColumns(typeService, cdtType, "", new Object[0], names, types, paths, 0);
+        } catch (Exception e) {
+            throw new InvalidCdtException("Invalid CDT");
+        }
+
+        extractor = new ColumnExtractor(names, types, paths);
+        CDT_EXTRACTORS.putIfAbsent(cdtType, extractor);
+        return extractor;
+    }
+
+
+    private static void addCdtColumns(TypeService typeService, Long cdtType, String prefix, Object[] parentPath,
+                                      List<String> names, List<Long> types, List<Object[]> paths, int depth) {
+        Datatype datatype = typeService.getType(cdtType);
+        NamedTypedValue[] properties = datatype.getInstanceProperties();
+
+        for (int i = 0; i < properties.length; i++) {
+            String name = prefix + properties[i].getName();
+            Long fieldType = properties[i].getInstanceType();
+            Object[] path = append(parentPath, i);
+
+            if (depth < MAX_NESTING_DEPTH && isNestedCdt(typeService, fieldType)) {
+                addCdtColumns(typeService, fieldType, name + ".", path, names, types, paths, depth + 1);
+            } else {
+                names.add(name);
+                types.add(fieldType);
+                paths.add(path);
+            }
+        }
+    }
+
+
+    private static boolean isNestedCdt(TypeService typeService, Long type) {
+        if (type == null) return false;
+        DatatypeProperties typeProperties = typeService.getDatatypeProperties(type);
+        return typeProperties != null && !typeProperties.isListType() && typeService.getType(type).isRecordType();
+    }
+
+
+    /**
+     * Builds an extractor from the keys of the first Dictionary. Nested Dictionaries are flattened the same way as
+     * nested CDTs.
+     */
+    private static ColumnExtractor forDictionary(TypeService typeService, Map<TypedValue, TypedValue> firstRow) throws InvalidCdtException {
+        List<String> names = new ArrayList<>();
+        List<Long> types = new ArrayList<>();
+        List<Object[]> paths = new ArrayList<>();
+        addDictionaryColumns(typeService, firstRow, "", new Object[0], names, types, paths, 0);
+        return new ColumnExtractor(names, types, paths);
+    }
+
+
+    private static void addDictionaryColumns(TypeService typeService, Map<TypedValue, TypedValue> dictionary, String prefix, Object[] parentPath,
+                                             List<String> names, List<Long> types, List<Object[]> paths, int depth) throws InvalidCdtException {
+        for (Map.Entry<TypedValue, TypedValue> entry : dictionary.entrySet()) {
+            String name = prefix + entry.getKey().getValue();
+            TypedValue value = entry.getValue();
+            Object[] path = append(parentPath, entry.getKey());
+            Long type = value == null ? null : value.getInstanceType();
+
+            if (depth < MAX_NESTING_DEPTH && type != null && type.longValue() == AppianTypeLong.DICTIONARY && value.getValue() != null) {
+                addDictionaryColumns(typeService, (Map<TypedValue, TypedValue>) value.getValue(), name + ".", path, names, types, paths, depth + 1);
+            } else if (depth < MAX_NESTING_DEPTH && isNestedCdt(typeService, type)) {
+                ColumnExtractor nested = forCdt(typeService, type);
+                for (int i = 0; i < nested.columnNames.length; i++) {
+                    Object[] nestedPath = new Object[path.length + nested.paths[i].length];
+                    System.arraycopy(path, 0, nestedPath, 0, path.length);
+                    System.arraycopy(nested.paths[i], 0, nestedPath, path.length, nested.paths[i].length);
+                    names.add(name + "." + nested.columnNames[i]);
+                    types.add(nested.columnTypes[i]);
+                    paths.add(nestedPath);
+                }
+            } else {
+                names.add(name);
+                types.add(type);
+                paths.add(path);
+            }
+        }
+    }
+
+
+    private static Object[] append(Object[] path, Object step) {
+        Object[] newPath = new Object[path.length + 1];
+        System.arraycopy(path, 0, newPath, 0, path.length);
+        newPath[path.length] = step;
+        return newPath;
+    }
+
+
+    /**
+     * Reads every column of a row into the supplied array
+     *
+     * @param row    A row from getRows()
+     * @param values The array to fill, at least getColumnCount() long. Missing or null values are set to null.
+     */
+    public void extract(Object row, Object[] values) {
+        for (int c = 0; c < paths.length; c++) {
+            Object[] path = paths[c];
+            Object value = row;
+            for (int s = 0; s < path.length && value != null; s++) {
+                if (value instanceof TypedValue) value = ((TypedValue) value).getValue();
+                Object step = path[s];
+
+                // A row shaped differently from the first has the value missing
+                if (step instanceof Integer) {
+                    if (!(value instanceof Object[])) {
+                        value = null;
+                        break;
+                    }
+                    Object[] fields = (Object[]) value;
+                    int index = (Integer) step;
+                    value = index < fields.length ? fields[index] : null;
+                } else {
+                    value = value instanceof Map ? ((Map<?, ?>) value).get(step) : null;
+                }
+            }
+            if (value instanceof TypedValue) value = ((TypedValue) value).getValue();
+            values[c] = value;
+        }
+    }
+
+
+    public int getColumnCount() {
+        return columnNames.length;
+    }
+
+    /**
+     * @return The column names, with nested fields joined by dots
+     */
+    public String[] getColumnNames() {
+        return columnNames.clone();
+    }
+
+    /**
+     * @return The Appian type ID of each column, or null where it is not known
+     */
+    public Long[] getColumnTypes() {
+        return columnTypes.clone();
+    }
+}
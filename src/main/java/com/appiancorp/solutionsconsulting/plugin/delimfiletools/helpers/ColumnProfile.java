@@ -0,0 +1,135 @@
+package com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers;
+
+import com.appiancorp.ps.plugins.typetransformer.AppianList;
+import com.appiancorp.ps.plugins.typetransformer.AppianObject;
+import com.appiancorp.ps.plugins.typetransformer.AppianTypeFactory;
+import com.appiancorp.suiteapi.type.AppianType;
+
+
+/**
+ * Running statistics for one column of a delimited file, in memory that does not grow with the number of rows:
+ * null and blank counts, value lengths, numeric range, the types the values look like, an approximate distinct count
+ * and the most frequent values.
+ */
+public class ColumnProfile {
+
+    private final String name;
+    private final HyperLogLog distinct = new HyperLogLog();
+    private final SpaceSaving frequent;
+
+    private long valueCount = 0;
+    private long nullCount = 0;
+    private long blankCount = 0;
+    private int minLength = Integer.MAX_VALUE;
+    private int maxLength = 0;
+    private double minNumber = Double.POSITIVE_INFINITY;
+    private double maxNumber = Double.NEGATIVE_INFINITY;
+    private int typesSeen = 0; // bit per ValueType ordinal
+
+
+    /**
+     * @param name         The column's name
+     * @param topValueSlots The number of counters kept for finding the most frequent values
+     */
+    public ColumnProfile(String name, int topValueSlots) {
+        this.name = name;
+        this.frequent = new SpaceSaving(topValueSlots);
+    }
+
+
+    /**
+     * Adds one row's value
+     *
+     * @param value The field, or null if the row had no such field
+     */
+    public void add(String value) {
+        if (value == null) {
+            nullCount++;
+            return;
+        }
+
+        valueCount++;
+        minLength = Math.min(minLength, value.length());
+        maxLength = Math.max(maxLength, value.length());
+        distinct.add(value);
+        frequent.add(value);
+
+        if (isBlank(value)) {
+            blankCount++;
+            return;
+        }
+
+        ValueType type = ValueType.classify(value.trim());
+        typesSeen |= 1 << type.ordinal();
+        if (type == ValueType.INTEGER || type == ValueType.DECIMAL) {
+            double number = Double.parseDouble(value.trim());
+            minNumber = Math.min(minNumber, number);
+            maxNumber = Math.max(maxNumber, number);
+        }
+    }
+
+
+    /**
+     * Counts rows that ended before this column
+     *
+     * @param rows The number of rows
+     */
+    public void addMissing(long rows) {
+        nullCount += rows;
+    }
+
+
+    /**
+     * @return The Appian type the non-blank values fit, e.g. "Number (Integer)", or "Text" if they fit no narrower one
+     */
+    public String getInferredType() {
+        for (ValueType type : ValueType.values()) {
+            boolean fits = true;
+            for (ValueType seen : ValueType.values())
+                if ((typesSeen & 1 << seen.ordinal()) != 0 && !type.accepts(seen)) fits = false;
+            if (fits && (typesSeen != 0 || type == ValueType.TEXT)) return type.getDisplayName();
+        }
+        return ValueType.TEXT.getDisplayName();
+    }
+
+
+    /**
+     * @param typeFactory An instance of the TypeTransformer's AppianTypeFactory, build using the TypeService injected by Appian
+     * @param topValues   The number of most frequent values to include
+     * @return The profile as an Appian Dictionary
+     */
+    public AppianObject toDictionary(AppianTypeFactory typeFactory, int topValues) {
+        AppianObject dictionary = (AppianObject) typeFactory.createElement(AppianType.DICTIONARY);
+        dictionary.put("name", typeFactory.createString(name));
+        dictionary.put("inferredType", typeFactory.createString(getInferredType()));
+        dictionary.put("valueCount", typeFactory.createLong(valueCount));
+        dictionary.put("nullCount", typeFactory.createLong(nullCount));
+        dictionary.put("blankCount", typeFactory.createLong(blankCount));
+        if (valueCount > 0) {
+            dictionary.put("minLength", typeFactory.createLong((long) minLength));
+            dictionary.put("maxLength", typeFactory.createLong((long) maxLength));
+        }
+        if (minNumber <= maxNumber) {
+            dictionary.put("minNumber", typeFactory.createDouble(minNumber));
+            dictionary.put("maxNumber", typeFactory.createDouble(maxNumber));
+        }
+        dictionary.put("distinctEstimate", typeFactory.createLong(Math.min(distinct.estimate(), valueCount)));
+
+        AppianList top = typeFactory.createList(AppianType.DICTIONARY);
+        for (Object[] entry : frequent.top(topValues)) {
+            AppianObject topValue = (AppianObject) typeFactory.createElement(AppianType.DICTIONARY);
+            topValue.put("value", typeFactory.createString((String) entry[0]));
+            topValue.put("count", typeFactory.createLong((Long) entry[1]));
+            top.add(topValue);
+        }
+        dictionary.put("topValues", top);
+        return dictionary;
+    }
+
+
+    static boolean isBlank(String value) {
+        for (int i = 0; i < value.length(); i++)
+            if (!Character.isWhitespace(value.charAt(i))) return false;
+        return true;
+    }
+}
@@ -0,0 +1,160 @@
+package com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers;
+
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.exceptions.InvalidContinuationTokenException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Base64;
+import java.util.zip.CRC32;
+
+
+/**
+ * An opaque string returned with a page of parse results, recording where the next page starts so it can be read
+ * without scanning the file from the top: the document version it applies to, the byte offset and startIndex of the
+ * next record, a fingerprint of the parser settings and the field names from the header.
+ * <p>
+ * Tokens always point at a record boundary, where the parser has nothing pending, so the settings are all the
+ * parser state that needs to be carried over.
+ */
+public class ContinuationToken {
+
+    private static final byte FORMAT = 1;
+
+    private final long documentId;
+    private final long versionFingerprint;
+    private final long size;
+    private final long offset;
+    private final int nextStartIndex;
+    private final int parserFingerprint;
+    private final boolean hasHeaderRow;
+    private final String[] fieldNames;
+
+
+    public ContinuationToken(DocumentVersion version, long offset, int nextStartIndex, int parserFingerprint, boolean hasHeaderRow, String[] fieldNames) {
+        this(version.getDocumentId(), version.getFingerprint(), version.getSize(), offset, nextStartIndex, parserFingerprint, hasHeaderRow, fieldNames);
+    }
+
+    private ContinuationToken(long documentId, long versionFingerprint, long size, long offset, int nextStartIndex, int parserFingerprint, boolean hasHeaderRow, String[] fieldNames) {
+        this.documentId = documentId;
+        this.versionFingerprint = versionFingerprint;
+        this.size = size;
+        this.offset = offset;
+        this.nextStartIndex = nextStartIndex;
+        this.parserFingerprint = parserFingerprint;
+        this.hasHeaderRow = hasHeaderRow;
+        this.fieldNames = fieldNames;
+    }
+
+
+    /**
+     * @return The token as a URL-safe Base64 string
+     */
+    public String encode() {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(FORMAT);
+            out.writeLong(documentId);
+            out.writeLong(versionFingerprint);
+            out.writeLong(size);
+            out.writeLong(offset);
+            out.writeInt(nextStartIndex);
+            out.writeInt(parserFingerprint);
+            out.writeBoolean(hasHeaderRow);
+            out.writeInt(fieldNames.length);
+            for (String fieldName : fieldNames)
+                out.writeUTF(fieldName);
+
+            CRC32 crc = new CRC32();
+            crc.update(bytes.toByteArray());
+            out.writeInt((int) crc.getValue());
+            out.flush();
+
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes.toByteArray());
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // not thrown by a ByteArrayOutputStream
+        }
+    }
+
+
+    /**
+     * @param token A string returned by encode()
+     * @return The decoded token
+     * @throws InvalidContinuationTokenException If the string is not a token, or has been altered
+     */
+    public static ContinuationToken decode(String token) throws InvalidContinuationTokenException {
+        byte[] bytes;
+        try {
+            bytes = Base64.getUrlDecoder().decode(token);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidContinuationTokenException("The continuationToken is not valid");
+        }
+        if (bytes.length < 5)
+            throw new InvalidContinuationTokenException("The continuationToken is not valid");
+
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length - 4);
+        int expected = ((bytes[bytes.length - 4] & 0xFF) << 24) | ((bytes[bytes.length - 3] & 0xFF) << 16)
+                | ((bytes[bytes.length - 2] & 0xFF) << 8) | (bytes[bytes.length - 1] & 0xFF);
+        if ((int) crc.getValue() != expected)
+            throw new InvalidContinuationTokenException("The continuationToken is not valid");
+
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes, 0, bytes.length - 4))) {
+            if (in.readByte() != FORMAT)
+                throw new InvalidContinuationTokenException("The continuationToken was created by a different version of the plugin");
+            long documentId = in.readLong();
+            long versionFingerprint = in.readLong();
+            long size = in.readLong();
+            long offset = in.readLong();
+            int nextStartIndex = in.readInt();
+            int parserFingerprint = in.readInt();
+            boolean hasHeaderRow = in.readBoolean();
+            // Each name takes at least its 2-byte length, so a larger count cannot be genuine
+            int fieldCount = in.readInt();
+            if (fieldCount < 0 || fieldCount > in.available() / 2)
+                throw new InvalidContinuationTokenException("The continuationToken is not valid");
+            String[] fieldNames = new String[fieldCount];
+            for (int i = 0; i < fieldNames.length; i++)
+                fieldNames[i] = in.readUTF();
+            return new ContinuationToken(documentId, versionFingerprint, size, offset, nextStartIndex, parserFingerprint, hasHeaderRow, fieldNames);
+        } catch (IOException e) {
+            throw new InvalidContinuationTokenException("The continuationToken is not valid");
+        }
+    }
+
+
+    /**
+     * Checks the token was issued for this document version and these parse settings
+     *
+     * @param version           The document's current version
+     * @param parserFingerprint From RecordFormat.getFingerprint() for the format about to be used
+     * @param hasHeaderRow      The hasHeaderRow argument of the current call
+     * @throws InvalidContinuationTokenException If the token cannot be used
+     */
+    public void checkApplies(DocumentVersion version, int parserFingerprint, boolean hasHeaderRow) throws InvalidContinuationTokenException {
+        if (documentId != version.getDocumentId())
+            throw new InvalidContinuationTokenException("The continuationToken was issued for a different document", "ContinuationTokenDocument");
+        if (versionFingerprint != version.getFingerprint() || size != version.getSize())
+            throw new InvalidContinuationTokenException("The document has changed since the continuationToken was issued; start again from the first page", "ContinuationTokenVersion");
+        if (offset < 0 || offset > size || nextStartIndex < 1)
+            throw new InvalidContinuationTokenException("The continuationToken is not valid");
+        if (this.parserFingerprint != parserFingerprint || this.hasHeaderRow != hasHeaderRow)
+            throw new InvalidContinuationTokenException("The continuationToken was issued for different parse settings", "ContinuationTokenSettings");
+    }
+
+
+    public long getOffset() {
+        return offset;
+    }
+
+    public int getNextStartIndex() {
+        return nextStartIndex;
+    }
+
+    public String[] getFieldNames() {
+        return fieldNames;
+    }
+}
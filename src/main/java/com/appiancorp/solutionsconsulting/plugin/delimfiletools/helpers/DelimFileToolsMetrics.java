@@ -0,0 +1,270 @@
+package com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.core.Logger;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+
+/**
+ * Process-wide counters and per-phase timings for the plugin, published as the JMX MBean
+ * com.appiancorp.solutionsconsulting.plugin.delimfiletools:type=Metrics and through getDelimFileToolsMetrics().
+ * <p>
+ * Recording is a LongAdder increment, so it is cheap enough to leave on for every call. Callers take a
+ * System.nanoTime() at the start of a phase and pass it to record() at the end.
+ */
+public class DelimFileToolsMetrics implements DynamicMBean {
+    private static final Logger LOG = (Logger) LogManager.getLogger(DelimFileToolsMetrics.class);
+
+    public static final String OBJECT_NAME = "com.appiancorp.solutionsconsulting.plugin.delimfiletools:type=Metrics";
+
+    /**
+     * The timed stages of the plugin's operations
+     */
+    public enum Phase {
+        SPOOL("spool"),         // copying a document to a temporary file
+        COUNT("count"),         // counting the lines in a document
+        INDEX("index"),         // reading a document, or what was appended to it, into its LineIndex
+        TOKENIZE("tokenize"),   // reading and splitting records
+        CONVERT("convert"),     // building the Appian values returned to SAIL
+        BATCH("batch"),         // the whole of parseDelimFiles
+        READ_LINES("readLines"),
+        SEARCH("search"),       // grepTextFile
+        PROFILE("profile"),     // profileDelimFile
+        VALIDATE("validate"),   // validateDelimFile
+        SAMPLE("sample"),       // sampleDelimFile
+        DIFF("diff"),           // the whole Compare Delimited Files smart service
+        JOIN("join"),           // the whole Join Delimited Files smart service
+        SPLIT("split"),         // the whole Split Delimited File smart service
+        MERGE("merge"),         // copying the parts in the Merge Delimited Files smart service
+        EXTRACT("extract"),     // turning Dictionaries and CDTs into strings for writing
+        WRITE("write"),
+        WRITE_DOCUMENT("writeDocument"), // the whole Write Delimited File smart service
+        ADMISSION_WAIT("admissionWait"); // heavy operations queued behind others
+
+        private final String name;
+        private final LongAdder count = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+        Phase(String name) {
+            this.name = name;
+        }
+    }
+
+    /**
+     * The plugin's running totals
+     */
+    public enum Counter {
+        BYTES_READ("bytesRead"),
+        BYTES_WRITTEN("bytesWritten"),
+        ROWS_PARSED("rowsParsed"),
+        ROWS_WRITTEN("rowsWritten"),
+        DOCUMENTS_WRITTEN("documentsWritten"),
+        LINES_READ("linesRead"),
+        LINES_SEARCHED("linesSearched"),
+        SPOOL_FILES("spoolFiles"),
+        SPOOL_BYTES("spoolBytes"),
+        TYPE_CACHE_HITS("typeCacheHits"),
+        TYPE_CACHE_MISSES("typeCacheMisses"),
+        EXTRACTOR_CACHE_HITS("extractorCacheHits"),
+        EXTRACTOR_CACHE_MISSES("extractorCacheMisses"),
+        RESULTS_TRUNCATED("resultsTruncated"),
+        PREFETCH_SUBMITTED("prefetchSubmitted"),
+        PREFETCH_REJECTED("prefetchRejected"),
+        PREFETCH_HITS("prefetchHits"),
+        RESULT_CACHE_HITS("resultCacheHits"),
+        RESULT_CACHE_MISSES("resultCacheMisses"),
+        HEADER_CACHE_HITS("headerCacheHits"),
+        HEADER_CACHE_MISSES("headerCacheMisses"),
+        OFF_HEAP_EXHAUSTED("offHeapExhausted"),
+        SPILL_PARTITIONS("spillPartitions"),
+        SPILL_BYTES("spillBytes"),
+        APPEND_EXTENSIONS("appendExtensions"),
+        APPEND_MISMATCHES("appendMismatches"),
+        ADMISSION_REJECTED("admissionRejected"),
+        ADMISSION_TIMEOUTS("admissionTimeouts"),
+        ERRORS("errors");
+
+        private final String name;
+        private final LongAdder value = new LongAdder();
+
+        Counter(String name) {
+            this.name = name;
+        }
+    }
+
+    /**
+     * Current values read when a snapshot is taken, e.g. the size of a cache; these are not reset
+     */
+    private static final Map<String, LongSupplier> GAUGES = new ConcurrentHashMap<>();
+
+    private static final DelimFileToolsMetrics INSTANCE = new DelimFileToolsMetrics();
+
+    static {
+        register();
+    }
+
+
+    private DelimFileToolsMetrics() {
+    }
+
+
+    /**
+     * Registers the MBean, replacing any left behind by a previous deployment of the plugin
+     */
+    private static void register() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name)) server.unregisterMBean(name);
+            server.registerMBean(INSTANCE, name);
+        } catch (Exception e) {
+            LOG.warn("Could not register the Delimited File Tools metrics MBean: " + e.getMessage());
+        }
+    }
+
+
+    /**
+     * Records one completed run of a phase
+     *
+     * @param phase     The phase that finished
+     * @param startNano The System.nanoTime() taken when the phase started
+     */
+    public static void record(Phase phase, long startNano) {
+        recordNanos(phase, System.nanoTime() - startNano);
+    }
+
+
+    /**
+     * Records one completed run of a phase whose time was added up separately, e.g. across the rows of a parse
+     *
+     * @param phase The phase that finished
+     * @param nanos The time spent in the phase
+     */
+    public static void recordNanos(Phase phase, long nanos) {
+        phase.count.increment();
+        phase.nanos.add(nanos);
+        phase.maxNanos.accumulate(nanos);
+    }
+
+
+    public static void increment(Counter counter) {
+        counter.value.increment();
+    }
+
+
+    public static void add(Counter counter, long amount) {
+        counter.value.add(amount);
+    }
+
+
+    /**
+     * Publishes a value that is read each time a snapshot is taken
+     *
+     * @param name  The metric's name
+     * @param gauge Reads the current value
+     */
+    public static void registerGauge(String name, LongSupplier gauge) {
+        GAUGES.put(name, gauge);
+    }
+
+
+    /**
+     * @return Every metric by name: each counter and gauge, plus the count, total milliseconds and maximum milliseconds of each phase
+     */
+    public static Map<String, Long> getSnapshot() {
+        Map<String, Long> snapshot = new LinkedHashMap<>();
+        for (Counter counter : Counter.values())
+            snapshot.put(counter.name, counter.value.sum());
+        for (Map.Entry<String, LongSupplier> gauge : new TreeMap<>(GAUGES).entrySet())
+            snapshot.put(gauge.getKey(), gauge.getValue().getAsLong());
+        for (Phase phase : Phase.values()) {
+            snapshot.put(phase.name + "Count", phase.count.sum());
+            snapshot.put(phase.name + "Millis", TimeUnit.NANOSECONDS.toMillis(phase.nanos.sum()));
+            snapshot.put(phase.name + "MaxMillis", TimeUnit.NANOSECONDS.toMillis(phase.maxNanos.get()));
+        }
+        return snapshot;
+    }
+
+
+    /**
+     * Sets every counter and phase back to zero
+     */
+    public static void reset() {
+        for (Counter counter : Counter.values())
+            counter.value.reset();
+        for (Phase phase : Phase.values()) {
+            phase.count.reset();
+            phase.nanos.reset();
+            phase.maxNanos.reset();
+        }
+    }
+
+
+    @Override
+    public Object getAttribute(String attribute) throws AttributeNotFoundException {
+        Long value = getSnapshot().get(attribute);
+        if (value == null) throw new AttributeNotFoundException(attribute);
+        return value;
+    }
+
+    @Override
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+        throw new AttributeNotFoundException("Delimited File Tools metrics are read-only");
+    }
+
+    @Override
+    public AttributeList getAttributes(String[] attributes) {
+        Map<String, Long> snapshot = getSnapshot();
+        AttributeList list = new AttributeList();
+        for (String attribute : attributes) {
+            if (snapshot.containsKey(attribute))
+                list.add(new Attribute(attribute, snapshot.get(attribute)));
+        }
+        return list;
+    }
+
+    @Override
+    public AttributeList setAttributes(AttributeList attributes) {
+        return new AttributeList();
+    }
+
+    @Override
+    public Object invoke(String actionName, Object[] params, String[] signature) {
+        if ("reset".equals(actionName)) reset();
+        return null;
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        Map<String, Long> snapshot = getSnapshot();
+        MBeanAttributeInfo[] attributes = new MBeanAttributeInfo[snapshot.size()];
+        int i = 0;
+        for (String name : snapshot.keySet())
+            attributes[i++] = new MBeanAttributeInfo(name, Long.class.getName(), name, true, false, false);
+
+        MBeanOperationInfo[] operations = {
+                new MBeanOperationInfo("reset", "Sets every metric back to zero", null, "void", MBeanOperationInfo.ACTION)
+        };
+
+        return new MBeanInfo(getClass().getName(), "Delimited File Tools metrics", attributes, null, operations, null);
+    }
+}
@@ -0,0 +1,139 @@
+package com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers;
+
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers.DelimFileToolsMetrics.Counter;
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers.DelimFileToolsMetrics.Phase;
+import com.appiancorp.suiteapi.common.exceptions.PrivilegeException;
+import com.appiancorp.suiteapi.common.exceptions.StorageLimitException;
+import com.appiancorp.suiteapi.content.ContentService;
+import com.appiancorp.suiteapi.content.exceptions.DuplicateUuidException;
+import com.appiancorp.suiteapi.content.exceptions.InsufficientNameUniquenessException;
+import com.appiancorp.suiteapi.content.exceptions.InvalidContentException;
+import com.opencsv.CSVWriter;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.core.Logger;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+
+
+/**
+ * Writes rows to a new Appian Document one at a time as they are produced, so a smart service can write a result
+ * of any size without holding it in memory. A result that cannot be finished is deleted with abort().
+ */
+public class DelimitedDocumentWriter implements Closeable {
+    private static final Logger LOG = (Logger) LogManager.getLogger(DelimitedDocumentWriter.class);
+
+    private final ContentService contentService;
+    private final Long document;
+    private final FileWriter fileWriter;
+    private final CSVWriter csvWriter;
+    private final boolean applyQuotesToAll;
+    private final long start = System.nanoTime();
+    private long rowsWritten = 0;
+    private boolean closed = false;
+
+
+    /**
+     * Creates an empty document and opens it for writing
+     *
+     * @param contentService   A ContentService instance injected by Appian
+     * @param parentFolder     The ID of the parent folder to save the doc in
+     * @param docName          The base name of the document, not including extension
+     * @param extension        The file extension of the document
+     * @param separator        The character to separate fields with, e.g. comma (,)
+     * @param quoteChar        The character to enclose a field with, usually double-quotes
+     * @param applyQuotesToAll Enclose every field with the quoteChar
+     * @param escapeChar       The character used to escape any quoteChar instances found in the data
+     * @param lineEnd          The line ending character(s) to write, eg. /n or /r/n
+     * @throws IOException                         If the document's file could not be opened
+     * @throws InvalidContentException             thrown by Appian
+     * @throws InsufficientNameUniquenessException thrown by Appian
+     * @throws DuplicateUuidException              thrown by Appian
+     * @throws StorageLimitException               thrown by Appian
+     * @throws PrivilegeException                  thrown by Appian
+     */
+    public DelimitedDocumentWriter(ContentService contentService, Long parentFolder, String docName, String extension,
+                                   char separator, char quoteChar, boolean applyQuotesToAll, char escapeChar, String lineEnd)
+            throws IOException, InvalidContentException, InsufficientNameUniquenessException, DuplicateUuidException, StorageLimitException, PrivilegeException {
+        this.contentService = contentService;
+        this.document = WriteHelper.createAppianDocument(contentService, docName, extension, parentFolder);
+        try {
+            this.fileWriter = WriteHelper.getWriterForAppianDocument(contentService, document);
+        } catch (InvalidContentException | IOException e) {
+            WriteHelper.deleteAppianDocument(contentService, document);
+            throw e;
+        }
+        this.csvWriter = new CSVWriter(new BufferedWriter(fileWriter, 1 << 16), separator, quoteChar, escapeChar, lineEnd);
+        this.applyQuotesToAll = applyQuotesToAll;
+    }
+
+
+    public void writeRow(String[] row) {
+        csvWriter.writeNext(row, applyQuotesToAll);
+        rowsWritten++;
+    }
+
+
+    public Long getDocumentId() {
+        return document;
+    }
+
+
+    public long getRowsWritten() {
+        return rowsWritten;
+    }
+
+
+    /**
+     * Flushes the rows and updates the document's size in Appian's content management
+     *
+     * @throws IOException If a row could not be written, or an I/O error occurs
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+
+        // writeRow() cannot throw, so CSVWriter keeps the first error until it is asked for it
+        boolean failed = csvWriter.checkError();
+        IOException writeError = csvWriter.getException();
+        csvWriter.close();
+        if (failed)
+            throw new IOException("Document " + document + " could not be written: "
+                    + (writeError == null ? "unknown error" : writeError.getMessage()), writeError);
+
+        try {
+            WriteHelper.closeWriterForAppianDocument(contentService, fileWriter, document);
+        } catch (InvalidContentException | PrivilegeException e) {
+            // This could only happen if the file was deleted or permissions changed during writing
+            throw new IOException("Document " + document + " could not be saved: " + e.getMessage(), e);
+        }
+        try {
+            DelimFileToolsMetrics.add(Counter.BYTES_WRITTEN, new File(contentService.getInternalFilename(document)).length());
+        } catch (InvalidContentException e) {
+            LOG.debug("Could not measure document {} for the metrics: {}", document, e.getMessage());
+        }
+        DelimFileToolsMetrics.record(Phase.WRITE, start);
+        DelimFileToolsMetrics.add(Counter.ROWS_WRITTEN, rowsWritten);
+    }
+
+
+    /**
+     * Closes the writer, if it is still open, and deletes the document, for when the rows written are not the
+     * whole result
+     */
+    public void abort() {
+        if (!closed) {
+            closed = true;
+            try {
+                csvWriter.close();
+            } catch (IOException e) {
+                LOG.debug("Could not close the incomplete document {}: {}", document, e.getMessage());
+            }
+        }
+        WriteHelper.deleteAppianDocument(contentService, document);
+    }
+}
@@ -0,0 +1,297 @@
+package com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers;
+
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.exceptions.InvalidFieldException;
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers.DelimFileToolsMetrics.Counter;
+import com.opencsv.ICSVParser;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.core.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+
+/**
+ * Class for comparing two versions of a delimited file by key columns. Each row of the old file is reduced to its key
+ * and a 64-bit hash of its other fields, held in memory with the row's byte offset; the new file is then streamed past
+ * them. Rows are only re-read (by offset) to be written out.
+ * <p>
+ * If the old file's keys outgrow the memory budget, both files are hash partitioned by key into temporary files and
+ * each partition is compared on its own, so the output is then grouped by partition rather than in file order. A
+ * partition whose keys still outgrow the budget fails the diff rather than being loaded regardless.
+ */
+public class DiffHelper {
+    private static final Logger LOG = (Logger) LogManager.getLogger(DiffHelper.class);
+
+    public static final String ADDED = "added";
+    public static final String REMOVED = "removed";
+    public static final String CHANGED = "changed";
+
+    // Rough heap cost of a map entry holding a key, its hash and its offset, not counting the key's characters
+    private static final int ENTRY_OVERHEAD_BYTES = 128;
+
+
+    /**
+     * The number of rows of each kind found by a diff
+     */
+    public static class DiffResult {
+        private long added = 0;
+        private long removed = 0;
+        private long changed = 0;
+        private long unchanged = 0;
+        private long duplicateKeys = 0;
+        private int partitions = 1;
+
+        public long getAdded() {
+            return added;
+        }
+
+        public long getRemoved() {
+            return removed;
+        }
+
+        public long getChanged() {
+            return changed;
+        }
+
+        public long getUnchanged() {
+            return unchanged;
+        }
+
+        /**
+         * @return The number of rows of the old file whose key had already been seen; only the last of them is compared
+         */
+        public long getDuplicateKeys() {
+            return duplicateKeys;
+        }
+
+        public int getPartitions() {
+            return partitions;
+        }
+    }
+
+
+    /**
+     * Checks the files' headers and key columns as diff() does, but without writing anything, so a caller can find
+     * these mistakes before creating the output document
+     *
+     * @param oldFile      The earlier version
+     * @param newFile      The later version
+     * @param parser       A valid ICSVParser instance, used for both files
+     * @param hasHeaderRow If true, the first line of each file contains the column names, which must be the same
+     * @param keyColumns   The names of the columns that identify a row
+     * @throws IOException           If a file could not be read
+     * @throws InvalidFieldException If the key columns are not in the files, or the headers differ
+     */
+    public static void checkColumns(File oldFile, File newFile, ICSVParser parser, boolean hasHeaderRow, String[] keyColumns)
+            throws IOException, InvalidFieldException {
+        try (RecordReader oldReader = new RecordReader(oldFile); RecordReader newReader = new RecordReader(newFile)) {
+            KeyColumns.resolve(keyColumns, hasHeaderRow ? readHeaders(oldReader, newReader, parser) : null);
+        }
+    }
+
+
+    /**
+     * Compares two files, writing each added, removed or changed row, prefixed with its change type, to out. Added and
+     * changed rows are written with their new values, removed rows with their old ones.
+     *
+     * @param oldFile      The earlier version
+     * @param newFile      The later version
+     * @param parser       A valid ICSVParser instance, used for both files
+     * @param hasHeaderRow If true, the first line of each file contains the column names, which must be the same
+     * @param keyColumns   The names of the columns that identify a row
+     * @param budget       Limits the memory used for the old file's keys before spilling to disk
+     * @param out          Where to write the differences
+     * @return The counts of each kind of row
+     * @throws IOException           If a file could not be read or the spill could not be written
+     * @throws InvalidFieldException If the key columns are not in the files, the headers differ, or one partition's
+     *                               keys still outgrow the budget
+     */
+    public static DiffResult diff(File oldFile, File newFile, ICSVParser parser, boolean hasHeaderRow, String[] keyColumns, ByteBudget budget, DelimitedDocumentWriter out)
+            throws IOException, InvalidFieldException {
+        DiffResult result = new DiffResult();
+
+        try (RecordReader oldReader = new RecordReader(oldFile); RecordReader newReader = new RecordReader(newFile)) {
+            String[] header = hasHeaderRow ? readHeaders(oldReader, newReader, parser) : null;
+            if (hasHeaderRow) {
+                String[] outputHeader = new String[header.length + 1];
+                outputHeader[0] = "changeType";
+                System.arraycopy(header, 0, outputHeader, 1, header.length);
+                out.writeRow(outputHeader);
+            }
+            KeyColumns keys = KeyColumns.resolve(keyColumns, header);
+            long oldDataStart = oldReader.getOffset();
+            long newDataStart = newReader.getOffset();
+
+            // Hold the old file's keys in memory if they fit
+            Map<String, long[]> oldRows = new HashMap<>();
+            long spillAt = -1;
+            String[] row;
+            long offset = oldDataStart;
+            while ((row = oldReader.readRecord(parser)) != null) {
+                String key = keys.key(row);
+                if (!budget.tryConsume(ENTRY_OVERHEAD_BYTES + 2L * key.length())) {
+                    spillAt = offset;
+                    break;
+                }
+                if (oldRows.put(key, new long[]{keys.hashOfOthers(row), offset}) != null) result.duplicateKeys++;
+                offset = oldReader.getOffset();
+            }
+
+            if (spillAt < 0) {
+                compareNewFile(oldRows, newReader, parser, keys, out, result);
+                writeRemoved(oldRows, oldReader, parser, out, result);
+            } else {
+                // Partition both files so each partition's keys fit, then compare them one by one
+                oldRows = null;
+                int partitions = RecordSpill.partitionsFor(oldFile.length() - oldDataStart, spillAt - oldDataStart);
+                LOG.debug("diff: keys outgrew {} bytes, spilling to {} partitions", budget.getLimit(), partitions);
+                result.partitions = partitions;
+                result.duplicateKeys = 0;
+
+                try (RecordSpill oldSpill = new RecordSpill(partitions); RecordSpill newSpill = new RecordSpill(partitions)) {
+                    spill(oldReader, oldDataStart, parser, keys, oldSpill);
+                    spill(newReader, newDataStart, parser, keys, newSpill);
+
+                    for (int p = 0; p < partitions; p++)
+                        comparePartition(oldSpill, newSpill, p, new ByteBudget(budget.getLimit()), oldReader, newReader, parser, out, result);
+                }
+            }
+        }
+
+        DelimFileToolsMetrics.add(Counter.ROWS_PARSED, result.added + result.changed + result.unchanged); // new file
+        DelimFileToolsMetrics.add(Counter.ROWS_PARSED, result.removed + result.changed + result.unchanged + result.duplicateKeys); // old file
+        LOG.debug("diff: {} added, {} removed, {} changed, {} unchanged", result.added, result.removed, result.changed, result.unchanged);
+        return result;
+    }
+
+
+    /**
+     * Reads both files' header rows
+     *
+     * @return The header, which is empty if the files are
+     * @throws InvalidFieldException If the headers differ
+     */
+    private static String[] readHeaders(RecordReader oldReader, RecordReader newReader, ICSVParser parser) throws IOException, InvalidFieldException {
+        String[] header = oldReader.readRecord(parser);
+        String[] newHeader = newReader.readRecord(parser);
+        if (header == null) header = new String[0];
+        if (!Arrays.equals(header, newHeader == null ? new String[0] : newHeader))
+            throw new InvalidFieldException("The two files' header rows differ");
+        return header;
+    }
+
+
+    /**
+     * Streams the new file past the old file's keys, writing added and changed rows as they are found. The keys left
+     * in oldRows afterwards are the removed rows.
+     */
+    private static void compareNewFile(Map<String, long[]> oldRows, RecordReader newReader, ICSVParser parser, KeyColumns keys, DelimitedDocumentWriter out, DiffResult result)
+            throws IOException {
+        String[] row;
+        while ((row = newReader.readRecord(parser)) != null) {
+            long[] old = oldRows.remove(keys.key(row));
+            if (old == null) {
+                out.writeRow(prefix(ADDED, row));
+                result.added++;
+            } else if (old[0] != keys.hashOfOthers(row)) {
+                out.writeRow(prefix(CHANGED, row));
+                result.changed++;
+            } else {
+                result.unchanged++;
+            }
+        }
+    }
+
+
+    /**
+     * Writes the rows of the old file that were not matched, re-reading them in file order
+     */
+    private static void writeRemoved(Map<String, long[]> unmatched, RecordReader oldReader, ICSVParser parser, DelimitedDocumentWriter out, DiffResult result)
+            throws IOException {
+        long[] offsets = new long[unmatched.size()];
+        int i = 0;
+        for (long[] old : unmatched.values()) offsets[i++] = old[1];
+        Arrays.sort(offsets);
+
+        for (long offset : offsets) {
+            oldReader.seek(offset);
+            out.writeRow(prefix(REMOVED, oldReader.readRecord(parser)));
+            result.removed++;
+        }
+    }
+
+
+    /**
+     * Writes each row's key, hash and offset to the partition its key belongs in
+     */
+    private static void spill(RecordReader reader, long dataStart, ICSVParser parser, KeyColumns keys, RecordSpill spill) throws IOException {
+        reader.seek(dataStart);
+        String[] row;
+        long offset = dataStart;
+        while ((row = reader.readRecord(parser)) != null) {
+            String key = keys.key(row);
+            spill.write(spill.partitionOf(key), new String[]{key, Long.toString(keys.hashOfOthers(row)), Long.toString(offset)});
+            offset = reader.getOffset();
+        }
+        spill.finishWriting();
+    }
+
+
+    /**
+     * Compares one partition of both files, holding the old side's keys in memory
+     *
+     * @param budget A fresh budget for this partition's keys
+     * @throws InvalidFieldException If the old side's keys outgrow the budget
+     */
+    private static void comparePartition(RecordSpill oldSpill, RecordSpill newSpill, int partition, ByteBudget budget, RecordReader oldReader, RecordReader newReader, ICSVParser parser, DelimitedDocumentWriter out, DiffResult result)
+            throws IOException, InvalidFieldException {
+        Map<String, long[]> oldRows = new HashMap<>();
+        try (RecordSpill.Reader reader = oldSpill.read(partition)) {
+            String[] entry;
+            while ((entry = reader.next()) != null) {
+                if (!budget.tryConsume(ENTRY_OVERHEAD_BYTES + 2L * entry[0].length()))
+                    throw RecordSpill.partitionTooLarge(partition, budget);
+                if (oldRows.put(entry[0], new long[]{Long.parseLong(entry[1]), Long.parseLong(entry[2])}) != null) result.duplicateKeys++;
+            }
+        }
+
+        // Offsets of the new rows to write, doubled, plus one if the row is changed rather than added
+        long[] written = new long[16];
+        int count = 0;
+        try (RecordSpill.Reader reader = newSpill.read(partition)) {
+            String[] entry;
+            while ((entry = reader.next()) != null) {
+                long[] old = oldRows.remove(entry[0]);
+                long offset = Long.parseLong(entry[2]);
+                if (old != null && old[0] == Long.parseLong(entry[1])) {
+                    result.unchanged++;
+                    continue;
+                }
+                if (count == written.length) written = Arrays.copyOf(written, count * 2);
+                written[count++] = offset * 2 + (old == null ? 0 : 1);
+            }
+        }
+
+        Arrays.sort(written, 0, count);
+        for (int i = 0; i < count; i++) {
+            boolean changed = (written[i] & 1) == 1;
+            newReader.seek(written[i] >>> 1);
+            out.writeRow(prefix(changed ? CHANGED : ADDED, newReader.readRecord(parser)));
+            if (changed) result.changed++;
+            else result.added++;
+        }
+
+        writeRemoved(oldRows, oldReader, parser, out, result);
+    }
+
+
+    private static String[] prefix(String changeType, String[] row) {
+        String[] prefixed = new String[row.length + 1];
+        prefixed[0] = changeType;
+        System.arraycopy(row, 0, prefixed, 1, row.length);
+        return prefixed;
+    }
+}
@@ -0,0 +1,64 @@
+package com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers;
+
+import com.appiancorp.suiteapi.content.ContentService;
+import com.appiancorp.suiteapi.content.exceptions.InvalidContentException;
+
+import java.io.File;
+
+
+/**
+ * Identifies the current version of an Appian Document by the file Appian stores it in.
+ * <p>
+ * Appian writes each document version to its own internal file, so the path, length and modification time together
+ * change whenever a new version is uploaded. Readers use the file directly instead of copying it to a temporary file.
+ */
+public class DocumentVersion {
+
+    private final Long documentId;
+    private final File file;
+    private final long size;
+    private final long lastModified;
+
+
+    private DocumentVersion(Long documentId, File file) {
+        this.documentId = documentId;
+        this.file = file;
+        this.size = file.length();
+        this.lastModified = file.lastModified();
+    }
+
+
+    /**
+     * @param contentService ContentService injected by Appian
+     * @param documentId     ID of the Appian Document
+     * @return The document's current version
+     * @throws InvalidContentException If the Appian document is not found
+     */
+    public static DocumentVersion resolve(ContentService contentService, Long documentId) throws InvalidContentException {
+        return new DocumentVersion(documentId, new File(contentService.getInternalFilename(documentId)));
+    }
+
+
+    public Long getDocumentId() {
+        return documentId;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+
+    /**
+     * @return A hash of the file's path, length and modification time, which changes with each new version
+     */
+    public long getFingerprint() {
+        long hash = file.getPath().hashCode();
+        hash = hash * 31 + size;
+        hash = hash * 31 + lastModified;
+        return hash;
+    }
+}
@@ -0,0 +1,216 @@
+package com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
+
+
+/**
+ * A small thread-safe cache that evicts the least recently used entries once it holds too many, or once their total
+ * weight (e.g. estimated bytes) is too large, and drops entries older than a time-to-live. Lookups through get() are
+ * counted as hits or misses. An optional listener is told of every value the cache drops, e.g. to free what it holds;
+ * a value taken out with remove() belongs to the caller instead.
+ *
+ * @param <K> Key type
+ * @param <V> Value type
+ */
+public class ExpiringLruCache<K, V> {
+
+    private static class Entry<V> {
+        final V value;
+        final long weight;
+        final long expiresAt;
+
+        Entry(V value, long weight, long expiresAt) {
+            this.value = value;
+            this.weight = weight;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private final int maxEntries;
+    private final long maxWeight;
+    private final long ttlNanos;
+    private final ToLongFunction<V> weigher;
+    private final Consumer<V> onRemoval;
+
+    private final LinkedHashMap<K, Entry<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalWeight = 0;
+    private long hits = 0;
+    private long misses = 0;
+
+
+    /**
+     * @param maxEntries The most entries to hold
+     * @param maxWeight  The most total weight to hold; an entry heavier than this on its own is not cached
+     * @param ttlMillis  How long an entry stays usable after it is put
+     * @param weigher    The weight of a value
+     */
+    public ExpiringLruCache(int maxEntries, long maxWeight, long ttlMillis, ToLongFunction<V> weigher) {
+        this(maxEntries, maxWeight, ttlMillis, weigher, null);
+    }
+
+
+    /**
+     * @param maxEntries The most entries to hold
+     * @param maxWeight  The most total weight to hold; an entry heavier than this on its own is not cached
+     * @param ttlMillis  How long an entry stays usable after it is put
+     * @param weigher    The weight of a value
+     * @param onRemoval  Called with each value the cache drops (expired, evicted, replaced, or not cached at all), or null
+     */
+    public ExpiringLruCache(int maxEntries, long maxWeight, long ttlMillis, ToLongFunction<V> weigher, Consumer<V> onRemoval) {
+        this.maxEntries = maxEntries;
+        this.maxWeight = maxWeight;
+        this.ttlNanos = ttlMillis * 1000000L;
+        this.weigher = weigher;
+        this.onRemoval = onRemoval;
+    }
+
+
+    /**
+     * @return The value for key, or null if there is none or it has expired
+     */
+    public synchronized V get(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        if (System.nanoTime() - entry.expiresAt > 0) {
+            dropped(removeEntry(key));
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.value;
+    }
+
+
+    /**
+     * Checks for a value without counting a hit or miss, or changing which entry is least recently used
+     *
+     * @return True if there is a value for key that has not expired
+     */
+    public synchronized boolean containsKey(K key) {
+        Entry<V> entry = entries.get(key);
+        return entry != null && System.nanoTime() - entry.expiresAt <= 0;
+    }
+
+
+    /**
+     * Removes and returns the value for key
+     *
+     * @return The value, or null if there was none or it had expired
+     */
+    public synchronized V remove(K key) {
+        Entry<V> entry = removeEntry(key);
+        if (entry == null) return null;
+        if (System.nanoTime() - entry.expiresAt > 0) {
+            dropped(entry);
+            return null;
+        }
+        return entry.value;
+    }
+
+
+    public synchronized void put(K key, V value) {
+        long weight = weigher.applyAsLong(value);
+        dropped(removeEntry(key));
+        if (weight > maxWeight) {
+            if (onRemoval != null) onRemoval.accept(value);
+            return;
+        }
+
+        entries.put(key, new Entry<>(value, weight, System.nanoTime() + ttlNanos));
+        totalWeight += weight;
+        evict();
+    }
+
+
+    /**
+     * Removes every entry whose key matches
+     *
+     * @return The number of entries removed
+     */
+    public synchronized int removeIf(Predicate<K> filter) {
+        int removed = 0;
+        Iterator<Map.Entry<K, Entry<V>>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<K, Entry<V>> entry = iterator.next();
+            if (!filter.test(entry.getKey())) continue;
+            totalWeight -= entry.getValue().weight;
+            iterator.remove();
+            dropped(entry.getValue());
+            removed++;
+        }
+        return removed;
+    }
+
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+
+    public synchronized long getTotalWeight() {
+        return totalWeight;
+    }
+
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+
+    /**
+     * @return The fraction of get() calls that found a value, or 0 before the first
+     */
+    public synchronized double getHitRate() {
+        return hits + misses == 0 ? 0 : (double) hits / (hits + misses);
+    }
+
+
+    public synchronized void clear() {
+        for (Entry<V> entry : entries.values())
+            dropped(entry);
+        entries.clear();
+        totalWeight = 0;
+    }
+
+
+    private void dropped(Entry<V> entry) {
+        if (entry != null && onRemoval != null) onRemoval.accept(entry.value);
+    }
+
+
+    private Entry<V> removeEntry(K key) {
+        Entry<V> entry = entries.remove(key);
+        if (entry != null) totalWeight -= entry.weight;
+        return entry;
+    }
+
+
+    /**
+     * Drops expired entries, then least recently used ones until within the limits
+     */
+    private void evict() {
+        long now = System.nanoTime();
+        Iterator<Map.Entry<K, Entry<V>>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Entry<V> entry = iterator.next().getValue();
+            boolean expired = now - entry.expiresAt > 0;
+            if (!expired && entries.size() <= maxEntries && totalWeight <= maxWeight) continue;
+            totalWeight -= entry.weight;
+            iterator.remove();
+            dropped(entry);
+        }
+    }
+}
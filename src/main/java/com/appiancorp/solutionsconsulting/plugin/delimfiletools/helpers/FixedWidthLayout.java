@@ -0,0 +1,233 @@
+package com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers;
+
+import com.appiancorp.ps.plugins.typetransformer.AppianElement;
+import com.appiancorp.ps.plugins.typetransformer.AppianList;
+import com.appiancorp.ps.plugins.typetransformer.AppianObject;
+import com.appiancorp.ps.plugins.typetransformer.AppianPrimitive;
+import com.appiancorp.ps.plugins.typetransformer.AppianTypeFactory;
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.exceptions.InvalidDictionaryException;
+import com.appiancorp.suiteapi.type.AppianType;
+import com.appiancorp.suiteapi.type.TypeService;
+import com.appiancorp.suiteapi.type.TypedValue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+
+/**
+ * The columns of a fixed-width file, as passed in a list of Dictionaries, e.g.
+ * <pre>
+ * {
+ *   { name: "account", start: 1, length: 10, type: "integer" },
+ *   { name: "name", start: 11, length: 30 },
+ *   { name: "opened", start: 41, length: 10, type: "date", trim: false }
+ * }
+ * </pre>
+ * start is the 1-based character position, as for mid(). Columns may be listed in any order, overlap, or leave parts
+ * of the line out. Values are trimmed of surrounding white space unless trim is false, and returned as Text unless
+ * a type of integer, decimal, boolean, date (yyyy-MM-dd) or datetime is given.
+ * <p>
+ * The layout is compiled once into arrays of offsets. A line of single-byte characters is sliced straight from the
+ * reader's line buffer without being decoded as a whole; any other line is decoded and sliced by character.
+ */
+public class FixedWidthLayout implements RecordFormat {
+
+    private final String[] names;
+    private final int[] starts;
+    private final int[] lengths;
+    private final boolean[] trims;
+    private final ValueType[] types;
+
+
+    private FixedWidthLayout(String[] names, int[] starts, int[] lengths, boolean[] trims, ValueType[] types) {
+        this.names = names;
+        this.starts = starts;
+        this.lengths = lengths;
+        this.trims = trims;
+        this.types = types;
+    }
+
+
+    /**
+     * Reads a FixedWidthLayout from a list of Dictionaries
+     *
+     * @param typeService TypeService injected by Appian
+     * @param layout      The list of Dictionaries passed in by the user
+     * @return The FixedWidthLayout
+     * @throws InvalidDictionaryException If layout is not a list of Dictionaries, or a column is not valid
+     */
+    public static FixedWidthLayout fromTypedValue(TypeService typeService, TypedValue layout) throws InvalidDictionaryException {
+        if (layout == null || layout.getValue() == null) throw new InvalidDictionaryException("You must supply the layout of the columns");
+
+        AppianTypeFactory typeFactory = AppianTypeFactory.newInstance(typeService);
+        AppianElement element;
+        try {
+            element = typeFactory.toAppianElement(layout);
+        } catch (Exception e) {
+            throw new InvalidDictionaryException("layout must be a list of Dictionaries");
+        }
+        if (element instanceof AppianObject) {
+            AppianList single = typeFactory.createList(AppianType.DICTIONARY);
+            single.add(element);
+            element = single;
+        }
+        if (!(element instanceof AppianList) || ((AppianList) element).isEmpty())
+            throw new InvalidDictionaryException("layout must be a list of Dictionaries");
+
+        AppianList columns = (AppianList) element;
+        int count = columns.size();
+        String[] names = new String[count];
+        int[] starts = new int[count];
+        int[] lengths = new int[count];
+        boolean[] trims = new boolean[count];
+        ValueType[] types = new ValueType[count];
+        Set<String> seen = new HashSet<>();
+
+        for (int i = 0; i < count; i++) {
+            String path = "layout[" + (i + 1) + "]";
+            if (!(columns.get(i) instanceof AppianObject))
+                throw new InvalidDictionaryException(path + " must be a Dictionary");
+
+            starts[i] = -1;
+            trims[i] = true;
+            types[i] = ValueType.TEXT;
+            for (Map.Entry<String, AppianElement> entry : ((AppianObject) columns.get(i)).entrySet()) {
+                String key = entry.getKey();
+                if (!(entry.getValue() instanceof AppianPrimitive))
+                    throw new InvalidDictionaryException(path + "." + key + " must be a single value");
+                AppianPrimitive value = (AppianPrimitive) entry.getValue();
+                Object raw = value.getValue();
+                if (raw == null) continue;
+
+                switch (key) {
+                    case "name":
+                        names[i] = raw.toString();
+                        break;
+                    case "start":
+                        starts[i] = position(raw, path + ".start") - 1;
+                        break;
+                    case "length":
+                        lengths[i] = position(raw, path + ".length");
+                        break;
+                    case "trim":
+                        if (!value.isBoolean())
+                            throw new InvalidDictionaryException(path + ".trim must be true or false");
+                        trims[i] = value.getBoolean();
+                        break;
+                    case "type":
+                        types[i] = ValueType.fromName(raw.toString());
+                        if (types[i] == null)
+                            throw new InvalidDictionaryException(path + ".type must be one of integer, decimal, boolean, date, datetime or text");
+                        break;
+                    default:
+                        throw new InvalidDictionaryException(path + "." + key + " is not a recognized setting");
+                }
+            }
+
+            if (names[i] == null || names[i].isEmpty())
+                throw new InvalidDictionaryException(path + ".name is required");
+            if (!seen.add(names[i]))
+                throw new InvalidDictionaryException(path + ".name " + names[i] + " is used by another column");
+            if (starts[i] < 0 || lengths[i] == 0)
+                throw new InvalidDictionaryException(path + ".start and " + path + ".length are required");
+            if ((long) starts[i] + lengths[i] > Integer.MAX_VALUE)
+                throw new InvalidDictionaryException(path + " must end by position " + Integer.MAX_VALUE);
+        }
+
+        return new FixedWidthLayout(names, starts, lengths, trims, types);
+    }
+
+
+    /**
+     * @param raw  The value of a start or length setting
+     * @param path The setting's path, for the error message
+     * @return The value, if it is a number from 1 to Integer.MAX_VALUE
+     * @throws InvalidDictionaryException If it is not
+     */
+    private static int position(Object raw, String path) throws InvalidDictionaryException {
+        if (!(raw instanceof Number) || ((Number) raw).longValue() < 1 || ((Number) raw).longValue() > Integer.MAX_VALUE)
+            throw new InvalidDictionaryException(path + " must be a number from 1 to " + Integer.MAX_VALUE);
+        return ((Number) raw).intValue();
+    }
+
+
+    /**
+     * Slices the next line into the layout's columns. A column running past the end of a short line is cut short, or
+     * empty if it starts after it.
+     */
+    @Override
+    public String[] readRecord(RecordReader reader) throws IOException {
+        if (!reader.readLineBytes()) return null;
+        byte[] line = reader.getLineBytes();
+        int length = reader.getLineLength();
+
+        String decoded = null;
+        for (int i = 0; i < length; i++) {
+            if (line[i] < 0) {
+                decoded = new String(line, 0, length, reader.getCharset());
+                break;
+            }
+        }
+
+        String[] fields = new String[names.length];
+        for (int c = 0; c < names.length; c++) {
+            int available = decoded == null ? length : decoded.length();
+            int start = Math.min(starts[c], available);
+            int end = Math.min(starts[c] + lengths[c], available);
+
+            // Trim by moving the bounds, so only the value itself is copied
+            if (trims[c] || types[c] != ValueType.TEXT) {
+                if (decoded == null) {
+                    while (start < end && line[start] <= ' ') start++;
+                    while (end > start && line[end - 1] <= ' ') end--;
+                } else {
+                    while (start < end && decoded.charAt(start) <= ' ') start++;
+                    while (end > start && decoded.charAt(end - 1) <= ' ') end--;
+                }
+            }
+
+            fields[c] = decoded != null ? decoded.substring(start, end)
+                    : start == end ? "" : new String(line, start, end - start, StandardCharsets.ISO_8859_1);
+        }
+        return fields;
+    }
+
+
+    /**
+     * @return The layout's column names; a header row is skipped, not read
+     */
+    @Override
+    public String[] getFieldNames(String[] firstRecord, boolean hasHeaderRow) {
+        return names;
+    }
+
+
+    @Override
+    public ValueType[] getFieldTypes() {
+        for (ValueType type : types)
+            if (type != ValueType.TEXT) return types;
+        return null;
+    }
+
+
+    @Override
+    public int getFingerprint() {
+        StringBuilder settings = new StringBuilder(FixedWidthLayout.class.getName());
+        for (int i = 0; i < names.length; i++)
+            settings.append('|').append(names[i]).append(',').append(starts[i]).append(',').append(lengths[i])
+                    .append(',').append(trims[i]).append(',').append(types[i].getKey());
+        return settings.toString().hashCode();
+    }
+
+
+    /**
+     * @return This layout, which holds no state between records
+     */
+    @Override
+    public RecordFormat copy() {
+        return this;
+    }
+}
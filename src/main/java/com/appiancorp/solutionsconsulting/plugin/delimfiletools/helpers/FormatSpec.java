@@ -0,0 +1,179 @@
+package com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers;
+
+import com.appiancorp.ps.plugins.typetransformer.AppianElement;
+import com.appiancorp.ps.plugins.typetransformer.AppianObject;
+import com.appiancorp.ps.plugins.typetransformer.AppianPrimitive;
+import com.appiancorp.ps.plugins.typetransformer.AppianTypeFactory;
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.exceptions.InvalidDictionaryException;
+import com.appiancorp.suiteapi.type.TypeService;
+import com.appiancorp.suiteapi.type.TypedValue;
+
+import java.util.HashMap;
+import java.util.Map;
+
+
+/**
+ * The options controlling how values are written as text, as passed in a formatSpec Dictionary, e.g.
+ * <pre>
+ * {
+ *   datePattern: "MM/dd/yyyy",
+ *   dateTimePattern: "yyyy-MM-dd HH:mm",
+ *   timePattern: "HH:mm",
+ *   timeZone: "America/New_York",
+ *   decimalScale: 2,
+ *   trueValue: "Y",
+ *   falseValue: "N",
+ *   nullValue: "NULL",
+ *   columns: { amount: { decimalScale: 4 } }
+ * }
+ * </pre>
+ * Every key is optional. Entries under columns apply to that column only (by field name, with dots for nested fields)
+ * and fall back to the top-level values.
+ */
+public class FormatSpec {
+
+    private String datePattern;
+    private String dateTimePattern;
+    private String timePattern;
+    private String timeZone;
+    private Integer decimalScale;
+    private String trueValue;
+    private String falseValue;
+    private String nullValue;
+    private Map<String, FormatSpec> columns = new HashMap<>();
+
+
+    /**
+     * Reads a FormatSpec from a Dictionary or CDT
+     *
+     * @param typeService TypeService injected by Appian
+     * @param formatSpec  The Dictionary passed in by the user, may be null
+     * @return The FormatSpec; empty (all defaults) if formatSpec was null
+     * @throws InvalidDictionaryException If formatSpec is not a Dictionary, or a value is of the wrong type
+     */
+    public static FormatSpec fromTypedValue(TypeService typeService, TypedValue formatSpec) throws InvalidDictionaryException {
+        if (formatSpec == null || formatSpec.getValue() == null) return new FormatSpec();
+
+        AppianElement element;
+        try {
+            element = AppianTypeFactory.newInstance(typeService).toAppianElement(formatSpec);
+        } catch (Exception e) {
+            throw new InvalidDictionaryException("formatSpec must be a Dictionary");
+        }
+        if (element instanceof AppianPrimitive && ((AppianPrimitive) element).isNull()) return new FormatSpec();
+        if (!(element instanceof AppianObject)) throw new InvalidDictionaryException("formatSpec must be a Dictionary");
+
+        return fromAppianObject((AppianObject) element, true);
+    }
+
+
+    private static FormatSpec fromAppianObject(AppianObject object, boolean allowColumns) throws InvalidDictionaryException {
+        FormatSpec spec = new FormatSpec();
+        for (Map.Entry<String, AppianElement> entry : object.entrySet()) {
+            String key = entry.getKey();
+            AppianElement value = entry.getValue();
+
+            if ("columns".equals(key) && allowColumns) {
+                if (!(value instanceof AppianObject))
+                    throw new InvalidDictionaryException("formatSpec.columns must be a Dictionary of column names to format specs");
+                for (Map.Entry<String, AppianElement> column : ((AppianObject) value).entrySet()) {
+                    if (!(column.getValue() instanceof AppianObject))
+                        throw new InvalidDictionaryException("formatSpec.columns." + column.getKey() + " must be a Dictionary");
+                    spec.columns.put(column.getKey(), fromAppianObject((AppianObject) column.getValue(), false));
+                }
+                continue;
+            }
+
+            if (!(value instanceof AppianPrimitive))
+                throw new InvalidDictionaryException("formatSpec." + key + " must be a single value");
+            Object raw = ((AppianPrimitive) value).getValue();
+            if (raw == null) continue;
+
+            switch (key) {
+                case "datePattern":
+                    spec.datePattern = raw.toString();
+                    break;
+                case "dateTimePattern":
+                    spec.dateTimePattern = raw.toString();
+                    break;
+                case "timePattern":
+                    spec.timePattern = raw.toString();
+                    break;
+                case "timeZone":
+                    spec.timeZone = raw.toString();
+                    break;
+                case "decimalScale":
+                    if (!(raw instanceof Number))
+                        throw new InvalidDictionaryException("formatSpec.decimalScale must be a number");
+                    spec.decimalScale = ((Number) raw).intValue();
+                    break;
+                case "trueValue":
+                    spec.trueValue = raw.toString();
+                    break;
+                case "falseValue":
+                    spec.falseValue = raw.toString();
+                    break;
+                case "nullValue":
+                    spec.nullValue = raw.toString();
+                    break;
+                default:
+                    throw new InvalidDictionaryException("formatSpec." + key + " is not a recognized option");
+            }
+        }
+        return spec;
+    }
+
+
+    /**
+     * @param columnName The column name, with dots for nested fields
+     * @return This spec with any options set for the given column applied on top
+     */
+    public FormatSpec forColumn(String columnName) {
+        FormatSpec column = columns.get(columnName);
+        if (column == null) return this;
+
+        FormatSpec merged = new FormatSpec();
+        merged.datePattern = column.datePattern != null ? column.datePattern : datePattern;
+        merged.dateTimePattern = column.dateTimePattern != null ? column.dateTimePattern : dateTimePattern;
+        merged.timePattern = column.timePattern != null ? column.timePattern : timePattern;
+        merged.timeZone = column.timeZone != null ? column.timeZone : timeZone;
+        merged.decimalScale = column.decimalScale != null ? column.decimalScale : decimalScale;
+        merged.trueValue = column.trueValue != null ? column.trueValue : trueValue;
+        merged.falseValue = column.falseValue != null ? column.falseValue : falseValue;
+        merged.nullValue = column.nullValue != null ? column.nullValue : nullValue;
+        return merged;
+    }
+
+
+    public String getDatePattern() {
+        return datePattern;
+    }
+
+    public String getDateTimePattern() {
+        return dateTimePattern;
+    }
+
+    public String getTimePattern() {
+        return timePattern;
+    }
+
+    public String getTimeZone() {
+        return timeZone;
+    }
+
+    public Integer getDecimalScale() {
+        return decimalScale;
+    }
+
+    public String getTrueValue() {
+        return trueValue;
+    }
+
+    public String getFalseValue() {
+        return falseValue;
+    }
+
+    public String getNullValue() {
+        return nullValue;
+    }
+}
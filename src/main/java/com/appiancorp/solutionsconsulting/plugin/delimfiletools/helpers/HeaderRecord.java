@@ -0,0 +1,138 @@
+package com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers;
+
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers.DelimFileToolsMetrics.Counter;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * The first record of a document version and where the record after it starts, read once and kept so that the
+ * header of a document can be looked up, and each page of it parsed, without reading and splitting the first record
+ * again. Only the first record is read; nothing after it is touched.
+ * <p>
+ * Records are kept per document and format settings, and replaced when a new version of the document is read. Sized
+ * by the system properties delimfiletools.headerCache.maxEntries (default 1024), delimfiletools.headerCache.maxBytes
+ * (8 MB) and delimfiletools.headerCache.ttlSeconds (3600).
+ */
+public class HeaderRecord {
+
+    private static final ExpiringLruCache<String, HeaderRecord> HEADERS = new ExpiringLruCache<>(
+            Integer.getInteger("delimfiletools.headerCache.maxEntries", 1024),
+            Long.getLong("delimfiletools.headerCache.maxBytes", 8L * 1024 * 1024),
+            TimeUnit.SECONDS.toMillis(Long.getLong("delimfiletools.headerCache.ttlSeconds", 3600)),
+            HeaderRecord::getEstimatedBytes);
+
+    static {
+        DelimFileToolsMetrics.registerGauge("headerCacheEntries", HEADERS::size);
+        DelimFileToolsMetrics.registerGauge("headerCacheHitPercent", () -> Math.round(HEADERS.getHitRate() * 100));
+    }
+
+    private final long versionFingerprint;
+    private final String[] names;
+    private final String[] fieldNames;
+    private final String[] positionalFieldNames;
+    private final long endOffset;
+    private final long lines;
+
+
+    private HeaderRecord(long versionFingerprint, String[] names, RecordFormat format, long endOffset, long lines) {
+        this.versionFingerprint = versionFingerprint;
+        this.names = names;
+        this.fieldNames = format.getFieldNames(names, true);
+        this.positionalFieldNames = format.getFieldNames(names, false);
+        this.endOffset = endOffset;
+        this.lines = lines;
+    }
+
+
+    /**
+     * Gets the first record of a document version, reading it with the given reader if it is not already known
+     *
+     * @param version The document version
+     * @param format  How to split the record into fields
+     * @param reader  A reader of this version of the file, at its start; left anywhere
+     * @return The first record, which has no names if the file is empty
+     * @throws IOException If the file could not be read
+     */
+    public static HeaderRecord read(DocumentVersion version, RecordFormat format, RecordReader reader) throws IOException {
+        String key = version.getDocumentId() + ":" + format.getFingerprint();
+        HeaderRecord header = HEADERS.get(key);
+        if (header != null && header.versionFingerprint == version.getFingerprint()) {
+            DelimFileToolsMetrics.increment(Counter.HEADER_CACHE_HITS);
+            return header;
+        }
+
+        DelimFileToolsMetrics.increment(Counter.HEADER_CACHE_MISSES);
+        String[] record = format.readRecord(reader);
+        header = new HeaderRecord(version.getFingerprint(), record == null ? new String[0] : record, format,
+                reader.getOffset(), reader.getLinesRead());
+        HEADERS.put(key, header);
+        return header;
+    }
+
+
+    /**
+     * Gets the first record of a document version, opening the file only if it is not already known
+     *
+     * @param version The document version
+     * @param format  How to split the record into fields
+     * @return The first record, which has no names if the file is empty
+     * @throws IOException If the file could not be read
+     */
+    public static HeaderRecord read(DocumentVersion version, RecordFormat format) throws IOException {
+        try (RecordReader reader = new RecordReader(version.getFile())) {
+            return read(version, format, reader);
+        }
+    }
+
+
+    /**
+     * @return The fields of the first record as they appear in the file
+     */
+    public String[] getNames() {
+        return names;
+    }
+
+    /**
+     * @return The names with anything but letters and digits replaced by underscores, as used for Dictionary keys
+     */
+    public String[] getFieldNames() {
+        return fieldNames;
+    }
+
+    /**
+     * @param hasHeaderRow If true, the first record is a header row
+     * @return The Dictionary keys the format gives the fields of each row, e.g. c1, c2, ... without a header row
+     */
+    public String[] getFieldNames(boolean hasHeaderRow) {
+        return hasHeaderRow ? fieldNames : positionalFieldNames;
+    }
+
+    /**
+     * @return The byte offset of the record after the first
+     */
+    public long getEndOffset() {
+        return endOffset;
+    }
+
+    /**
+     * @return The number of lines the first record spans
+     */
+    public long getLines() {
+        return lines;
+    }
+
+
+    private long getEstimatedBytes() {
+        return 64 + 3 * ByteBudget.estimateRow(names);
+    }
+
+
+    /**
+     * Drops every record kept
+     */
+    public static void clear() {
+        HEADERS.clear();
+    }
+}
@@ -0,0 +1,350 @@
+package com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers;
+
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.exceptions.InvalidFieldException;
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers.DelimFileToolsMetrics.Counter;
+import com.opencsv.ICSVParser;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.core.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * Class for joining the rows of one delimited file with the matching rows of another by key columns. A hash table is
+ * built from the smaller file and the larger one is streamed through it, so only the smaller file is held in memory.
+ * <p>
+ * If the smaller file outgrows the memory budget, both files are hash partitioned by key into temporary files and
+ * each partition is joined on its own (a grace hash join), so the output is then grouped by partition. Output is
+ * otherwise in the order of the streamed file; for a left join built from the left file, left rows with no match
+ * follow the matched ones. A partition whose rows still outgrow the budget fails the join rather than being loaded
+ * regardless.
+ */
+public class JoinHelper {
+    private static final Logger LOG = (Logger) LogManager.getLogger(JoinHelper.class);
+
+    // Rough heap cost of a hash table entry, on top of the row held in it
+    private static final int ENTRY_OVERHEAD_BYTES = 64;
+
+
+    /**
+     * The outcome of a join
+     */
+    public static class JoinResult {
+        private long rowsRead = 0;
+        private long rowsWritten = 0;
+        private long unmatchedLeftRows = 0;
+        private boolean builtFromLeft;
+        private int partitions = 1;
+
+        public long getRowsWritten() {
+            return rowsWritten;
+        }
+
+        /**
+         * @return The number of left rows with no matching right row; written with empty right columns by a left join
+         */
+        public long getUnmatchedLeftRows() {
+            return unmatchedLeftRows;
+        }
+
+        public boolean isBuiltFromLeft() {
+            return builtFromLeft;
+        }
+
+        public int getPartitions() {
+            return partitions;
+        }
+    }
+
+
+    /**
+     * The rows of a key in the hash table, and whether any probe row has matched them
+     */
+    private static class Bucket {
+        final List<String[]> rows = new ArrayList<>(1);
+        boolean matched = false;
+    }
+
+
+    /**
+     * A source of keyed records: element 0 is the key, the rest are the fields to output
+     */
+    private interface KeyedRows {
+        String[] next() throws IOException, InvalidFieldException;
+    }
+
+
+    /**
+     * Checks the key columns as join() does, but without writing anything, so a caller can find these mistakes
+     * before creating the output document
+     *
+     * @param leftFile        The file whose rows are enriched
+     * @param rightFile       The file whose columns are added
+     * @param parser          A valid ICSVParser instance, used for both files
+     * @param hasHeaderRow    If true, the first line of each file contains the column names
+     * @param leftKeyColumns  The names of the left file's key columns
+     * @param rightKeyColumns The names of the right file's key columns, in the same order
+     * @throws IOException           If a file could not be read
+     * @throws InvalidFieldException If a key column is not in its file, or the numbers of key columns differ
+     */
+    public static void checkColumns(File leftFile, File rightFile, ICSVParser parser, boolean hasHeaderRow, String[] leftKeyColumns, String[] rightKeyColumns)
+            throws IOException, InvalidFieldException {
+        checkKeyCounts(leftKeyColumns, rightKeyColumns);
+        try (RecordReader leftReader = new RecordReader(leftFile); RecordReader rightReader = new RecordReader(rightFile)) {
+            KeyColumns.resolve(leftKeyColumns, hasHeaderRow ? orEmpty(leftReader.readRecord(parser)) : null);
+            KeyColumns.resolve(rightKeyColumns, hasHeaderRow ? orEmpty(rightReader.readRecord(parser)) : null);
+        }
+    }
+
+
+    /**
+     * Joins two files, writing each left row followed by the non-key columns of each matching right row to out
+     *
+     * @param leftFile        The file whose rows are enriched
+     * @param rightFile       The file whose columns are added
+     * @param parser          A valid ICSVParser instance, used for both files
+     * @param hasHeaderRow    If true, the first line of each file contains the column names, and a header is written
+     * @param leftKeyColumns  The names of the left file's key columns
+     * @param rightKeyColumns The names of the right file's key columns, in the same order
+     * @param leftJoin        If true, left rows with no match are written with empty right columns; otherwise they are dropped
+     * @param budget          Limits the memory used for the hash table before spilling to disk
+     * @param out             Where to write the joined rows
+     * @return The outcome
+     * @throws IOException           If a file could not be read or the spill could not be written
+     * @throws InvalidFieldException If a key column is not in its file, the numbers of key columns differ, a row has
+     *                               more fields than its file's header row (or first row, without one), or one
+     *                               partition's rows still outgrow the budget
+     */
+    public static JoinResult join(File leftFile, File rightFile, ICSVParser parser, boolean hasHeaderRow, String[] leftKeyColumns, String[] rightKeyColumns,
+                                  boolean leftJoin, ByteBudget budget, DelimitedDocumentWriter out) throws IOException, InvalidFieldException {
+        checkKeyCounts(leftKeyColumns, rightKeyColumns);
+
+        JoinResult result = new JoinResult();
+        result.builtFromLeft = leftFile.length() < rightFile.length();
+
+        try (RecordReader leftReader = new RecordReader(leftFile); RecordReader rightReader = new RecordReader(rightFile)) {
+            String[] leftHeader = hasHeaderRow ? orEmpty(leftReader.readRecord(parser)) : null;
+            String[] rightHeader = hasHeaderRow ? orEmpty(rightReader.readRecord(parser)) : null;
+            final KeyColumns leftKeys = KeyColumns.resolve(leftKeyColumns, leftHeader);
+            final KeyColumns rightKeys = KeyColumns.resolve(rightKeyColumns, rightHeader);
+            final long leftStart = leftReader.getOffset();
+            final long rightStart = rightReader.getOffset();
+
+            // Every output row has the same columns: all of the left's, then the right's that are not keys. They are
+            // those of each file's header row, or without one its first row, and a wider row would lose fields, so it
+            // is an error.
+            final int leftWidth = hasHeaderRow ? leftHeader.length : firstRowWidth(leftReader, parser, leftStart);
+            final int rightWidth = hasHeaderRow ? rightHeader.length : firstRowWidth(rightReader, parser, rightStart);
+            final int[] rightValues = nonKeyIndexes(rightKeys, rightWidth);
+            if (hasHeaderRow) out.writeRow(joinHeader(leftHeader, rightHeader, rightValues));
+
+            KeyedRows left = () -> {
+                String[] row = leftReader.readRecord(parser);
+                if (row == null) return null;
+                result.rowsRead++;
+                if (row.length > leftWidth) throw tooWide("left", row.length, leftWidth, hasHeaderRow);
+                return keyed(leftKeys.key(row), fit(row, leftWidth));
+            };
+            KeyedRows right = () -> {
+                String[] row = rightReader.readRecord(parser);
+                if (row == null) return null;
+                result.rowsRead++;
+                if (row.length > rightWidth) throw tooWide("right", row.length, rightWidth, hasHeaderRow);
+                return keyed(rightKeys.key(row), pick(row, rightValues));
+            };
+            KeyedRows build = result.builtFromLeft ? left : right;
+            KeyedRows probe = result.builtFromLeft ? right : left;
+            RecordReader buildReader = result.builtFromLeft ? leftReader : rightReader;
+            long buildStart = result.builtFromLeft ? leftStart : rightStart;
+            File buildFile = result.builtFromLeft ? leftFile : rightFile;
+
+            Map<String, Bucket> table = new HashMap<>();
+            if (load(table, build, budget)) {
+                probe(table, probe, leftJoin, rightValues.length, out, result);
+            } else {
+                // Partition both files so each partition's hash table fits, then join them one by one
+                int partitions = RecordSpill.partitionsFor(buildFile.length() - buildStart, buildReader.getOffset() - buildStart);
+                LOG.debug("join: hash table outgrew {} bytes, spilling to {} partitions", budget.getLimit(), partitions);
+                result.partitions = partitions;
+                table = null;
+
+                // Both files are read again from the start, and their rows should only be counted once
+                result.rowsRead = 0;
+
+                try (RecordSpill buildSpill = new RecordSpill(partitions); RecordSpill probeSpill = new RecordSpill(partitions)) {
+                    leftReader.seek(leftStart);
+                    rightReader.seek(rightStart);
+                    spill(build, buildSpill);
+                    spill(probe, probeSpill);
+
+                    for (int p = 0; p < partitions; p++) {
+                        try (RecordSpill.Reader buildPartition = buildSpill.read(p); RecordSpill.Reader probePartition = probeSpill.read(p)) {
+                            Map<String, Bucket> partitionTable = new HashMap<>();
+                            ByteBudget partitionBudget = new ByteBudget(budget.getLimit());
+                            if (!load(partitionTable, buildPartition::next, partitionBudget))
+                                throw RecordSpill.partitionTooLarge(p, partitionBudget);
+                            probe(partitionTable, probePartition::next, leftJoin, rightValues.length, out, result);
+                        }
+                    }
+                }
+            }
+        }
+
+        DelimFileToolsMetrics.add(Counter.ROWS_PARSED, result.rowsRead);
+        LOG.debug("join: {} rows written, {} unmatched left rows, built from {}", result.rowsWritten, result.unmatchedLeftRows, result.builtFromLeft ? "left" : "right");
+        return result;
+    }
+
+
+    /**
+     * Fills the hash table from the build rows
+     *
+     * @return False, leaving the table partly filled, if the rows outgrew the budget
+     */
+    private static boolean load(Map<String, Bucket> table, KeyedRows rows, ByteBudget budget) throws IOException, InvalidFieldException {
+        String[] record;
+        while ((record = rows.next()) != null) {
+            if (!budget.tryConsume(ENTRY_OVERHEAD_BYTES + ByteBudget.estimateRow(record))) return false;
+
+            Bucket bucket = table.get(record[0]);
+            if (bucket == null) table.put(record[0], bucket = new Bucket());
+            bucket.rows.add(Arrays.copyOfRange(record, 1, record.length));
+        }
+        return true;
+    }
+
+
+    /**
+     * Streams the probe rows through the hash table, writing the joined rows
+     */
+    private static void probe(Map<String, Bucket> table, KeyedRows rows, boolean leftJoin, int rightValueCount, DelimitedDocumentWriter out, JoinResult result)
+            throws IOException, InvalidFieldException {
+        String[] empty = new String[rightValueCount];
+        Arrays.fill(empty, "");
+
+        String[] record;
+        while ((record = rows.next()) != null) {
+            Bucket bucket = table.get(record[0]);
+            String[] probeFields = Arrays.copyOfRange(record, 1, record.length);
+
+            if (result.builtFromLeft) {
+                // Probe rows are right rows; the left rows they match are in the bucket
+                if (bucket == null) continue;
+                bucket.matched = true;
+                for (String[] leftRow : bucket.rows) write(out, leftRow, probeFields, result);
+            } else if (bucket != null) {
+                for (String[] rightValues : bucket.rows) write(out, probeFields, rightValues, result);
+            } else {
+                result.unmatchedLeftRows++;
+                if (leftJoin) write(out, probeFields, empty, result);
+            }
+        }
+
+        // Left rows that no right row matched
+        if (result.builtFromLeft) {
+            for (Bucket bucket : table.values()) {
+                if (bucket.matched) continue;
+                result.unmatchedLeftRows += bucket.rows.size();
+                if (leftJoin)
+                    for (String[] leftRow : bucket.rows) write(out, leftRow, empty, result);
+            }
+        }
+    }
+
+
+    private static void spill(KeyedRows rows, RecordSpill spill) throws IOException, InvalidFieldException {
+        String[] record;
+        while ((record = rows.next()) != null)
+            spill.write(spill.partitionOf(record[0]), record);
+        spill.finishWriting();
+    }
+
+
+    private static void write(DelimitedDocumentWriter out, String[] leftRow, String[] rightValues, JoinResult result) {
+        String[] joined = new String[leftRow.length + rightValues.length];
+        System.arraycopy(leftRow, 0, joined, 0, leftRow.length);
+        System.arraycopy(rightValues, 0, joined, leftRow.length, rightValues.length);
+        out.writeRow(joined);
+        result.rowsWritten++;
+    }
+
+
+    private static void checkKeyCounts(String[] leftKeyColumns, String[] rightKeyColumns) throws InvalidFieldException {
+        if (leftKeyColumns == null || rightKeyColumns == null || leftKeyColumns.length != rightKeyColumns.length)
+            throw new InvalidFieldException("The left and right files must have the same number of key columns");
+    }
+
+
+    private static InvalidFieldException tooWide(String side, int fields, int width, boolean hasHeaderRow) {
+        String first = hasHeaderRow ? "header row" : "first row";
+        return new InvalidFieldException("A row of the " + side + " file has " + fields + " fields, more than the " + width
+                + " of its " + first + "; every row must have no more fields than the " + first);
+    }
+
+
+    private static String[] joinHeader(String[] leftHeader, String[] rightHeader, int[] rightValues) {
+        List<String> names = new ArrayList<>(Arrays.asList(leftHeader));
+        for (int index : rightValues) {
+            String name = index < rightHeader.length ? rightHeader[index] : "c" + (index + 1);
+            names.add(names.contains(name) ? "right_" + name : name);
+        }
+        return names.toArray(new String[0]);
+    }
+
+
+    private static int[] nonKeyIndexes(KeyColumns keys, int width) {
+        int[] indexes = new int[width];
+        int count = 0;
+        for (int i = 0; i < width; i++)
+            if (!keys.isKey(i)) indexes[count++] = i;
+        return Arrays.copyOf(indexes, count);
+    }
+
+
+    /**
+     * @return The number of fields in the first row, leaving the reader where it was
+     */
+    private static int firstRowWidth(RecordReader reader, ICSVParser parser, long dataStart) throws IOException {
+        String[] first = reader.readRecord(parser);
+        reader.seek(dataStart);
+        return first == null ? 0 : first.length;
+    }
+
+
+    private static String[] keyed(String key, String[] fields) {
+        String[] record = new String[fields.length + 1];
+        record[0] = key;
+        System.arraycopy(fields, 0, record, 1, fields.length);
+        return record;
+    }
+
+
+    /**
+     * @return The row padded with empty fields to width
+     */
+    private static String[] fit(String[] row, int width) {
+        if (row.length == width) return row;
+        String[] fitted = Arrays.copyOf(row, width);
+        for (int i = row.length; i < width; i++) fitted[i] = "";
+        return fitted;
+    }
+
+
+    private static String[] pick(String[] row, int[] indexes) {
+        String[] picked = new String[indexes.length];
+        for (int i = 0; i < indexes.length; i++)
+            picked[i] = indexes[i] < row.length ? row[indexes[i]] : "";
+        return picked;
+    }
+
+
+    private static String[] orEmpty(String[] row) {
+        return row == null ? new String[0] : row;
+    }
+}
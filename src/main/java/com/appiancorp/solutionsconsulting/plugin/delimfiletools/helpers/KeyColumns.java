@@ -0,0 +1,131 @@
+package com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers;
+
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.exceptions.InvalidFieldException;
+
+
+/**
+ * The key columns of a delimited file, for operations that match rows by key such as a diff or a join. A column is
+ * named as in the file's header row (either exactly, or as the Dictionary key parseDelimFile would return), or c1,
+ * c2, ... when there is no header row.
+ */
+public class KeyColumns {
+
+    private static final char KEY_SEPARATOR = '\u001F'; // ASCII unit separator, which does not occur in text
+
+    private final int[] indexes;
+    private final boolean[] isKey;
+
+
+    private KeyColumns(int[] indexes) {
+        this.indexes = indexes;
+        int width = 0;
+        for (int index : indexes) width = Math.max(width, index + 1);
+        this.isKey = new boolean[width];
+        for (int index : indexes) isKey[index] = true;
+    }
+
+
+    /**
+     * @param names  The key column names
+     * @param header The raw header row, or null if the file has none
+     * @return The key columns
+     * @throws InvalidFieldException If a name is not a column of the file
+     */
+    public static KeyColumns resolve(String[] names, String[] header) throws InvalidFieldException {
+        if (names == null || names.length == 0) throw new InvalidFieldException("You must supply at least one key column");
+
+        int[] indexes = new int[names.length];
+        for (int i = 0; i < names.length; i++) {
+            indexes[i] = indexOf(names[i], header);
+            if (indexes[i] < 0) throw new InvalidFieldException("The file has no column named " + names[i]);
+        }
+        return new KeyColumns(indexes);
+    }
+
+
+    /**
+     * @param name   A column name
+     * @param header The raw header row, or null if the file has none
+     * @return The 0-based index of the column, or -1 if there is none
+     */
+    public static int indexOf(String name, String[] header) {
+        if (name == null) return -1;
+
+        if (header != null) {
+            String[] fieldNames = ParseHelper.getFieldNames(header, true);
+            for (int i = 0; i < header.length; i++)
+                if (name.equals(header[i])) return i;
+            for (int i = 0; i < fieldNames.length; i++)
+                if (name.equals(fieldNames[i])) return i;
+            return -1;
+        }
+
+        // Without a header row, columns are c1, c2, ...; a row may still be too short to have the column
+        if (!name.matches("c[1-9][0-9]{0,5}")) return -1;
+        return Integer.parseInt(name.substring(1)) - 1;
+    }
+
+
+    public int[] getIndexes() {
+        return indexes;
+    }
+
+
+    /**
+     * @param index A 0-based column index
+     * @return True if the column is one of the keys
+     */
+    public boolean isKey(int index) {
+        return index < isKey.length && isKey[index];
+    }
+
+
+    /**
+     * @param row A parsed row
+     * @return The row's key fields joined into one String; a missing field counts as empty
+     */
+    public String key(String[] row) {
+        if (indexes.length == 1) return field(row, indexes[0]);
+
+        StringBuilder key = new StringBuilder();
+        for (int i = 0; i < indexes.length; i++) {
+            if (i > 0) key.append(KEY_SEPARATOR);
+            key.append(field(row, indexes[i]));
+        }
+        return key.toString();
+    }
+
+
+    /**
+     * @param row A parsed row
+     * @return A 64-bit hash of the fields that are not keys, ignoring empty fields at the end of the row, so two rows
+     * with the same key are changed only if their hashes differ
+     */
+    public long hashOfOthers(String[] row) {
+        int last = row.length - 1;
+        while (last >= 0 && (row[last] == null || row[last].isEmpty())) last--;
+
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i <= last; i++) {
+            if (isKey(i)) continue;
+            String field = row[i] == null ? "" : row[i];
+            for (int c = 0; c < field.length(); c++) {
+                h ^= field.charAt(c);
+                h *= 0x100000001b3L;
+            }
+            h ^= KEY_SEPARATOR;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+
+    private static String field(String[] row, int index) {
+        return index < row.length && row[index] != null ? row[index] : "";
+    }
+}
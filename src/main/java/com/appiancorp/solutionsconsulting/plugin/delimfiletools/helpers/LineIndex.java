@@ -0,0 +1,209 @@
+package com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers;
+
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers.DelimFileToolsMetrics.Counter;
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers.DelimFileToolsMetrics.Phase;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.core.Logger;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * The line count of a document version and the byte offset of every few thousandth line, so a page deep in the file
+ * can seek close to its first line instead of reading every line before it.
+ * <p>
+ * One index is kept per document. When a new version arrives whose bytes up to the old version's last line feed are
+ * unchanged (checked with a PrefixHash), the index is carried on over the appended lines only instead of being built
+ * again from the top. Lines end with \n, \r\n or \r as RecordReader reads them, but only a line feed marks where an
+ * append may start, as a trailing \r may be the first half of a \r\n.
+ * <p>
+ * Sized by the system properties delimfiletools.lineIndex.stride (default 4096 lines between offsets),
+ * delimfiletools.lineIndex.maxEntries (256), delimfiletools.lineIndex.maxBytes (16 MB) and
+ * delimfiletools.lineIndex.ttlSeconds (3600).
+ */
+public class LineIndex {
+    private static final Logger LOG = (Logger) LogManager.getLogger(LineIndex.class);
+
+    /**
+     * The lines between the offsets kept
+     */
+    public static final int STRIDE = Math.max(1, Integer.getInteger("delimfiletools.lineIndex.stride", 4096));
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private static final ExpiringLruCache<Long, LineIndex> INDEXES = new ExpiringLruCache<>(
+            Integer.getInteger("delimfiletools.lineIndex.maxEntries", 256),
+            Long.getLong("delimfiletools.lineIndex.maxBytes", 16L * 1024 * 1024),
+            TimeUnit.SECONDS.toMillis(Long.getLong("delimfiletools.lineIndex.ttlSeconds", 3600)),
+            LineIndex::getEstimatedBytes);
+
+    static {
+        DelimFileToolsMetrics.registerGauge("lineIndexEntries", INDEXES::size);
+        DelimFileToolsMetrics.registerGauge("lineIndexBytes", INDEXES::getTotalWeight);
+    }
+
+    private final long versionFingerprint;
+    private final PrefixHash prefix;   // of the bytes up to and including the last line feed
+    private final long boundaryLines;  // the lines ended before boundary
+    private final long lines;          // the lines ended in the whole file
+    private final int checkpointCount;
+    private final long[] checkpointLines;
+    private final long[] checkpointOffsets;
+
+
+    private LineIndex(long versionFingerprint, PrefixHash prefix, long boundaryLines, long lines,
+                      int checkpointCount, long[] checkpointLines, long[] checkpointOffsets) {
+        this.versionFingerprint = versionFingerprint;
+        this.prefix = prefix;
+        this.boundaryLines = boundaryLines;
+        this.lines = lines;
+        this.checkpointCount = checkpointCount;
+        this.checkpointLines = checkpointLines;
+        this.checkpointOffsets = checkpointOffsets;
+    }
+
+
+    /**
+     * Gets the index of a document version, carrying on the index of an earlier version it was appended to, or
+     * building it from the top of the file
+     *
+     * @param version The document version
+     * @return The index
+     * @throws IOException If the file could not be read
+     */
+    public static LineIndex forVersion(DocumentVersion version) throws IOException {
+        LineIndex index = find(version);
+        if (index != null) return index;
+
+        index = scan(version, new LineIndex(0, PrefixHash.EMPTY, 0, 0, 1, new long[]{0}, new long[]{0}));
+        INDEXES.put(version.getDocumentId(), index);
+        return index;
+    }
+
+
+    /**
+     * Gets the index of a document version if it is already known, or can be had by reading only what was appended
+     * to an earlier version
+     *
+     * @param version The document version
+     * @return The index, or null if it would have to be built from the top of the file
+     * @throws IOException If the file could not be read
+     */
+    public static LineIndex find(DocumentVersion version) throws IOException {
+        LineIndex earlier = INDEXES.get(version.getDocumentId());
+        if (earlier == null) return null;
+        if (earlier.versionFingerprint == version.getFingerprint()) return earlier;
+
+        if (!earlier.prefix.isPrefixOf(version.getFile())) {
+            DelimFileToolsMetrics.increment(Counter.APPEND_MISMATCHES);
+            return null;
+        }
+
+        DelimFileToolsMetrics.increment(Counter.APPEND_EXTENSIONS);
+        LOG.debug("Document {} was appended to after byte {}; indexing only the new lines", version.getDocumentId(), earlier.prefix.getLength());
+        LineIndex index = scan(version, earlier);
+        INDEXES.put(version.getDocumentId(), index);
+        return index;
+    }
+
+
+    /**
+     * Reads a file from an earlier index's boundary to its end
+     */
+    private static LineIndex scan(DocumentVersion version, LineIndex from) throws IOException {
+        long start = System.nanoTime();
+
+        long offset = from.prefix.getLength();
+        long lines = from.boundaryLines;
+        long boundary = offset;
+        long boundaryLines = lines;
+        int checkpointCount = from.checkpointCount;
+        long[] checkpointLines = Arrays.copyOf(from.checkpointLines, checkpointCount + 16);
+        long[] checkpointOffsets = Arrays.copyOf(from.checkpointOffsets, checkpointLines.length);
+        long nextCheckpoint = checkpointLines[checkpointCount - 1] + STRIDE;
+        boolean afterReturn = false;
+
+        byte[] bytes = new byte[BUFFER_SIZE];
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        try (FileChannel channel = new FileInputStream(version.getFile()).getChannel()) {
+            int n;
+            while ((n = channel.read((ByteBuffer) buffer.clear(), offset)) >= 0) {
+                for (int i = 0; i < n; i++) {
+                    byte b = bytes[i];
+                    if (b == '\n') {
+                        if (!afterReturn) lines++;
+                        afterReturn = false;
+
+                        boundary = offset + i + 1;
+                        boundaryLines = lines;
+                        if (lines >= nextCheckpoint) {
+                            if (checkpointCount == checkpointLines.length) {
+                                checkpointLines = Arrays.copyOf(checkpointLines, checkpointCount * 2);
+                                checkpointOffsets = Arrays.copyOf(checkpointOffsets, checkpointCount * 2);
+                            }
+                            checkpointLines[checkpointCount] = lines;
+                            checkpointOffsets[checkpointCount] = boundary;
+                            checkpointCount++;
+                            nextCheckpoint = lines + STRIDE;
+                        }
+                    } else if (b == '\r') {
+                        lines++;
+                        afterReturn = true;
+                    } else {
+                        afterReturn = false;
+                    }
+                }
+                offset += n;
+            }
+        } finally {
+            DelimFileToolsMetrics.add(Counter.BYTES_READ, offset - from.prefix.getLength());
+        }
+
+        LineIndex index = new LineIndex(version.getFingerprint(), from.prefix.extend(version.getFile(), boundary), boundaryLines, lines,
+                checkpointCount, checkpointLines, checkpointOffsets);
+        DelimFileToolsMetrics.record(Phase.INDEX, start);
+        return index;
+    }
+
+
+    /**
+     * @return The number of lines in the file, counted as countLinesInFile() does: the line endings plus one
+     */
+    public int getLineCount() {
+        return (int) Math.min(Integer.MAX_VALUE, lines + 1);
+    }
+
+
+    /**
+     * Moves a reader to the start of a line, or to the closest line before it that has an offset kept
+     *
+     * @param reader The reader of this version of the file
+     * @param line   The 0-based line to move to
+     * @return The 0-based line the reader was moved to, from which line - that many lines are left to skip
+     * @throws IOException If the file could not be read
+     */
+    public long seek(RecordReader reader, long line) throws IOException {
+        int found = Arrays.binarySearch(checkpointLines, 0, checkpointCount, line);
+        int checkpoint = found >= 0 ? found : -found - 2;
+        reader.seek(checkpointOffsets[checkpoint]);
+        return checkpointLines[checkpoint];
+    }
+
+
+    private long getEstimatedBytes() {
+        return 96 + 16L * checkpointLines.length;
+    }
+
+
+    /**
+     * Drops every index
+     */
+    public static void clear() {
+        INDEXES.clear();
+    }
+}
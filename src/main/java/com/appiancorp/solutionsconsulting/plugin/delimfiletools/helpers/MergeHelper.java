@@ -0,0 +1,134 @@
+package com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers;
+
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.exceptions.InvalidFieldException;
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers.DelimFileToolsMetrics.Counter;
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers.DelimFileToolsMetrics.Phase;
+import com.appiancorp.suiteapi.common.exceptions.PrivilegeException;
+import com.appiancorp.suiteapi.common.exceptions.StorageLimitException;
+import com.appiancorp.suiteapi.content.ContentService;
+import com.appiancorp.suiteapi.content.exceptions.DuplicateUuidException;
+import com.appiancorp.suiteapi.content.exceptions.InsufficientNameUniquenessException;
+import com.appiancorp.suiteapi.content.exceptions.InvalidContentException;
+import com.opencsv.ICSVParser;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.core.Logger;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+
+/**
+ * Concatenates delimited files into one new document by copying their bytes with FileChannel.transferTo, so no
+ * record is split into fields and written again. Only the header of each file is parsed, to check that they all
+ * match; it is kept from the first file and skipped in the others. A file that does not end with a line ending has
+ * one added, so its last record does not run into the next file's first.
+ */
+public class MergeHelper {
+    private static final Logger LOG = (Logger) LogManager.getLogger(MergeHelper.class);
+
+
+    /**
+     * Checks that every document has the same header row, as it is written in the file
+     *
+     * @param versions The documents to merge
+     * @param parser   A valid ICSVParser instance
+     * @return The byte offset of the first record after each document's header
+     * @throws IOException           If a file could not be read
+     * @throws InvalidFieldException If a header differs from the first document's
+     */
+    public static long[] checkHeaders(DocumentVersion[] versions, ICSVParser parser) throws IOException, InvalidFieldException {
+        RecordFormat format = ParseHelper.delimited(parser);
+        long[] headerEnds = new long[versions.length];
+        String[] expected = null;
+
+        for (int i = 0; i < versions.length; i++) {
+            if (versions[i].getSize() == 0) continue;
+            HeaderRecord header = HeaderRecord.read(versions[i], format);
+            headerEnds[i] = header.getEndOffset();
+
+            if (expected == null) {
+                expected = header.getNames();
+            } else if (!Arrays.equals(expected, header.getNames())) {
+                throw new InvalidFieldException("The header of document " + versions[i].getDocumentId() + " " + Arrays.toString(header.getNames())
+                        + " does not match the first document's " + Arrays.toString(expected), "HeaderMismatch");
+            }
+        }
+        return headerEnds;
+    }
+
+
+    /**
+     * Writes the documents one after the other to a new document, which is deleted again if the merge fails
+     *
+     * @param contentService A ContentService instance injected by Appian
+     * @param versions       The documents to merge, in order
+     * @param skipFrom       For each document, the number of bytes at its start to leave out, e.g. its header
+     * @param lineEnd        The line ending to add after a document that does not end with one
+     * @param parentFolder   The ID of the folder to save the document in
+     * @param docName        The base name of the document, not including extension
+     * @param extension      The file extension of the document
+     * @return The ID of the new document
+     * @throws IOException                         If a file could not be read or written
+     * @throws InvalidContentException             thrown by Appian
+     * @throws InsufficientNameUniquenessException thrown by Appian
+     * @throws DuplicateUuidException              thrown by Appian
+     * @throws StorageLimitException               thrown by Appian
+     * @throws PrivilegeException                  thrown by Appian
+     */
+    public static Long merge(ContentService contentService, DocumentVersion[] versions, long[] skipFrom, String lineEnd,
+                             Long parentFolder, String docName, String extension)
+            throws IOException, InvalidContentException, InsufficientNameUniquenessException, DuplicateUuidException, StorageLimitException, PrivilegeException {
+        long start = System.nanoTime();
+        Long document = WriteHelper.createAppianDocument(contentService, docName, extension, parentFolder);
+        ByteBuffer lineEndBytes = ByteBuffer.wrap(lineEnd.getBytes(Charset.defaultCharset()));
+
+        long bytesRead = 0;
+        long bytesWritten;
+        boolean complete = false;
+        try {
+            try (FileChannel out = new FileOutputStream(contentService.getInternalFilename(document)).getChannel()) {
+                for (int i = 0; i < versions.length; i++) {
+                    long size = versions[i].getSize();
+                    if (skipFrom[i] >= size) continue;
+
+                    try (FileChannel in = new FileInputStream(versions[i].getFile()).getChannel()) {
+                        SplitHelper.transfer(in, skipFrom[i], size, out);
+                        bytesRead += size - skipFrom[i];
+
+                        if (!endsWithLineEnding(in, size)) {
+                            lineEndBytes.rewind();
+                            while (lineEndBytes.hasRemaining()) out.write(lineEndBytes);
+                        }
+                    }
+                }
+                bytesWritten = out.position();
+            }
+            contentService.setSizeOfDocumentVersion(document);
+            complete = true;
+        } finally {
+            if (!complete) WriteHelper.deleteAppianDocument(contentService, document);
+        }
+
+        DelimFileToolsMetrics.add(Counter.BYTES_READ, bytesRead);
+        DelimFileToolsMetrics.add(Counter.BYTES_WRITTEN, bytesWritten);
+        DelimFileToolsMetrics.increment(Counter.DOCUMENTS_WRITTEN);
+        DelimFileToolsMetrics.record(Phase.MERGE, start);
+        LOG.debug("merge: {} documents into {} bytes", versions.length, bytesWritten);
+        return document;
+    }
+
+
+    private static boolean endsWithLineEnding(FileChannel in, long size) throws IOException {
+        ByteBuffer last = ByteBuffer.allocate(1);
+        while (last.hasRemaining())
+            if (in.read(last, size - 1) < 0) throw new IOException("File truncated while copying");
+        byte b = last.get(0);
+        return b == '\n' || b == '\r';
+    }
+}
@@ -0,0 +1,88 @@
+package com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * A ParsedPage whose rows are held in an OffHeapPool Block rather than on the heap, for keeping pages that may never
+ * be used. The page is rebuilt on the heap only when it is taken.
+ */
+public class OffHeapPage implements Closeable {
+
+    private final ParsedPage page; // everything but the rows
+    private final OffHeapPool.Block rows;
+
+
+    private OffHeapPage(ParsedPage page, OffHeapPool.Block rows) {
+        this.page = page;
+        this.rows = rows;
+    }
+
+
+    /**
+     * Copies a page's rows off the heap
+     *
+     * @param page The page to keep
+     * @return The stored page, or null if the pool has no room for it
+     */
+    public static OffHeapPage store(ParsedPage page) {
+        long chars = 2;
+        for (String[] row : page.getRows()) {
+            chars += 2;
+            for (String field : row)
+                chars += 2 + (field == null ? 0 : field.length());
+        }
+
+        OffHeapPool.Block block = OffHeapPool.allocate(chars);
+        if (block == null) return null;
+
+        block.putInt(page.getRows().size());
+        for (String[] row : page.getRows()) {
+            block.putInt(row.length);
+            for (String field : row)
+                block.putString(field);
+        }
+
+        return new OffHeapPage(new ParsedPage(page.getFieldNames(), new ArrayList<>(0), page.getStartIndex(), page.isTruncated(),
+                page.isEndOfFile(), page.getNextOffset(), page.getEstimatedBytes(), page.isLineAligned()), block);
+    }
+
+
+    /**
+     * Rebuilds the page on the heap and releases its off-heap memory. Can only be called once.
+     *
+     * @return The page
+     */
+    public ParsedPage load() {
+        try {
+            int rowCount = rows.getInt();
+            List<String[]> loaded = new ArrayList<>(rowCount);
+            for (int r = 0; r < rowCount; r++) {
+                String[] row = new String[rows.getInt()];
+                for (int i = 0; i < row.length; i++)
+                    row[i] = rows.getString();
+                loaded.add(row);
+            }
+            return new ParsedPage(page.getFieldNames(), loaded, page.getStartIndex(), page.isTruncated(),
+                    page.isEndOfFile(), page.getNextOffset(), page.getEstimatedBytes(), page.isLineAligned());
+        } finally {
+            rows.close();
+        }
+    }
+
+
+    /**
+     * @return The direct memory held
+     */
+    public long getOffHeapBytes() {
+        return rows.getBytes();
+    }
+
+
+    @Override
+    public void close() {
+        rows.close();
+    }
+}
@@ -0,0 +1,199 @@
+package com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers;
+
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers.DelimFileToolsMetrics.Counter;
+
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+
+/**
+ * A pool of direct (off-heap) buffers for holding record data outside the JVM heap that Appian shares with the rest of
+ * the platform. Memory is handed out in fixed-size chunks, which are returned to the pool when a Block is closed and
+ * reused by the next one, so direct memory is never left for the garbage collector to free.
+ * <p>
+ * Sized by the system properties delimfiletools.offHeap.maxBytes (default 128 MB), the most direct memory the pool
+ * will ever create, and delimfiletools.offHeap.chunkBytes (256 KB).
+ */
+public class OffHeapPool {
+
+    private static final int CHUNK_BYTES = Math.max(1024, Integer.getInteger("delimfiletools.offHeap.chunkBytes", 256 * 1024) & ~1);
+    private static final long MAX_BYTES = Long.getLong("delimfiletools.offHeap.maxBytes", 128L * 1024 * 1024);
+
+    private static final Deque<ByteBuffer> FREE = new ArrayDeque<>();
+    private static long allocatedBytes = 0;
+    private static long inUseBytes = 0;
+
+    static {
+        DelimFileToolsMetrics.registerGauge("offHeapAllocatedBytes", OffHeapPool::getAllocatedBytes);
+        DelimFileToolsMetrics.registerGauge("offHeapInUseBytes", OffHeapPool::getInUseBytes);
+    }
+
+
+    /**
+     * Chunks of direct memory written and read as chars. Not thread-safe: hand a Block from one thread to another
+     * through something that synchronizes, such as a cache.
+     */
+    public static class Block implements Closeable {
+        private final ByteBuffer[] chunks;
+        private final CharBuffer[] writeViews;
+        private final CharBuffer[] readViews;
+        private int writeIndex = 0;
+        private int readIndex = 0;
+        private boolean closed = false;
+
+        private Block(ByteBuffer[] chunks) {
+            this.chunks = chunks;
+            this.writeViews = new CharBuffer[chunks.length];
+            this.readViews = new CharBuffer[chunks.length];
+            for (int i = 0; i < chunks.length; i++) {
+                writeViews[i] = view(chunks[i]);
+                readViews[i] = view(chunks[i]);
+            }
+        }
+
+
+        /**
+         * @return A char view of the whole chunk with its own position
+         */
+        private static CharBuffer view(ByteBuffer chunk) {
+            ByteBuffer duplicate = chunk.duplicate();
+            duplicate.clear();
+            return duplicate.asCharBuffer();
+        }
+
+
+        /**
+         * @return The direct memory held
+         */
+        public long getBytes() {
+            return (long) chunks.length * CHUNK_BYTES;
+        }
+
+
+        public void putInt(int value) {
+            putChar((char) (value >>> 16));
+            putChar((char) value);
+        }
+
+
+        public int getInt() {
+            return (getChar() << 16) | getChar();
+        }
+
+
+        /**
+         * Writes a string, or null, as its length followed by its chars
+         */
+        public void putString(String value) {
+            if (value == null) {
+                putInt(-1);
+                return;
+            }
+            putInt(value.length());
+            int written = 0;
+            while (written < value.length()) {
+                CharBuffer view = writeViews[writeIndex];
+                int count = Math.min(view.remaining(), value.length() - written);
+                view.put(value, written, written + count);
+                written += count;
+                if (!view.hasRemaining()) writeIndex++;
+            }
+        }
+
+
+        public String getString() {
+            int length = getInt();
+            if (length < 0) return null;
+            char[] chars = new char[length];
+            int read = 0;
+            while (read < length) {
+                CharBuffer view = readViews[readIndex];
+                int count = Math.min(view.remaining(), length - read);
+                view.get(chars, read, count);
+                read += count;
+                if (!view.hasRemaining()) readIndex++;
+            }
+            return new String(chars);
+        }
+
+
+        private void putChar(char value) {
+            CharBuffer view = writeViews[writeIndex];
+            view.put(value);
+            if (!view.hasRemaining()) writeIndex++;
+        }
+
+
+        private char getChar() {
+            CharBuffer view = readViews[readIndex];
+            char value = view.get();
+            if (!view.hasRemaining()) readIndex++;
+            return value;
+        }
+
+
+        /**
+         * Returns the chunks to the pool; the Block must not be used afterwards
+         */
+        @Override
+        public void close() {
+            if (closed) return;
+            closed = true;
+            release(chunks);
+        }
+    }
+
+
+    /**
+     * @param chars The number of chars the Block must hold, counting two for each int
+     * @return A Block, or null if the pool is at its limit
+     */
+    public static Block allocate(long chars) {
+        int count = (int) Math.max(1, (chars * 2 + CHUNK_BYTES - 1) / CHUNK_BYTES);
+        ByteBuffer[] chunks = new ByteBuffer[count];
+
+        synchronized (OffHeapPool.class) {
+            long needed = (long) count * CHUNK_BYTES;
+            if (inUseBytes + needed > MAX_BYTES) {
+                DelimFileToolsMetrics.increment(Counter.OFF_HEAP_EXHAUSTED);
+                return null;
+            }
+            for (int i = 0; i < count; i++) {
+                ByteBuffer chunk = FREE.poll();
+                if (chunk == null) {
+                    chunk = ByteBuffer.allocateDirect(CHUNK_BYTES);
+                    allocatedBytes += CHUNK_BYTES;
+                }
+                chunks[i] = chunk;
+            }
+            inUseBytes += needed;
+        }
+        return new Block(chunks);
+    }
+
+
+    private static synchronized void release(ByteBuffer[] chunks) {
+        for (ByteBuffer chunk : chunks)
+            FREE.push(chunk);
+        inUseBytes -= (long) chunks.length * CHUNK_BYTES;
+    }
+
+
+    /**
+     * @return The direct memory the pool has created, in use or free
+     */
+    public static synchronized long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+
+    /**
+     * @return The direct memory held by open Blocks
+     */
+    public static synchronized long getInUseBytes() {
+        return inUseBytes;
+    }
+}
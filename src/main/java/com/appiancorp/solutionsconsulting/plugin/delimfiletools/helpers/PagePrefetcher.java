@@ -0,0 +1,133 @@
+package com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers;
+
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers.DelimFileToolsMetrics.Counter;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.core.Logger;
+
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * Reads the page after the one just served in the background, so a user paging forward through a grid finds it
+ * already parsed. Pages are read on a small bounded pool and parked in a short-lived cache keyed by document version,
+ * parser settings and paging; when the pool is busy the prefetch is simply dropped. Parked pages are held off the heap
+ * in the OffHeapPool until they are taken, and are dropped if it is full.
+ * <p>
+ * Sized by the system properties delimfiletools.prefetch.threads (default 2), delimfiletools.prefetch.queueSize (16),
+ * delimfiletools.prefetch.maxEntries (32), delimfiletools.prefetch.maxBytes (64 MB of off-heap memory) and
+ * delimfiletools.prefetch.ttlSeconds (30). A caller waits at most delimfiletools.prefetch.waitMillis (5000) for a page
+ * still being read before reading it itself.
+ */
+public class PagePrefetcher {
+    private static final Logger LOG = (Logger) LogManager.getLogger(PagePrefetcher.class);
+
+    private static final ThreadPoolExecutor EXECUTOR;
+    private static final ExpiringLruCache<String, OffHeapPage> PAGES = new ExpiringLruCache<>(
+            Integer.getInteger("delimfiletools.prefetch.maxEntries", 32),
+            Long.getLong("delimfiletools.prefetch.maxBytes", 64L * 1024 * 1024),
+            TimeUnit.SECONDS.toMillis(Long.getLong("delimfiletools.prefetch.ttlSeconds", 30)),
+            OffHeapPage::getOffHeapBytes,
+            OffHeapPage::close);
+    private static final Map<String, Future<Void>> IN_FLIGHT = new ConcurrentHashMap<>();
+    private static final long TAKE_WAIT_MILLIS = Long.getLong("delimfiletools.prefetch.waitMillis", 5000);
+
+    static {
+        int threads = Math.max(1, Integer.getInteger("delimfiletools.prefetch.threads", 2));
+        AtomicInteger threadNumber = new AtomicInteger();
+        EXECUTOR = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, Integer.getInteger("delimfiletools.prefetch.queueSize", 16))),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "delimfiletools-prefetch-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        EXECUTOR.allowCoreThreadTimeOut(true);
+    }
+
+
+    /**
+     * @return The key a page is prefetched and looked up under
+     */
+    public static String key(DocumentVersion version, int parserFingerprint, boolean hasHeaderRow, int startIndex, int maxRows, long budgetLimit) {
+        return version.getDocumentId() + ":" + version.getFingerprint() + ":" + parserFingerprint + ":" + hasHeaderRow
+                + ":" + startIndex + ":" + maxRows + ":" + budgetLimit;
+    }
+
+
+    /**
+     * Takes a prefetched page, waiting a bounded time for it if it is still being read
+     *
+     * @param key From key()
+     * @return The page, or null if it was not prefetched or is taking too long, so the caller should read it
+     */
+    public static ParsedPage take(String key) {
+        Future<Void> inFlight = IN_FLIGHT.get(key);
+        if (inFlight != null) {
+            try {
+                inFlight.get(TAKE_WAIT_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                LOG.debug("Prefetch of {} still running after {} ms, reading it directly", key, TAKE_WAIT_MILLIS);
+                return null;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            } catch (ExecutionException e) {
+                return null;
+            }
+        }
+
+        // The read puts its page in the cache before leaving IN_FLIGHT, so a finished page is always found here
+        OffHeapPage stored = PAGES.remove(key);
+        if (stored == null) return null;
+        DelimFileToolsMetrics.increment(Counter.PREFETCH_HITS);
+        return stored.load();
+    }
+
+
+    /**
+     * Starts reading a page in the background, unless it is already being read or the pool is full
+     *
+     * @param key    From key()
+     * @param reader Reads the page; must only touch the file, not Appian services
+     */
+    public static void submit(final String key, final Callable<ParsedPage> reader) {
+        if (PAGES.containsKey(key)) return;
+
+        // The task removes only itself from IN_FLIGHT, once its page is parked, never a newer read of the same page
+        FutureTask<Void> task = new FutureTask<Void>(() -> {
+            try {
+                OffHeapPage stored = OffHeapPage.store(reader.call());
+                if (stored != null) PAGES.put(key, stored);
+                return null;
+            } catch (Exception e) {
+                LOG.debug("Prefetch of {} failed: {}", key, e.getMessage());
+                throw e;
+            }
+        }) {
+            @Override
+            protected void done() {
+                IN_FLIGHT.remove(key, this);
+            }
+        };
+        if (IN_FLIGHT.putIfAbsent(key, task) != null) return;
+
+        try {
+            EXECUTOR.execute(task);
+            DelimFileToolsMetrics.increment(Counter.PREFETCH_SUBMITTED);
+        } catch (RejectedExecutionException e) {
+            IN_FLIGHT.remove(key, task);
+            DelimFileToolsMetrics.increment(Counter.PREFETCH_REJECTED);
+        }
+    }
+}
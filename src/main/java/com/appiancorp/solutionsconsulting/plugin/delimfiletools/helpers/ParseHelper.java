@@ -3,20 +3,26 @@ package com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers;
 import com.appiancorp.ps.plugins.typetransformer.AppianList;
 import com.appiancorp.ps.plugins.typetransformer.AppianObject;
 import com.appiancorp.ps.plugins.typetransformer.AppianTypeFactory;
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.exceptions.AdmissionRejectedException;
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.exceptions.InvalidContinuationTokenException;
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.exceptions.InvalidFieldException;
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers.DelimFileToolsMetrics.Counter;
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers.DelimFileToolsMetrics.Phase;
 import com.appiancorp.suiteapi.common.paging.PagingInfo;
 import com.appiancorp.suiteapi.content.ContentService;
 import com.appiancorp.suiteapi.content.exceptions.InvalidContentException;
 import com.appiancorp.suiteapi.type.AppianType;
 import com.appiancorp.suiteapi.type.TypedValue;
-import com.opencsv.CSVReader;
-import com.opencsv.CSVReaderBuilder;
+import com.opencsv.CSVParser;
+import com.opencsv.CSVParserBuilder;
 import com.opencsv.ICSVParser;
-import com.opencsv.exceptions.CsvValidationException;
-import org.apache.commons.io.FileUtils;
+import com.opencsv.RFC4180ParserBuilder;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.core.Logger;
 
 import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
 
 
 /**
@@ -25,25 +31,6 @@ import java.io.*;
 public class ParseHelper {
     private static final Logger LOG = (Logger) LogManager.getLogger(ParseHelper.class);
 
-    private final static int MAX_ROWS = 10000;
-
-    public static File getFileFromAppian(ContentService cs, Long documentId) {
-        try {
-            // Read the document content
-            try (InputStream inputStream = cs.getDocumentInputStream(documentId)) {
-                File temporaryDocument = File.createTempFile("temp", ".text");
-                temporaryDocument.deleteOnExit();
-
-                FileUtils.copyInputStreamToFile(inputStream, temporaryDocument);
-                return temporaryDocument;
-            }
-        } catch (Exception e) {
-            // Handle any exceptions
-            LOG.error("Error accessing document ", e);
-            return null;
-        }
-    }
-
     /**
      * The primary function for parsing a delimited text file from an Appian Document. Requires a valid ICVSParser instance.
      *
@@ -54,99 +41,379 @@ public class ParseHelper {
      * @param hasHeaderRow      If true, the first line of the file contains the column / field names
      * @param includeTotalCount If true, the results will contain 'totalLines' with the number of lines in the Document
      * @param pagingInfo        An a!pagingInfo() instance. Allows for batching of the file. Sorting not yet supported.
+     * @param budget            Limits the estimated size of the values returned. Once reached, the results are marked 'truncated' with the 'nextStartIndex' to continue from.
+     * @param continuationToken The 'continuationToken' from the previous page's results, to resume from where it ended instead of from pagingInfo.startIndex
+     * @param prefetchNextPage  If true, the following page is read in the background so the next call can be served from memory
+     * @param cacheResult       If true, the result is kept in the ResultCache and an identical call on the same document version returns it without parsing
      * @return The Appian dictionary containing the parse results.
      * @throws InvalidContentException If the Appian document is not found
      */
-    public static TypedValue parseFile(ContentService contentService, AppianTypeFactory typeFactory, ICSVParser parser, Long delimitedFile, Boolean hasHeaderRow, Boolean includeTotalCount, PagingInfo pagingInfo)
+    public static TypedValue parseFile(ContentService contentService, AppianTypeFactory typeFactory, ICSVParser parser, Long delimitedFile, Boolean hasHeaderRow, Boolean includeTotalCount, PagingInfo pagingInfo, ByteBudget budget, String continuationToken, boolean prefetchNextPage, boolean cacheResult)
             throws InvalidContentException {
-        AppianList values = typeFactory.createList(AppianType.DICTIONARY);
+        return parseFile(contentService, typeFactory, delimited(parser), delimitedFile, hasHeaderRow, includeTotalCount, pagingInfo, budget, continuationToken, prefetchNextPage, cacheResult);
+    }
+
+
+    /**
+     * Parses a document whose records are split by the given format, e.g. a FixedWidthLayout. See the ICSVParser
+     * version for the parameters.
+     *
+     * @param format How to split each record into fields
+     * @return The Appian dictionary containing the parse results.
+     * @throws InvalidContentException If the Appian document is not found
+     */
+    public static TypedValue parseFile(ContentService contentService, AppianTypeFactory typeFactory, RecordFormat format, Long delimitedFile, Boolean hasHeaderRow, Boolean includeTotalCount, PagingInfo pagingInfo, ByteBudget budget, String continuationToken, boolean prefetchNextPage, boolean cacheResult)
+            throws InvalidContentException {
+        boolean useHeaderRow = Boolean.TRUE.equals(hasHeaderRow);
+        DocumentVersion version = DocumentVersion.resolve(contentService, delimitedFile);
+        int parserFingerprint = format.getFingerprint();
+
+        int maxRows = Integer.MAX_VALUE;
+        if (pagingInfo != null && pagingInfo.getBatchSize() > 0) // account for -1 to equal max
+            maxRows = pagingInfo.getBatchSize();
+        int startIndex = pagingInfo != null ? pagingInfo.getStartIndex() : 1;
+
+        // Return the result of an identical earlier call, if it was kept
+        ResultCache.Key cacheKey = null;
+        if (cacheResult) {
+            cacheKey = new ResultCache.Key(version, parserFingerprint, useHeaderRow, Boolean.TRUE.equals(includeTotalCount),
+                    startIndex, maxRows, budget.getLimit(), continuationToken);
+            TypedValue cached = ResultCache.get(cacheKey, budget);
+            if (cached != null) return cached;
+        }
 
         int totalLines = -1;
-        if (includeTotalCount)
-            totalLines = countLinesInFile(getFileFromAppian(contentService, delimitedFile));
+        if (Boolean.TRUE.equals(includeTotalCount))
+            totalLines = countLinesInVersion(version);
+
+        // A page holds at most its budget, and no more than a few times the document's size or a few KB a row
+        long estimatedBytes = Math.min(budget.getLimit(), Math.min(version.getSize() * 4, AdmissionController.estimateRows(maxRows)));
+
+        try (AdmissionController.Permit ignored = AdmissionController.acquire(estimatedBytes)) {
+            ContinuationToken token = null;
+            if (continuationToken != null && !continuationToken.isEmpty()) {
+                token = ContinuationToken.decode(continuationToken);
+                token.checkApplies(version, parserFingerprint, useHeaderRow);
+                startIndex = token.getNextStartIndex();
+            }
 
-        int maxRows = MAX_ROWS;
-        try {
-            // First, get the Dictionary field names
-            String[] firstLine = getReader(parser, getFileFromAppian(contentService, delimitedFile), 0).readNext();
+            // Use the page read ahead by the previous call if there is one
+            ParsedPage page = PagePrefetcher.take(PagePrefetcher.key(version, parserFingerprint, useHeaderRow, startIndex, maxRows, budget.getLimit()));
+            if (page != null)
+                budget.consume(page.getEstimatedBytes());
+            else
+                page = readPage(version, format, useHeaderRow, token, startIndex, maxRows, budget);
+
+            if (prefetchNextPage && !page.isEndOfFile() && page.isLineAligned())
+                prefetch(version, format, useHeaderRow, page, maxRows, budget.getLimit());
+
+            ContinuationToken nextToken = page.getNextToken(version, parserFingerprint, useHeaderRow);
+
+            long convertStart = System.nanoTime();
+            TypedValue result = getSuccessReturnValue(typeFactory, toDictionaries(typeFactory, page, format.getFieldTypes()), page.getRows().size(), totalLines,
+                    page.isTruncated(), page.getNextStartIndex(), nextToken == null ? null : nextToken.encode());
+            DelimFileToolsMetrics.record(Phase.CONVERT, convertStart);
+
+            if (cacheKey != null) ResultCache.put(cacheKey, result, page.getEstimatedBytes());
+            return result;
+
+        } catch (InvalidContinuationTokenException | InvalidFieldException | AdmissionRejectedException e) {
+            LOG.debug("parseFile: {}", e.getMessage());
+            return getErrorReturnValue(typeFactory, e.getMessage());
+        } catch (IOException e) {
+            String errorMessage = "IOException: " + e.getMessage();
+            LOG.error(errorMessage);
+            return getErrorReturnValue(typeFactory, errorMessage);
+        }
+    }
+
+
+    /**
+     * Reads one page of rows from a document. Only the file is touched, so this is safe to run on any thread.
+     *
+     * @param version      The document version to read
+     * @param format       How to split each record into fields, not shared with another thread
+     * @param hasHeaderRow If true, the first line of the file contains the column / field names
+     * @param token        Where to resume, or null to start from the top of the file
+     * @param startIndex   The 1-based line to start from when there is no token
+     * @param maxRows      The most rows to read
+     * @param budget       Limits the estimated size of the rows read; at least one row is always read
+     * @return The page
+     * @throws IOException If the file could not be read
+     */
+    public static ParsedPage readPage(DocumentVersion version, RecordFormat format, boolean hasHeaderRow, ContinuationToken token, int startIndex, int maxRows, ByteBudget budget)
+            throws IOException {
+        try (RecordReader reader = new RecordReader(version.getFile())) {
+            long start = System.nanoTime();
             String[] fieldNames;
-            if (hasHeaderRow) {
-                // Use first row as headers
-                fieldNames = firstLine;
-                for (int i = 0; i < fieldNames.length; i++) {
-                    fieldNames[i] = fieldNames[i].replaceAll("[^a-zA-Z0-9]", "_");
-                }
+
+            if (token != null) {
+                // Resume exactly where the previous page ended
+                fieldNames = token.getFieldNames();
+                reader.seek(token.getOffset());
+
             } else {
-                // Use 1-based integers as names, e.g. index(local!dict, "1", null)
-                fieldNames = new String[firstLine.length];
-                for (int i = 0; i < firstLine.length; i++)
-                    fieldNames[i] = "c" + Integer.toString(i + 1);
+                // First, get the Dictionary field names, read once per document version
+                HeaderRecord header = HeaderRecord.read(version, format, reader);
+                fieldNames = header.getFieldNames(hasHeaderRow);
+                reader.seek(hasHeaderRow ? header.getEndOffset() : 0);
+
+                // Handle paging of read, seeking close to the first line if the document is indexed
+                long targetLine = (hasHeaderRow ? header.getLines() : 0) + startIndex - 1;
+                LineIndex index = startIndex > LineIndex.STRIDE ? LineIndex.find(version) : null;
+                if (index != null)
+                    reader.skipLines(targetLine - index.seek(reader, targetLine));
+                else
+                    reader.skipLines(startIndex - 1);
             }
 
-            int skipLines = 0;
-            if (hasHeaderRow) skipLines++;
+            List<String[]> rows = new ArrayList<>();
+            boolean truncated = false;
+            boolean endOfFile = false;
+            long estimatedBytes = 0;
+            long nextOffset = reader.getOffset();
+            long firstLine = reader.getLinesRead();
+            long nextLine = firstLine;
+
+            // Parse!
+            while (rows.size() < maxRows) {
+                String[] row = format.readRecord(reader);
+                if (row == null) {
+                    endOfFile = true;
+                    break;
+                }
+
+                // Stop once the result would outgrow its budget, but always return at least one row
+                long rowBytes = ByteBudget.estimateRow(row);
+                if (rows.isEmpty()) {
+                    budget.consume(rowBytes);
+                } else if (!budget.tryConsume(rowBytes)) {
+                    truncated = true;
+                    break;
+                }
+
+                rows.add(row);
+                estimatedBytes += rowBytes;
+                nextOffset = reader.getOffset();
+                nextLine = reader.getLinesRead();
+            }
+            if (nextOffset >= version.getSize()) endOfFile = true;
 
-            // Handle paging of read
-            if (pagingInfo != null) {
-                skipLines += pagingInfo.getStartIndex() - 1; // subtract 1 because skipLines is 0 based
-                if (pagingInfo.getBatchSize() > 0)           // account for -1 to equal max
-                    maxRows = pagingInfo.getBatchSize();
+            DelimFileToolsMetrics.record(Phase.TOKENIZE, start);
+            DelimFileToolsMetrics.add(Counter.ROWS_PARSED, rows.size());
+            if (truncated) {
+                LOG.debug("readPage: result truncated at {} rows, {} of {} bytes", rows.size(), budget.getUsed(), budget.getLimit());
+                DelimFileToolsMetrics.increment(Counter.RESULTS_TRUNCATED);
             }
 
-            CSVReader reader = getReader(parser, getFileFromAppian(contentService, delimitedFile), skipLines);
-            String[] row;
+            return new ParsedPage(fieldNames, rows, startIndex, truncated, endOfFile, nextOffset, estimatedBytes,
+                    nextLine - firstLine == rows.size());
+        }
+    }
 
-            // Parse!
-            int rowCount = 0;
-            while ((row = reader.readNext()) != null && rowCount < maxRows) {
-                AppianObject element = (AppianObject) typeFactory.createElement(AppianType.DICTIONARY);
 
-                for (int i = 0; i < row.length; i++)
-                    element.put(fieldNames[i], typeFactory.createString(row[i]));
+    /**
+     * @param firstLine    The first record of the file
+     * @param hasHeaderRow If true, the first record holds the column / field names
+     * @return Dictionary keys for the fields of each row: the header's values with anything but letters and digits
+     * replaced by underscores, or c1, c2, ... without a header row
+     */
+    public static String[] getFieldNames(String[] firstLine, boolean hasHeaderRow) {
+        String[] fieldNames = new String[firstLine.length];
+        for (int i = 0; i < firstLine.length; i++) {
+            if (hasHeaderRow)
+                fieldNames[i] = firstLine[i].replaceAll("[^a-zA-Z0-9]", "_");
+            else
+                fieldNames[i] = "c" + Integer.toString(i + 1); // e.g. index(local!dict, "c1", null)
+        }
+        return fieldNames;
+    }
+
+
+    /**
+     * Builds the parser for functions that take an optional separator: an RFC 4180 parser when no separator is given,
+     * otherwise a CSVParser using the given quote and escape characters (defaulting to " and \).
+     *
+     * @param separator  The delimiter, or null or empty for an RFC 4180 (comma separated) file
+     * @param quoteChar  The quote character, or null or empty for "
+     * @param escapeChar The escape character, or null or empty for \
+     * @return A new parser
+     */
+    public static ICSVParser buildParser(String separator, String quoteChar, String escapeChar) {
+        if (separator == null || separator.isEmpty()) {
+            RFC4180ParserBuilder builder = new RFC4180ParserBuilder();
+            if (quoteChar != null && !quoteChar.isEmpty()) builder.withQuoteChar(quoteChar.charAt(0));
+            return builder.build();
+        }
+        return new CSVParserBuilder()
+                .withSeparator(separator.charAt(0))
+                .withQuoteChar(quoteChar == null || quoteChar.isEmpty() ? ICSVParser.DEFAULT_QUOTE_CHARACTER : quoteChar.charAt(0))
+                .withEscapeChar(escapeChar == null || escapeChar.isEmpty() ? ICSVParser.DEFAULT_ESCAPE_CHARACTER : escapeChar.charAt(0))
+                .build();
+    }
+
+
+    /**
+     * Validates the optional separator, quoteChar and escapeChar taken by buildParser()
+     *
+     * @return An error message (null means validation passes)
+     */
+    public static String validateParserSettings(String separator, String quoteChar, String escapeChar) {
+        if (separator != null && separator.length() > 1)
+            return "You must supply a single character as the delimited separator";
+        if (quoteChar != null && quoteChar.length() > 1)
+            return "You must supply a single character as the quote character";
+        if (escapeChar != null && escapeChar.length() > 1)
+            return "You must supply a single character as the escape character";
+        if (separator == null || separator.isEmpty()) return null;
+
+        char quote = quoteChar == null || quoteChar.isEmpty() ? ICSVParser.DEFAULT_QUOTE_CHARACTER : quoteChar.charAt(0);
+        char escape = escapeChar == null || escapeChar.isEmpty() ? ICSVParser.DEFAULT_ESCAPE_CHARACTER : escapeChar.charAt(0);
+        if (separator.charAt(0) == quote || separator.charAt(0) == escape || quote == escape)
+            return "The separator, quote and escape characters must all be different";
+        return null;
+    }
+
+
+    /**
+     * Reads the page after the given one in the background, for the next call to pick up
+     */
+    private static void prefetch(final DocumentVersion version, RecordFormat format, final boolean hasHeaderRow, ParsedPage page, final int maxRows, final long budgetLimit) {
+        final RecordFormat backgroundFormat = format.copy();
+        final ContinuationToken next = page.getNextToken(version, format.getFingerprint(), hasHeaderRow);
+        final int nextStartIndex = page.getNextStartIndex();
 
-                values.add(element);
-                rowCount++;
+        PagePrefetcher.submit(PagePrefetcher.key(version, format.getFingerprint(), hasHeaderRow, nextStartIndex, maxRows, budgetLimit),
+                () -> readPage(version, backgroundFormat, hasHeaderRow, next, nextStartIndex, maxRows, new ByteBudget(budgetLimit)));
+    }
+
+
+    /**
+     * @param parser A valid ICSVParser instance
+     * @return The RecordFormat that splits records with the parser
+     */
+    public static RecordFormat delimited(final ICSVParser parser) {
+        return new RecordFormat() {
+            @Override
+            public String[] readRecord(RecordReader reader) throws IOException {
+                return reader.readRecord(parser);
             }
 
-            return getSuccessReturnValue(typeFactory, values, rowCount, totalLines);
+            @Override
+            public String[] getFieldNames(String[] firstRecord, boolean hasHeaderRow) {
+                return ParseHelper.getFieldNames(firstRecord, hasHeaderRow);
+            }
 
-        } catch (IOException e) {
-            String errorMessage = "IOException: " + e.getMessage();
-            LOG.error(errorMessage);
-            return getErrorReturnValue(typeFactory, errorMessage);
-        } catch (CsvValidationException e) {
-            String errorMessage = "CsvValidationException: " + e.getMessage();
-            LOG.error(errorMessage);
-            return getErrorReturnValue(typeFactory, errorMessage);
+            @Override
+            public ValueType[] getFieldTypes() {
+                return null;
+            }
+
+            @Override
+            public int getFingerprint() {
+                return getParserFingerprint(parser);
+            }
+
+            @Override
+            public RecordFormat copy() {
+                return delimited(copyParser(parser));
+            }
+        };
+    }
+
+
+    /**
+     * @param typeFactory An instance of the TypeTransformer's AppianTypeFactory, build using the TypeService injected by Appian
+     * @param page        The rows to convert
+     * @param fieldTypes  The type of each field, or null to return them all as Text
+     * @return A list of Dictionaries keyed by the page's field names
+     * @throws InvalidFieldException If a value cannot be read as its field's type
+     */
+    static AppianList toDictionaries(AppianTypeFactory typeFactory, ParsedPage page, ValueType[] fieldTypes) throws InvalidFieldException {
+        AppianList values = typeFactory.createList(AppianType.DICTIONARY);
+        String[] fieldNames = page.getFieldNames();
+        int rowNumber = page.getStartIndex();
+
+        for (String[] row : page.getRows()) {
+            AppianObject element = (AppianObject) typeFactory.createElement(AppianType.DICTIONARY);
+
+            for (int i = 0; i < row.length; i++) {
+                if (fieldTypes == null || fieldTypes[i] == ValueType.TEXT) {
+                    element.put(fieldNames[i], typeFactory.createString(row[i]));
+                    continue;
+                }
+                try {
+                    element.put(fieldNames[i], fieldTypes[i].toElement(typeFactory, row[i]));
+                } catch (IllegalArgumentException e) {
+                    throw new InvalidFieldException("Row " + rowNumber + ", " + fieldNames[i] + ": '" + row[i] + "' is not a valid " + fieldTypes[i].getDisplayName(), "InvalidValue");
+                }
+            }
+
+            values.add(element);
+            rowNumber++;
         }
+        return values;
     }
 
 
     /**
-     * @param parser     A valid ICSVParser instance
-     * @param appianFile The File returned from ParseHelper.getFileFromAppian()
-     * @param skipLines  The number of lines off the top to skip
-     * @return An open CSVReader
-     * @throws FileNotFoundException Only thrown if Appian resolves a Document to a physical file, but that file does not exist (extremely rare, if ever)
+     * @param parser A CSVParser or RFC4180Parser
+     * @return A new parser with the same settings, for use on another thread
      */
-    private static CSVReader getReader(ICSVParser parser, File appianFile, int skipLines) throws FileNotFoundException {
-        return new CSVReaderBuilder(new FileReader(appianFile))
-                .withCSVParser(parser)
-                .withSkipLines(skipLines)
+    public static ICSVParser copyParser(ICSVParser parser) {
+        if (parser instanceof CSVParser) {
+            CSVParser csvParser = (CSVParser) parser;
+            return new CSVParserBuilder()
+                    .withSeparator(csvParser.getSeparator())
+                    .withQuoteChar(csvParser.getQuotechar())
+                    .withEscapeChar(csvParser.getEscape())
+                    .withStrictQuotes(csvParser.isStrictQuotes())
+                    .withIgnoreLeadingWhiteSpace(csvParser.isIgnoreLeadingWhiteSpace())
+                    .withIgnoreQuotations(csvParser.isIgnoreQuotations())
+                    .withFieldAsNull(csvParser.nullFieldIndicator())
+                    .build();
+        }
+        return new RFC4180ParserBuilder()
+                .withSeparator(parser.getSeparator())
+                .withQuoteChar(parser.getQuotechar())
+                .withFieldAsNull(parser.nullFieldIndicator())
                 .build();
     }
 
 
+    /**
+     * @param parser A valid ICSVParser instance
+     * @return A hash of the parser's type and settings, so a continuation token is only used with the settings it was issued for
+     */
+    public static int getParserFingerprint(ICSVParser parser) {
+        StringBuilder settings = new StringBuilder(parser.getClass().getName())
+                .append(parser.getSeparator())
+                .append(parser.getQuotechar())
+                .append(parser.nullFieldIndicator());
+        if (parser instanceof CSVParser) {
+            CSVParser csvParser = (CSVParser) parser;
+            settings.append(csvParser.getEscape())
+                    .append(csvParser.isStrictQuotes())
+                    .append(csvParser.isIgnoreLeadingWhiteSpace())
+                    .append(csvParser.isIgnoreQuotations());
+        }
+        return settings.toString().hashCode();
+    }
+
+
     /**
      * @param typeFactory An instance of the TypeTransformer's AppianTypeFactory, build using the TypeService injected by Appian
      * @param values      The list of dictionaries if success == true
      * @param rowsParsed  The number of rows parsed and returned in the current operation
      * @param totalLines  The total number of lines in the file
+     * @param truncated      True if the byte budget stopped the parse before the end of the file or batch
+     * @param nextStartIndex The startIndex of the first row not returned
+     * @param continuationToken Resumes the parse after the last row returned, or null at the end of the file
      * @return Dictionary
      */
-    private static TypedValue getSuccessReturnValue(AppianTypeFactory typeFactory, AppianList values, int rowsParsed, int totalLines) {
-        LOG.debug("getSuccessReturnValue: rowsParsed: " + rowsParsed + ";");
-        return getReturnValueDictionary(typeFactory, true, null, values, rowsParsed, totalLines);
+    private static TypedValue getSuccessReturnValue(AppianTypeFactory typeFactory, AppianList values, int rowsParsed, int totalLines, boolean truncated, int nextStartIndex, String continuationToken) {
+        LOG.debug("getSuccessReturnValue: rowsParsed: {}, truncated: {};", rowsParsed, truncated);
+        return getReturnValueDictionary(typeFactory, true, null, values, rowsParsed, totalLines, truncated, nextStartIndex, continuationToken);
     }
 
 
@@ -156,8 +423,9 @@ public class ParseHelper {
      * @return Dictionary
      */
     public static TypedValue getErrorReturnValue(AppianTypeFactory typeFactory, String errorMessage) {
-        LOG.debug("getErrorReturnValue: errorMessage: " + errorMessage + ";");
-        return getReturnValueDictionary(typeFactory, false, errorMessage, null, 0, 0);
+        LOG.debug("getErrorReturnValue: errorMessage: {};", errorMessage);
+        DelimFileToolsMetrics.increment(Counter.ERRORS);
+        return getReturnValueDictionary(typeFactory, false, errorMessage, null, 0, 0, false, 0, null);
     }
 
 
@@ -168,10 +436,21 @@ public class ParseHelper {
      * @param values       The list of dictionaries if success == true
      * @param linesParsed  The number of rows parsed and returned in the current operation
      * @param totalLines   The total number of lines in the file
+     * @param truncated      True if the byte budget stopped the parse before the end of the file or batch
+     * @param nextStartIndex The startIndex of the first row not returned, included when truncated
+     * @param continuationToken Resumes the parse after the last row returned, included unless the end of the file was reached
      * @return Dictionary
      */
-    private static TypedValue getReturnValueDictionary(AppianTypeFactory typeFactory, Boolean success, String errorMessage, AppianList values, int linesParsed, int totalLines) {
-        LOG.debug("getReturnValueDictionary: success: " + Boolean.toString(success) + ", errorMessage: " + errorMessage + ";");
+    private static TypedValue getReturnValueDictionary(AppianTypeFactory typeFactory, Boolean success, String errorMessage, AppianList values, int linesParsed, int totalLines, boolean truncated, int nextStartIndex, String continuationToken) {
+        LOG.debug("getReturnValueDictionary: success: {}, errorMessage: {};", success, errorMessage);
+        return typeFactory.toTypedValue(getReturnValueElement(typeFactory, success, errorMessage, values, linesParsed, totalLines, truncated, nextStartIndex, continuationToken));
+    }
+
+
+    /**
+     * Builds the Dictionary of getReturnValueDictionary() without converting it, so it can be nested in another
+     */
+    static AppianObject getReturnValueElement(AppianTypeFactory typeFactory, Boolean success, String errorMessage, AppianList values, int linesParsed, int totalLines, boolean truncated, int nextStartIndex, String continuationToken) {
 
         AppianObject dictionary = (AppianObject) typeFactory.createElement(AppianType.DICTIONARY);
 
@@ -183,11 +462,17 @@ public class ParseHelper {
 
             if (totalLines > -1)
                 dictionary.put("totalLines", typeFactory.createLong(Integer.toUnsignedLong(totalLines)));
+
+            dictionary.put("truncated", typeFactory.createBoolean(truncated));
+            if (truncated)
+                dictionary.put("nextStartIndex", typeFactory.createLong(Integer.toUnsignedLong(nextStartIndex)));
+            if (continuationToken != null)
+                dictionary.put("continuationToken", typeFactory.createString(continuationToken));
         } else {
             dictionary.put("errorMessage", typeFactory.createString(errorMessage));
         }
 
-        return typeFactory.toTypedValue(dictionary);
+        return dictionary;
     }
 
 
@@ -210,14 +495,35 @@ public class ParseHelper {
 
 
     /**
-     * @param appianFile The File returned from ParseHelper.getFileFromAppian()
+     * Counts the lines in a document version with its LineIndex, which is carried on from an earlier version's when
+     * the new one only appends lines
+     *
+     * @param version The document version
+     * @return The number of lines in the file, or -1 if there was any error.
+     */
+    public static int countLinesInVersion(DocumentVersion version) {
+        long start = System.nanoTime();
+        try {
+            int count = LineIndex.forVersion(version).getLineCount();
+            DelimFileToolsMetrics.record(Phase.COUNT, start);
+            return count;
+        } catch (IOException e) {
+            LOG.error("IOException caught: " + e.getMessage());
+            return -1;
+        }
+    }
+
+
+    /**
+     * @param appianFile The file of an Appian document, e.g. from DocumentVersion.getFile()
      * @return The number of lines in the file, or -1 if there was any error.
      */
     public static int countLinesInFile(File appianFile) {
+        long start = System.nanoTime();
         int count;
-        FileReader reader;
+        Reader reader;
         try {
-            reader = new FileReader(appianFile);
+            reader = openReader(appianFile);
         } catch (FileNotFoundException e) {
             LOG.error("FileNotFoundException caught: " + e.getMessage());
             return -1;
@@ -244,6 +550,7 @@ public class ParseHelper {
         } catch (Exception ignored) {
         }
 
+        DelimFileToolsMetrics.record(Phase.COUNT, start);
         return count;
     }
 
@@ -253,21 +560,26 @@ public class ParseHelper {
      *
      * @param typeFactory
      * @param filePath
-     * @param startLine
+     * @param startLine   The 1-based line to start from, or a negative number to count back from the end (-1 is the last line)
      * @param lineCount
      * @return
      */
     public static TypedValue readLinesInFile(AppianTypeFactory typeFactory,  String filePath, int startLine, int lineCount) {
+        if (startLine < 0)
+            return readLastLinesInFile(typeFactory, filePath, -(long) startLine, lineCount);
+
         AppianObject dictionary = (AppianObject) typeFactory.createElement(AppianType.DICTIONARY);
 
         if (lineCount == -1) lineCount = Integer.MAX_VALUE; // Make lineCount big
 
-        FileReader reader;
+        long start = System.nanoTime();
+        Reader reader;
         try {
-            reader = new FileReader(new File(filePath));
+            reader = openReader(new File(filePath));
         } catch (FileNotFoundException e) {
             String errorMessage = "FileNotFoundException caught: " + e.getMessage();
             LOG.error(errorMessage);
+            DelimFileToolsMetrics.increment(Counter.ERRORS);
             dictionary.put("success", typeFactory.createBoolean(false));
             dictionary.put("errorMessage", typeFactory.createString(errorMessage));
             return typeFactory.toTypedValue(dictionary);
@@ -293,14 +605,114 @@ public class ParseHelper {
         } catch (IOException e) {
             String errorMessage = "IOException caught: " + e.getMessage();
             LOG.error(errorMessage);
+            DelimFileToolsMetrics.increment(Counter.ERRORS);
+            dictionary.put("success", typeFactory.createBoolean(false));
+            dictionary.put("errorMessage", typeFactory.createString(errorMessage));
+            return typeFactory.toTypedValue(dictionary);
+        }
+
+        DelimFileToolsMetrics.record(Phase.READ_LINES, start);
+        DelimFileToolsMetrics.add(Counter.LINES_READ, lines.size());
+
+        dictionary.put("success", typeFactory.createBoolean(true));
+        dictionary.put("values", lines);
+
+        return typeFactory.toTypedValue(dictionary);
+    }
+
+
+    /**
+     * Reads lines from near the end of a file. The file is scanned backwards from the end in blocks to find where to
+     * start, so only the lines returned are read and decoded, however large the file.
+     *
+     * @param typeFactory  An instance of the TypeTransformer's AppianTypeFactory, build using the TypeService injected by Appian
+     * @param filePath     The file to read
+     * @param linesFromEnd Where to start: 1 is the last line, 2 the one before it, and so on
+     * @param lineCount    The number of lines to read, or -1 to read to the end of the file
+     * @return A dictionary of status and values
+     */
+    private static TypedValue readLastLinesInFile(AppianTypeFactory typeFactory, String filePath, long linesFromEnd, int lineCount) {
+        AppianObject dictionary = (AppianObject) typeFactory.createElement(AppianType.DICTIONARY);
+
+        if (lineCount == -1) lineCount = Integer.MAX_VALUE; // Make lineCount big
+
+        long start = System.nanoTime();
+        AppianList lines = typeFactory.createList(AppianType.STRING);
+
+        try (RecordReader reader = new RecordReader(new File(filePath))) {
+            reader.seek(reader.findLineFromEnd(linesFromEnd));
+
+            String line;
+            for (int i = 0; i < lineCount && (line = reader.readLine()) != null; i++)
+                lines.add(typeFactory.createString(line));
+
+        } catch (IOException e) {
+            String errorMessage = "IOException caught: " + e.getMessage();
+            LOG.error(errorMessage);
+            DelimFileToolsMetrics.increment(Counter.ERRORS);
             dictionary.put("success", typeFactory.createBoolean(false));
             dictionary.put("errorMessage", typeFactory.createString(errorMessage));
             return typeFactory.toTypedValue(dictionary);
         }
 
+        DelimFileToolsMetrics.record(Phase.READ_LINES, start);
+        DelimFileToolsMetrics.add(Counter.LINES_READ, lines.size());
+
         dictionary.put("success", typeFactory.createBoolean(true));
         dictionary.put("values", lines);
 
         return typeFactory.toTypedValue(dictionary);
     }
+
+
+    /**
+     * Opens a file for reading with the platform's default charset, counting the bytes read into the plugin's metrics
+     *
+     * @param file The file to read
+     * @return An open Reader
+     * @throws FileNotFoundException If the file does not exist
+     */
+    private static Reader openReader(File file) throws FileNotFoundException {
+        return new InputStreamReader(new MeteredInputStream(new FileInputStream(file)));
+    }
+
+
+    /**
+     * Adds the number of bytes read through it to the bytesRead metric when closed
+     */
+    private static class MeteredInputStream extends FilterInputStream {
+        private long bytesRead = 0;
+
+        MeteredInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) bytesRead++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) bytesRead += n;
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            bytesRead += skipped;
+            return skipped;
+        }
+
+        @Override
+        public void close() throws IOException {
+            super.close();
+            DelimFileToolsMetrics.add(Counter.BYTES_READ, bytesRead);
+            bytesRead = 0;
+        }
+    }
 }
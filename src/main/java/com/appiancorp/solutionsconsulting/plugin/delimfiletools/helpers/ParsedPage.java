@@ -0,0 +1,88 @@
+package com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers;
+
+import java.util.List;
+
+
+/**
+ * The raw rows of one page of a parse and where the next page starts, before they are built into Appian values.
+ * Reading a page only touches the file, so it can be done off the caller's thread.
+ */
+public class ParsedPage {
+
+    private final String[] fieldNames;
+    private final List<String[]> rows;
+    private final int startIndex;
+    private final boolean truncated;
+    private final boolean endOfFile;
+    private final long nextOffset;
+    private final long estimatedBytes;
+    private final boolean lineAligned;
+
+
+    /**
+     * @param fieldNames     Dictionary keys for the fields of each row
+     * @param rows           The rows read
+     * @param startIndex     The startIndex of the first row
+     * @param truncated      True if the byte budget stopped the page early
+     * @param endOfFile      True if there are no rows after this page
+     * @param nextOffset     The byte offset of the first row not read
+     * @param estimatedBytes The rows' estimated size once built
+     * @param lineAligned    True if every row was a single line, so startIndex + rows is also a line number
+     */
+    public ParsedPage(String[] fieldNames, List<String[]> rows, int startIndex, boolean truncated, boolean endOfFile, long nextOffset, long estimatedBytes, boolean lineAligned) {
+        this.fieldNames = fieldNames;
+        this.rows = rows;
+        this.startIndex = startIndex;
+        this.truncated = truncated;
+        this.endOfFile = endOfFile;
+        this.nextOffset = nextOffset;
+        this.estimatedBytes = estimatedBytes;
+        this.lineAligned = lineAligned;
+    }
+
+
+    public String[] getFieldNames() {
+        return fieldNames;
+    }
+
+    public List<String[]> getRows() {
+        return rows;
+    }
+
+    public int getStartIndex() {
+        return startIndex;
+    }
+
+    public int getNextStartIndex() {
+        return startIndex + rows.size();
+    }
+
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    public boolean isEndOfFile() {
+        return endOfFile;
+    }
+
+    public long getNextOffset() {
+        return nextOffset;
+    }
+
+    public long getEstimatedBytes() {
+        return estimatedBytes;
+    }
+
+    public boolean isLineAligned() {
+        return lineAligned;
+    }
+
+
+    /**
+     * @return A token resuming after this page, or null if it reached the end of the file
+     */
+    public ContinuationToken getNextToken(DocumentVersion version, int parserFingerprint, boolean hasHeaderRow) {
+        if (endOfFile) return null;
+        return new ContinuationToken(version, nextOffset, getNextStartIndex(), parserFingerprint, hasHeaderRow, fieldNames);
+    }
+}
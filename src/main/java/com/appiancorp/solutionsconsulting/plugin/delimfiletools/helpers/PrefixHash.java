@@ -0,0 +1,119 @@
+package com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers;
+
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers.DelimFileToolsMetrics.Counter;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+
+/**
+ * A 64-bit hash of the first bytes of a file, used to tell whether a new version of a document begins with exactly
+ * the bytes of an earlier one, i.e. rows were only appended.
+ * <p>
+ * The file is hashed eight bytes at a time in words aligned to the start of the file, with the bytes after the last
+ * whole word mixed in at the end. Keeping the state after the last whole word lets the hash be carried on over
+ * appended bytes without reading the start of the file again.
+ */
+public final class PrefixHash {
+
+    /**
+     * The hash of no bytes
+     */
+    public static final PrefixHash EMPTY = new PrefixHash(0, 0x9e3779b97f4a7c15L, 0x9e3779b97f4a7c15L);
+
+    private static final long K1 = 0xc2b2ae3d27d4eb4fL;
+    private static final long K2 = 0x165667b19e3779f9L;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final long length;
+    private final long wordState; // after the whole words before length
+    private final long hash;
+
+
+    private PrefixHash(long length, long wordState, long hash) {
+        this.length = length;
+        this.wordState = wordState;
+        this.hash = hash;
+    }
+
+
+    /**
+     * @param file   The file
+     * @param length The number of bytes to hash
+     * @return The hash of the file's first length bytes
+     * @throws IOException If the file could not be read, or is shorter than length
+     */
+    public static PrefixHash of(File file, long length) throws IOException {
+        return EMPTY.extend(file, length);
+    }
+
+
+    /**
+     * Carries the hash on over more of the file, reading only from the last whole word hashed
+     *
+     * @param file   The file, which must start with the bytes already hashed
+     * @param length The number of bytes to hash, no fewer than already hashed
+     * @return The hash of the file's first length bytes
+     * @throws IOException If the file could not be read, or is shorter than length
+     */
+    public PrefixHash extend(File file, long length) throws IOException {
+        if (length == this.length) return this;
+        if (length < this.length) throw new IllegalArgumentException("A hash cannot be shortened");
+
+        long state = wordState;
+        long offset = this.length & ~7L;
+        long wordsEnd = length & ~7L;
+        byte[] bytes = new byte[(int) Math.min(BUFFER_SIZE, length - offset)];
+        ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        long tail = 0;
+
+        try (FileChannel channel = new FileInputStream(file).getChannel()) {
+            long position = offset;
+            while (position < length) {
+                buffer.clear().limit((int) Math.min(bytes.length, length - position));
+                while (buffer.hasRemaining())
+                    if (channel.read(buffer, position + buffer.position()) < 0)
+                        throw new IOException("File truncated while reading");
+
+                int n = buffer.position();
+                int i = 0;
+                for (; i + 8 <= n && position + i + 8 <= wordsEnd; i += 8)
+                    state = mix(state, buffer.getLong(i));
+                for (; i < n; i++) // only the bytes after the last whole word
+                    tail = tail << 8 | (bytes[i] & 0xff);
+                position += n;
+            }
+        } finally {
+            DelimFileToolsMetrics.add(Counter.BYTES_READ, length - offset);
+        }
+
+        return new PrefixHash(length, state, mix(mix(state, tail), length));
+    }
+
+
+    private static long mix(long state, long word) {
+        return Long.rotateLeft(state ^ word * K1, 31) * K2;
+    }
+
+
+    /**
+     * @param file A new version of a document
+     * @return True if the file starts with the bytes hashed
+     * @throws IOException If the file could not be read
+     */
+    public boolean isPrefixOf(File file) throws IOException {
+        return file.length() >= length && of(file, length).hash == hash;
+    }
+
+
+    /**
+     * @return The number of bytes hashed
+     */
+    public long getLength() {
+        return length;
+    }
+}
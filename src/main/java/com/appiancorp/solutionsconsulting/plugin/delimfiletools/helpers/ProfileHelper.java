@@ -0,0 +1,208 @@
+package com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers;
+
+import com.appiancorp.ps.plugins.typetransformer.AppianList;
+import com.appiancorp.ps.plugins.typetransformer.AppianObject;
+import com.appiancorp.ps.plugins.typetransformer.AppianTypeFactory;
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers.DelimFileToolsMetrics.Counter;
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers.DelimFileToolsMetrics.Phase;
+import com.appiancorp.suiteapi.type.AppianType;
+import com.appiancorp.suiteapi.type.TypedValue;
+import com.opencsv.ICSVParser;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.core.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Class for profiling the columns of delimited files found in Appian's content management store. The file is read once
+ * and no rows are kept: each column holds only fixed-size running statistics.
+ * <p>
+ * The statistics of a document's latest version are kept, so a version that appends rows to it is profiled by reading
+ * only the new rows. Sized by the system properties delimfiletools.profileCache.maxEntries (default 32),
+ * delimfiletools.profileCache.maxBytes (32 MB) and delimfiletools.profileCache.ttlSeconds (3600).
+ */
+public class ProfileHelper {
+    private static final Logger LOG = (Logger) LogManager.getLogger(ProfileHelper.class);
+
+    private static final int MIN_TOP_VALUE_SLOTS = 32;
+
+    private static final ExpiringLruCache<String, ProfileState> STATES = new ExpiringLruCache<>(
+            Integer.getInteger("delimfiletools.profileCache.maxEntries", 32),
+            Long.getLong("delimfiletools.profileCache.maxBytes", 32L * 1024 * 1024),
+            TimeUnit.SECONDS.toMillis(Long.getLong("delimfiletools.profileCache.ttlSeconds", 3600)),
+            ProfileState::getEstimatedBytes);
+
+
+    /**
+     * The columns profiled so far and where the reading stopped, kept so a version that only appends rows can be
+     * profiled by reading just the new ones
+     */
+    private static final class ProfileState {
+        private final List<ColumnProfile> columns = new ArrayList<>();
+        private final int topValueSlots;
+        private long rowCount = 0;
+        private long versionFingerprint;
+        private PrefixHash prefix = PrefixHash.EMPTY; // of the bytes profiled
+        private boolean keep = false;
+
+        ProfileState(int topValueSlots) {
+            this.topValueSlots = topValueSlots;
+        }
+
+        long getEstimatedBytes() {
+            // The HyperLogLog registers and the top value counters of each column
+            return 128 + columns.size() * (4096 + 160L * topValueSlots);
+        }
+    }
+
+
+    /**
+     * Profiles every column of a file
+     *
+     * @param typeFactory  An instance of the TypeTransformer's AppianTypeFactory, build using the TypeService injected by Appian
+     * @param file         The file to profile
+     * @param parser       A valid ICSVParser instance
+     * @param hasHeaderRow If true, the first line of the file contains the column / field names
+     * @param topValues    The number of most frequent values to return for each column
+     * @return A Dictionary of success, rowCount and values, one Dictionary per column
+     */
+    public static TypedValue profileFile(AppianTypeFactory typeFactory, File file, ICSVParser parser, boolean hasHeaderRow, int topValues) {
+        long start = System.nanoTime();
+        ProfileState state = new ProfileState(Math.max(MIN_TOP_VALUE_SLOTS, topValues * 4));
+
+        try (RecordReader reader = new RecordReader(file)) {
+            readRows(reader, parser, hasHeaderRow, state);
+        } catch (IOException e) {
+            String errorMessage = "IOException caught: " + e.getMessage();
+            LOG.error(errorMessage);
+            return ParseHelper.getErrorReturnValue(typeFactory, errorMessage);
+        }
+
+        return getReturnValue(typeFactory, state, topValues, start);
+    }
+
+
+    /**
+     * Profiles every column of a document version. The profile is kept, and when the document's next version starts
+     * with exactly the bytes profiled (checked with a PrefixHash), only the rows appended to it are read. Only files
+     * ending in a line feed are kept, as anything after the last one could be the start of a longer line.
+     *
+     * @param typeFactory  An instance of the TypeTransformer's AppianTypeFactory, build using the TypeService injected by Appian
+     * @param version      The document version to profile
+     * @param parser       A valid ICSVParser instance
+     * @param hasHeaderRow If true, the first line of the file contains the column / field names
+     * @param topValues    The number of most frequent values to return for each column
+     * @return A Dictionary of success, rowCount and values, one Dictionary per column
+     */
+    public static TypedValue profileFile(AppianTypeFactory typeFactory, DocumentVersion version, ICSVParser parser, boolean hasHeaderRow, int topValues) {
+        long start = System.nanoTime();
+        int topValueSlots = Math.max(MIN_TOP_VALUE_SLOTS, topValues * 4);
+        String key = version.getDocumentId() + ":" + ParseHelper.getParserFingerprint(parser) + ":" + hasHeaderRow + ":" + topValueSlots;
+
+        // Take the kept profile, so no other call carries it on at the same time
+        ProfileState state = STATES.remove(key);
+        try {
+            if (state != null && state.versionFingerprint != version.getFingerprint()) {
+                if (state.prefix.isPrefixOf(version.getFile())) {
+                    DelimFileToolsMetrics.increment(Counter.APPEND_EXTENSIONS);
+                    LOG.debug("Document {} was appended to after byte {}; profiling only the new rows", version.getDocumentId(), state.prefix.getLength());
+                } else {
+                    DelimFileToolsMetrics.increment(Counter.APPEND_MISMATCHES);
+                    state = null;
+                }
+            }
+
+            if (state == null || state.versionFingerprint != version.getFingerprint()) {
+                if (state == null) state = new ProfileState(topValueSlots);
+                try (RecordReader reader = new RecordReader(version.getFile())) {
+                    reader.seek(state.prefix.getLength());
+                    readRows(reader, parser, hasHeaderRow && state.prefix.getLength() == 0, state);
+                }
+
+                // Keep the profile only if the file ends in a line feed, where an append would start
+                state.keep = endsWithLineFeed(version);
+                if (state.keep) {
+                    state.prefix = state.prefix.extend(version.getFile(), version.getSize());
+                    state.versionFingerprint = version.getFingerprint();
+                }
+            }
+        } catch (IOException e) {
+            String errorMessage = "IOException caught: " + e.getMessage();
+            LOG.error(errorMessage);
+            return ParseHelper.getErrorReturnValue(typeFactory, errorMessage);
+        }
+
+        TypedValue result = getReturnValue(typeFactory, state, topValues, start);
+        if (state.keep) STATES.put(key, state);
+        return result;
+    }
+
+
+    /**
+     * Reads rows into the profile from the reader's position to the end of the file
+     *
+     * @param readHeader If true, the first record read holds the column names
+     */
+    private static void readRows(RecordReader reader, ICSVParser parser, boolean readHeader, ProfileState state) throws IOException {
+        List<ColumnProfile> columns = state.columns;
+        long rowsRead = 0;
+        if (readHeader) {
+            String[] header = reader.readRecord(parser);
+            if (header != null)
+                for (String name : ParseHelper.getFieldNames(header, true))
+                    columns.add(new ColumnProfile(name, state.topValueSlots));
+        }
+
+        String[] row;
+        while ((row = reader.readRecord(parser)) != null) {
+            // A row wider than any before it adds columns, which were missing from every earlier row
+            while (columns.size() < row.length) {
+                ColumnProfile column = new ColumnProfile("c" + (columns.size() + 1), state.topValueSlots);
+                column.addMissing(state.rowCount);
+                columns.add(column);
+            }
+
+            for (int i = 0; i < columns.size(); i++) {
+                if (i < row.length) columns.get(i).add(row[i]);
+                else columns.get(i).addMissing(1);
+            }
+            state.rowCount++;
+            rowsRead++;
+        }
+        DelimFileToolsMetrics.add(Counter.ROWS_PARSED, rowsRead);
+    }
+
+
+    /**
+     * @return True if the file is empty or its last byte is a line feed
+     */
+    private static boolean endsWithLineFeed(DocumentVersion version) throws IOException {
+        if (version.getSize() == 0) return true;
+        try (RandomAccessFile file = new RandomAccessFile(version.getFile(), "r")) {
+            file.seek(version.getSize() - 1);
+            return file.read() == '\n';
+        }
+    }
+
+
+    private static TypedValue getReturnValue(AppianTypeFactory typeFactory, ProfileState state, int topValues, long start) {
+        AppianList values = typeFactory.createList(AppianType.DICTIONARY);
+        for (ColumnProfile column : state.columns)
+            values.add(column.toDictionary(typeFactory, topValues));
+
+        DelimFileToolsMetrics.record(Phase.PROFILE, start);
+        LOG.debug("profileFile: {} columns, {} rows", state.columns.size(), state.rowCount);
+
+        AppianObject dictionary = (AppianObject) typeFactory.createElement(AppianType.DICTIONARY);
+        dictionary.put("success", typeFactory.createBoolean(true));
+        dictionary.put("values", values);
+        dictionary.put("rowCount", typeFactory.createLong(state.rowCount));
+        return typeFactory.toTypedValue(dictionary);
+    }
+}
@@ -0,0 +1,45 @@
+package com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers;
+
+import java.io.IOException;
+
+
+/**
+ * How a parse splits the records of a file into fields: with an ICSVParser for delimited files, or a
+ * FixedWidthLayout for fixed-width ones. Everything after the split (paging, byte budgets, continuation tokens,
+ * prefetching and building the results) is shared.
+ */
+public interface RecordFormat {
+
+    /**
+     * @param reader The file being read
+     * @return The next record's fields, or null at the end of the file
+     * @throws IOException If the file could not be read
+     */
+    String[] readRecord(RecordReader reader) throws IOException;
+
+
+    /**
+     * @param firstRecord  The first record of the file
+     * @param hasHeaderRow If true, the first record is a header row
+     * @return Dictionary keys for the fields of each row
+     */
+    String[] getFieldNames(String[] firstRecord, boolean hasHeaderRow);
+
+
+    /**
+     * @return The type to return each field as, or null to return every field as Text
+     */
+    ValueType[] getFieldTypes();
+
+
+    /**
+     * @return A hash of the format's settings, so a continuation token is only used with the settings it was issued for
+     */
+    int getFingerprint();
+
+
+    /**
+     * @return A format with the same settings that is safe to use on another thread
+     */
+    RecordFormat copy();
+}
@@ -0,0 +1,341 @@
+package com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers;
+
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers.DelimFileToolsMetrics.Counter;
+import com.opencsv.ICSVParser;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+
+/**
+ * Reads records from a file the way CSVReader does (lines ending in \n, \r\n or \r, fed to the parser until it has no
+ * quoted field pending) while keeping track of the byte offset of each record, so a later call can seek straight back
+ * to a record boundary.
+ * <p>
+ * Lines are split on bytes and decoded with the platform's default charset, as the rest of the plugin reads files.
+ * This is safe for UTF-8 and single-byte charsets, in which a line break byte is never part of another character.
+ */
+public class RecordReader implements Closeable {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final FileChannel channel;
+    private final Charset charset = Charset.defaultCharset();
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int position = 0;
+    private int limit = 0;
+    private long bufferOffset = 0; // file offset of buffer[0]
+
+    private byte[] line = new byte[256];
+    private int lineLength = 0;
+
+    private long bytesRead = 0;
+    private long linesRead = 0;
+
+
+    public RecordReader(File file) throws IOException {
+        this.channel = new FileInputStream(file).getChannel();
+    }
+
+
+    /**
+     * @return The byte offset of the next unread line
+     */
+    public long getOffset() {
+        return bufferOffset + position;
+    }
+
+
+    /**
+     * @return The number of lines read or skipped so far
+     */
+    public long getLinesRead() {
+        return linesRead;
+    }
+
+
+    /**
+     * Moves to a byte offset, which should be the start of a line
+     *
+     * @param offset The byte offset to continue reading from
+     * @throws IOException If the file could not be read
+     */
+    public void seek(long offset) throws IOException {
+        if (offset >= bufferOffset && offset <= bufferOffset + limit) {
+            position = (int) (offset - bufferOffset);
+            return;
+        }
+        channel.position(offset);
+        bufferOffset = offset;
+        position = 0;
+        limit = 0;
+    }
+
+
+    /**
+     * Finds where one of the last lines of the file starts by scanning backwards from the end in blocks, so the
+     * lines before it are never read. A line ending at the very end of the file does not start another line.
+     *
+     * @param linesFromEnd 1 for the last line, 2 for the one before it, and so on
+     * @return The byte offset of the start of that line, or 0 if the file has fewer lines
+     * @throws IOException If the file could not be read
+     */
+    public long findLineFromEnd(long linesFromEnd) throws IOException {
+        long size = channel.size();
+        if (size == 0 || linesFromEnd < 1) return size;
+
+        // Leave out the line ending that finishes the file, if there is one
+        ByteBuffer block = ByteBuffer.wrap(buffer);
+        long end = size;
+        int next = -1; // the byte after the one being looked at
+        readFully(block, Math.max(0, size - 2), (int) Math.min(2, size));
+        int last = buffer[(int) Math.min(2, size) - 1];
+        if (last == '\n' || last == '\r') {
+            end--;
+            if (last == '\n' && size > 1 && buffer[0] == '\r') end--;
+            next = last == '\n' && end < size - 1 ? '\r' : last;
+        }
+
+        long terminators = 0;
+        long blockStart = end;
+        while (blockStart > 0) {
+            int length = (int) Math.min(BUFFER_SIZE, blockStart);
+            blockStart -= length;
+            readFully(block, blockStart, length);
+
+            for (int i = length - 1; i >= 0; i--) {
+                int b = buffer[i];
+                if ((b == '\n' || (b == '\r' && next != '\n')) && ++terminators == linesFromEnd) {
+                    invalidate();
+                    return blockStart + i + 1;
+                }
+                next = b;
+            }
+        }
+
+        invalidate();
+        return 0;
+    }
+
+
+    /**
+     * Reads length bytes at a file offset into the start of the buffer
+     */
+    private void readFully(ByteBuffer block, long offset, int length) throws IOException {
+        block.clear().limit(length);
+        while (block.hasRemaining()) {
+            if (channel.read(block, offset + block.position()) < 0)
+                throw new IOException("File truncated while reading");
+        }
+        bytesRead += length;
+    }
+
+
+    /**
+     * Forgets the buffered bytes after the buffer has been used for something else
+     */
+    private void invalidate() throws IOException {
+        bufferOffset = channel.position();
+        position = 0;
+        limit = 0;
+    }
+
+
+    /**
+     * Reads the next record, joining as many lines as the parser needs to close its quoted fields
+     *
+     * @param parser The parser to split the lines with
+     * @return The record's fields, or null at the end of the file
+     * @throws IOException If the file could not be read, or it ends inside a quoted field
+     */
+    public String[] readRecord(ICSVParser parser) throws IOException {
+        String[] result = null;
+        do {
+            String nextLine = readLine();
+            if (nextLine == null) {
+                if (parser.isPending())
+                    throw new IOException("Unterminated quoted field at end of file: " + parser.getPendingText());
+                return result;
+            }
+
+            String[] fields = parser.parseLineMulti(nextLine);
+            if (fields.length > 0) {
+                if (result == null) {
+                    result = fields;
+                } else {
+                    String[] combined = new String[result.length + fields.length];
+                    System.arraycopy(result, 0, combined, 0, result.length);
+                    System.arraycopy(fields, 0, combined, result.length, fields.length);
+                    result = combined;
+                }
+            }
+        } while (parser.isPending());
+        return result;
+    }
+
+
+    /**
+     * Skips the next record as readRecord() would read it, but only hands the parser lines that contain the quote
+     * character or continue a quoted field, as any other line is a whole record by itself
+     *
+     * @param parser The parser to split the lines with; one quoting with a character outside ASCII is given every line
+     * @return False at the end of the file
+     * @throws IOException If the file could not be read, or it ends inside a quoted field
+     */
+    public boolean skipRecord(ICSVParser parser) throws IOException {
+        char quote = parser.getQuotechar();
+        do {
+            lineLength = 0;
+            if (!scanLine(true)) {
+                if (parser.isPending())
+                    throw new IOException("Unterminated quoted field at end of file: " + parser.getPendingText());
+                return false;
+            }
+            if (!parser.isPending() && quote < 0x80 && !contains(line, lineLength, (byte) quote))
+                return true;
+            parser.parseLineMulti(new String(line, 0, lineLength, charset));
+        } while (parser.isPending());
+        return true;
+    }
+
+
+    private static boolean contains(byte[] bytes, int length, byte b) {
+        for (int i = 0; i < length; i++)
+            if (bytes[i] == b) return true;
+        return false;
+    }
+
+
+    /**
+     * @return The next line without its line ending, or null at the end of the file
+     * @throws IOException If the file could not be read
+     */
+    public String readLine() throws IOException {
+        lineLength = 0;
+        if (!scanLine(true)) return null;
+        return new String(line, 0, lineLength, charset);
+    }
+
+
+    /**
+     * Reads the next line without decoding it, into the array returned by getLineBytes()
+     *
+     * @return False at the end of the file
+     * @throws IOException If the file could not be read
+     */
+    public boolean readLineBytes() throws IOException {
+        lineLength = 0;
+        return scanLine(true);
+    }
+
+
+    /**
+     * @return The bytes of the line last read, valid up to getLineLength() and only until the next read
+     */
+    public byte[] getLineBytes() {
+        return line;
+    }
+
+
+    public int getLineLength() {
+        return lineLength;
+    }
+
+
+    public Charset getCharset() {
+        return charset;
+    }
+
+
+    /**
+     * Skips lines without decoding them
+     *
+     * @param count The number of lines to skip
+     * @return The number of lines skipped, fewer than count if the file ended first
+     * @throws IOException If the file could not be read
+     */
+    public long skipLines(long count) throws IOException {
+        long skipped = 0;
+        while (skipped < count && scanLine(false))
+            skipped++;
+        return skipped;
+    }
+
+
+    /**
+     * Consumes one line and its line ending
+     *
+     * @param keep If true, the line's bytes are copied into line
+     * @return False if there was nothing left to read
+     */
+    private boolean scanLine(boolean keep) throws IOException {
+        boolean found = false;
+        while (true) {
+            if (position == limit && !fill()) {
+                if (found) linesRead++;
+                return found;
+            }
+            found = true;
+
+            int start = position;
+            int end = start;
+            while (end < limit && buffer[end] != '\n' && buffer[end] != '\r')
+                end++;
+
+            if (keep) append(start, end - start);
+            position = end;
+            if (end == limit) continue;
+
+            // Consume the line ending, treating \r\n as one
+            byte terminator = buffer[position++];
+            if (terminator == '\r' && (position < limit || fill()) && buffer[position] == '\n')
+                position++;
+            linesRead++;
+            return true;
+        }
+    }
+
+
+    private void append(int start, int length) {
+        if (lineLength + length > line.length) {
+            byte[] grown = new byte[Math.max(line.length * 2, lineLength + length)];
+            System.arraycopy(line, 0, grown, 0, lineLength);
+            line = grown;
+        }
+        System.arraycopy(buffer, start, line, lineLength, length);
+        lineLength += length;
+    }
+
+
+    /**
+     * Refills the buffer once everything in it has been consumed
+     *
+     * @return False at the end of the file
+     */
+    private boolean fill() throws IOException {
+        bufferOffset += limit;
+        position = 0;
+        limit = 0;
+        int n;
+        do {
+            n = channel.read(ByteBuffer.wrap(buffer));
+        } while (n == 0);
+        if (n < 0) return false;
+        limit = n;
+        bytesRead += n;
+        return true;
+    }
+
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+        DelimFileToolsMetrics.add(Counter.BYTES_READ, bytesRead);
+        bytesRead = 0;
+    }
+}
@@ -0,0 +1,196 @@
+package com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers;
+
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.exceptions.InvalidFieldException;
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers.DelimFileToolsMetrics.Counter;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+
+/**
+ * Temporary files that records are hash partitioned into when a keyed operation (a diff or a join) outgrows its
+ * memory budget, so that each partition can then be processed in memory on its own. Records are arrays of Text,
+ * written in a compact binary form; the files are deleted on close.
+ * <p>
+ * The memory budget is read from the system property delimfiletools.hash.maxMemoryBytes (default 64 MB).
+ */
+public class RecordSpill implements Closeable {
+
+    public static final String MAX_MEMORY_BYTES_PROPERTY = "delimfiletools.hash.maxMemoryBytes";
+    public static final long DEFAULT_MAX_MEMORY_BYTES = 64L * 1024 * 1024;
+
+    private static final int MAX_PARTITIONS = 256;
+    private static final int BUFFER_SIZE = 1 << 13;
+
+    private final File[] files;
+    private final DataOutputStream[] outputs;
+    private long bytesWritten = 0;
+
+
+    /**
+     * @param partitions The number of partitions, at most 256
+     * @throws IOException If the temporary files could not be created
+     */
+    public RecordSpill(int partitions) throws IOException {
+        partitions = Math.max(1, Math.min(partitions, MAX_PARTITIONS));
+        files = new File[partitions];
+        outputs = new DataOutputStream[partitions];
+        try {
+            for (int i = 0; i < partitions; i++) {
+                files[i] = File.createTempFile("delimfiletools-spill", ".bin");
+                files[i].deleteOnExit();
+                outputs[i] = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(files[i]), BUFFER_SIZE));
+            }
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+        DelimFileToolsMetrics.add(Counter.SPILL_PARTITIONS, partitions);
+    }
+
+
+    /**
+     * @param maxMemoryBytes The limit passed to a smart service, or null / less than 1 to use the global limit
+     * @return The memory budget for one operation
+     */
+    public static ByteBudget memoryBudget(Long maxMemoryBytes) {
+        if (maxMemoryBytes != null && maxMemoryBytes > 0)
+            return new ByteBudget(maxMemoryBytes);
+        long limit = Long.getLong(MAX_MEMORY_BYTES_PROPERTY, DEFAULT_MAX_MEMORY_BYTES);
+        return new ByteBudget(limit > 0 ? limit : DEFAULT_MAX_MEMORY_BYTES);
+    }
+
+
+    /**
+     * @param dataBytes     The size of the data to be partitioned
+     * @param fittingBytes  How much of that data fit in the memory budget
+     * @return Enough partitions that each should fit in the budget, with room to spare for uneven keys
+     */
+    public static int partitionsFor(long dataBytes, long fittingBytes) {
+        long partitions = 2 * ((dataBytes + Math.max(1, fittingBytes) - 1) / Math.max(1, fittingBytes));
+        return (int) Math.max(2, Math.min(partitions, MAX_PARTITIONS));
+    }
+
+
+    /**
+     * @param partition The partition that did not fit
+     * @param budget    The budget it was loaded against
+     * @return The error for a partition that still outgrows the memory budget, e.g. because a key is on very many rows
+     */
+    static InvalidFieldException partitionTooLarge(int partition, ByteBudget budget) {
+        return new InvalidFieldException("Partition " + partition + " of the spilled rows needs more than the memory budget of "
+                + budget.getLimit() + " bytes; raise maxMemoryBytes", "MemoryBudgetTooSmall");
+    }
+
+
+    public int getPartitionCount() {
+        return files.length;
+    }
+
+
+    /**
+     * @param key A record's key
+     * @return The partition the key belongs in
+     */
+    public int partitionOf(String key) {
+        return (int) Long.remainderUnsigned(HyperLogLog.hash(key), files.length);
+    }
+
+
+    /**
+     * Appends a record to a partition
+     */
+    public void write(int partition, String[] record) throws IOException {
+        DataOutputStream output = outputs[partition];
+        output.writeInt(record.length);
+        bytesWritten += 4;
+        for (String field : record) {
+            if (field == null) {
+                output.writeInt(-1);
+                bytesWritten += 4;
+            } else {
+                byte[] bytes = field.getBytes(StandardCharsets.UTF_8);
+                output.writeInt(bytes.length);
+                output.write(bytes);
+                bytesWritten += 4 + bytes.length;
+            }
+        }
+    }
+
+
+    /**
+     * Finishes writing; must be called before any partition is read
+     */
+    public void finishWriting() throws IOException {
+        for (DataOutputStream output : outputs)
+            if (output != null) output.close();
+        DelimFileToolsMetrics.add(Counter.SPILL_BYTES, bytesWritten);
+    }
+
+
+    /**
+     * Reads the records of one partition, in the order they were written
+     */
+    public Reader read(int partition) throws IOException {
+        return new Reader(files[partition]);
+    }
+
+
+    public static class Reader implements Closeable {
+        private final DataInputStream input;
+
+        private Reader(File file) throws IOException {
+            input = new DataInputStream(new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE));
+        }
+
+        /**
+         * @return The next record, or null after the last one
+         */
+        public String[] next() throws IOException {
+            int length;
+            try {
+                length = input.readInt();
+            } catch (EOFException e) {
+                return null;
+            }
+            String[] record = new String[length];
+            for (int i = 0; i < length; i++) {
+                int bytes = input.readInt();
+                if (bytes < 0) continue;
+                byte[] field = new byte[bytes];
+                input.readFully(field);
+                record[i] = new String(field, StandardCharsets.UTF_8);
+            }
+            return record;
+        }
+
+        @Override
+        public void close() throws IOException {
+            input.close();
+        }
+    }
+
+
+    /**
+     * Closes and deletes the partition files
+     */
+    @Override
+    public void close() {
+        for (int i = 0; i < files.length; i++) {
+            try {
+                if (outputs[i] != null) outputs[i].close();
+            } catch (IOException ignored) {
+            }
+            if (files[i] != null && !files[i].delete()) files[i].deleteOnExit();
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers;
+
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers.DelimFileToolsMetrics.Counter;
+import com.appiancorp.suiteapi.type.TypedValue;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.core.Logger;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Keeps the results of parse calls that ask for it, so an interface that evaluates the same parse on every refresh
+ * gets the values already built. Results are keyed by document version, parse settings and paging, so a new version
+ * of a document is never served an old result; when one is seen, the old version's results are dropped.
+ * <p>
+ * Sized by the system properties delimfiletools.resultCache.maxEntries (default 256),
+ * delimfiletools.resultCache.maxBytes (64 MB) and delimfiletools.resultCache.ttlSeconds (600). Its size and hit rate
+ * are published with the plugin's metrics.
+ */
+public class ResultCache {
+    private static final Logger LOG = (Logger) LogManager.getLogger(ResultCache.class);
+
+    private static final ExpiringLruCache<Key, CachedResult> RESULTS = new ExpiringLruCache<>(
+            Integer.getInteger("delimfiletools.resultCache.maxEntries", 256),
+            Long.getLong("delimfiletools.resultCache.maxBytes", 64L * 1024 * 1024),
+            TimeUnit.SECONDS.toMillis(Long.getLong("delimfiletools.resultCache.ttlSeconds", 600)),
+            CachedResult::getEstimatedBytes);
+
+    static {
+        DelimFileToolsMetrics.registerGauge("resultCacheEntries", RESULTS::size);
+        DelimFileToolsMetrics.registerGauge("resultCacheBytes", RESULTS::getTotalWeight);
+        DelimFileToolsMetrics.registerGauge("resultCacheHitPercent", () -> Math.round(RESULTS.getHitRate() * 100));
+    }
+
+
+    /**
+     * Everything a parse result depends on
+     */
+    public static final class Key {
+        private final long documentId;
+        private final long versionFingerprint;
+        private final int formatFingerprint;
+        private final boolean hasHeaderRow;
+        private final boolean includeTotalCount;
+        private final int startIndex;
+        private final int maxRows;
+        private final long budgetLimit;
+        private final String continuationToken;
+        private final int hash;
+
+
+        public Key(DocumentVersion version, int formatFingerprint, boolean hasHeaderRow, boolean includeTotalCount, int startIndex, int maxRows, long budgetLimit, String continuationToken) {
+            this.documentId = version.getDocumentId();
+            this.versionFingerprint = version.getFingerprint();
+            this.formatFingerprint = formatFingerprint;
+            this.hasHeaderRow = hasHeaderRow;
+            this.includeTotalCount = includeTotalCount;
+            this.startIndex = startIndex;
+            this.maxRows = maxRows;
+            this.budgetLimit = budgetLimit;
+            this.continuationToken = continuationToken == null || continuationToken.isEmpty() ? null : continuationToken;
+            this.hash = Objects.hash(documentId, versionFingerprint, formatFingerprint, hasHeaderRow, includeTotalCount,
+                    startIndex, maxRows, budgetLimit, this.continuationToken);
+        }
+
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return documentId == key.documentId && versionFingerprint == key.versionFingerprint
+                    && formatFingerprint == key.formatFingerprint && hasHeaderRow == key.hasHeaderRow
+                    && includeTotalCount == key.includeTotalCount && startIndex == key.startIndex
+                    && maxRows == key.maxRows && budgetLimit == key.budgetLimit
+                    && Objects.equals(continuationToken, key.continuationToken);
+        }
+
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+
+    private static final class CachedResult {
+        private final TypedValue result;
+        private final long estimatedBytes;
+
+        CachedResult(TypedValue result, long estimatedBytes) {
+            this.result = result;
+            this.estimatedBytes = estimatedBytes;
+        }
+
+        long getEstimatedBytes() {
+            return estimatedBytes;
+        }
+    }
+
+
+    /**
+     * @param key    The call's settings
+     * @param budget The call's budget, charged with the result's size if one is found
+     * @return The result returned to an identical call, or null if there is none
+     */
+    public static TypedValue get(Key key, ByteBudget budget) {
+        CachedResult cached = RESULTS.get(key);
+        if (cached != null) {
+            DelimFileToolsMetrics.increment(Counter.RESULT_CACHE_HITS);
+            budget.consume(cached.estimatedBytes);
+            return cached.result;
+        }
+        DelimFileToolsMetrics.increment(Counter.RESULT_CACHE_MISSES);
+
+        // A miss may mean the document has a new version, whose predecessors' results can no longer be used
+        int removed = RESULTS.removeIf(other -> other.documentId == key.documentId && other.versionFingerprint != key.versionFingerprint);
+        if (removed > 0) LOG.debug("Dropped {} cached results for earlier versions of document {}", removed, key.documentId);
+        return null;
+    }
+
+
+    /**
+     * @param key            The call's settings
+     * @param result         The successful result returned
+     * @param estimatedBytes The result's estimated size
+     */
+    public static void put(Key key, TypedValue result, long estimatedBytes) {
+        RESULTS.put(key, new CachedResult(result, estimatedBytes));
+    }
+
+
+    /**
+     * Drops every cached result
+     */
+    public static void clear() {
+        RESULTS.clear();
+    }
+}
@@ -0,0 +1,265 @@
+package com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers;
+
+import com.appiancorp.ps.plugins.typetransformer.AppianObject;
+import com.appiancorp.ps.plugins.typetransformer.AppianTypeFactory;
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.exceptions.AdmissionRejectedException;
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.exceptions.InvalidFieldException;
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers.DelimFileToolsMetrics.Counter;
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers.DelimFileToolsMetrics.Phase;
+import com.appiancorp.suiteapi.type.AppianType;
+import com.appiancorp.suiteapi.type.TypedValue;
+import com.opencsv.ICSVParser;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.core.Logger;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+
+/**
+ * Draws a random sample of the records of a delimited file, returned in the order they appear in the file.
+ * <p>
+ * The reservoir method reads the whole file once and gives every record the same chance of being picked (Algorithm L,
+ * which only splits the records it keeps). The seek method reads only around random byte offsets, so it takes about
+ * the same time on any size of file, but a record is picked in proportion to the length of the line before it, and a
+ * record that spans lines is only found from its start: an offset that lands inside one is moved on, line by line, to
+ * the first record with as many fields as the header (or the first record).
+ * <p>
+ * Given the same seed, the same version of a file and the same settings return the same sample.
+ */
+public class SampleHelper {
+    private static final Logger LOG = (Logger) LogManager.getLogger(SampleHelper.class);
+
+    public static final String RESERVOIR = "reservoir";
+    public static final String SEEK = "seek";
+
+    private static final int SEEK_ATTEMPTS_PER_ROW = 4;
+    private static final int RESYNC_LINES = 8;
+
+
+    /**
+     * A sampled record and its position in the file, by which the sample is put back in file order
+     */
+    private static final class Sampled {
+        private final long position;
+        private final String[] row;
+
+        Sampled(long position, String[] row) {
+            this.position = position;
+            this.row = row;
+        }
+    }
+
+
+    /**
+     * @param typeFactory  An instance of the TypeTransformer's AppianTypeFactory, build using the TypeService injected by Appian
+     * @param version      The document version to sample
+     * @param parser       A valid ICSVParser instance
+     * @param hasHeaderRow If true, the first line of the file contains the column / field names
+     * @param sampleSize   The number of records to pick
+     * @param method       RESERVOIR or SEEK
+     * @param seed         Seeds the random choices, or null for a different sample each time
+     * @param budget       Limits the estimated size of the rows returned; at least one row is always returned
+     * @return A Dictionary of success, values (the sampled rows in file order), sampleSize, method, rowsScanned and truncated
+     */
+    public static TypedValue sampleFile(AppianTypeFactory typeFactory, DocumentVersion version, ICSVParser parser, boolean hasHeaderRow,
+                                        int sampleSize, String method, Long seed, ByteBudget budget) {
+        long start = System.nanoTime();
+        Random random = seed == null ? new Random() : new Random(seed);
+
+        try (AdmissionController.Permit ignored = AdmissionController.acquire(AdmissionController.estimateRows(sampleSize));
+             RecordReader reader = new RecordReader(version.getFile())) {
+
+            // The first record names the fields, and is a data record too without a header row
+            HeaderRecord header = HeaderRecord.read(version, ParseHelper.delimited(parser), reader);
+            String[] fieldNames = header.getFieldNames(hasHeaderRow);
+            long dataStart = hasHeaderRow ? header.getEndOffset() : 0;
+            reader.seek(dataStart);
+
+            List<Sampled> sample = new ArrayList<>(sampleSize);
+            long rowsScanned = SEEK.equals(method)
+                    ? seekSample(reader, parser, version.getSize(), dataStart, fieldNames.length, sampleSize, random, sample)
+                    : reservoirSample(reader, parser, fieldNames.length, sampleSize, random, sample);
+            sample.sort(Comparator.comparingLong(s -> s.position));
+
+            // Keep the rows that fit the budget, always returning at least one
+            List<String[]> rows = new ArrayList<>(sample.size());
+            boolean truncated = false;
+            long estimatedBytes = 0;
+            for (Sampled sampled : sample) {
+                long rowBytes = ByteBudget.estimateRow(sampled.row);
+                if (rows.isEmpty()) {
+                    budget.consume(rowBytes);
+                } else if (!budget.tryConsume(rowBytes)) {
+                    truncated = true;
+                    break;
+                }
+                rows.add(sampled.row);
+                estimatedBytes += rowBytes;
+            }
+
+            DelimFileToolsMetrics.add(Counter.ROWS_PARSED, rows.size());
+            if (truncated) {
+                LOG.debug("sampleFile: result truncated at {} rows, {} of {} bytes", rows.size(), budget.getUsed(), budget.getLimit());
+                DelimFileToolsMetrics.increment(Counter.RESULTS_TRUNCATED);
+            }
+
+            ParsedPage page = new ParsedPage(fieldNames, rows, 1, truncated, true, version.getSize(), estimatedBytes, false);
+            AppianObject dictionary = (AppianObject) typeFactory.createElement(AppianType.DICTIONARY);
+            dictionary.put("success", typeFactory.createBoolean(true));
+            dictionary.put("values", ParseHelper.toDictionaries(typeFactory, page, null));
+            dictionary.put("sampleSize", typeFactory.createLong((long) rows.size()));
+            dictionary.put("method", typeFactory.createString(method));
+            dictionary.put("rowsScanned", typeFactory.createLong(rowsScanned));
+            dictionary.put("truncated", typeFactory.createBoolean(truncated));
+
+            DelimFileToolsMetrics.record(Phase.SAMPLE, start);
+            return typeFactory.toTypedValue(dictionary);
+
+        } catch (IOException e) {
+            String errorMessage = "IOException caught: " + e.getMessage();
+            LOG.error(errorMessage);
+            return ParseHelper.getErrorReturnValue(typeFactory, errorMessage);
+        } catch (AdmissionRejectedException | InvalidFieldException e) {
+            LOG.debug("sampleFile: {}", e.getMessage());
+            return ParseHelper.getErrorReturnValue(typeFactory, e.getMessage());
+        }
+    }
+
+
+    /**
+     * Picks sampleSize records uniformly from the reader's position to the end of the file. After the reservoir fills,
+     * the number of records to pass over before the next one is kept is drawn directly, so the records passed over
+     * are only split when they contain the quote character.
+     *
+     * @return The number of records read or skipped
+     * @throws InvalidFieldException If a record kept has more fields than there are field names
+     */
+    private static long reservoirSample(RecordReader reader, ICSVParser parser, int fieldCount, int sampleSize, Random random, List<Sampled> sample)
+            throws IOException, InvalidFieldException {
+        long records = 0;
+        String[] row;
+        while (records < sampleSize && (row = reader.readRecord(parser)) != null) {
+            checkWidth(row, fieldCount, records);
+            sample.add(new Sampled(records++, row));
+        }
+        if (records < sampleSize) return records;
+
+        double w = Math.exp(Math.log(nextOpenDouble(random)) / sampleSize);
+        while (true) {
+            double skip = Math.floor(Math.log(nextOpenDouble(random)) / Math.log1p(-w));
+            for (long i = 0; i < skip; i++) {
+                if (!reader.skipRecord(parser)) return records;
+                records++;
+            }
+            if ((row = reader.readRecord(parser)) == null) return records;
+            checkWidth(row, fieldCount, records);
+            sample.set(random.nextInt(sampleSize), new Sampled(records++, row));
+            w *= Math.exp(Math.log(nextOpenDouble(random)) / sampleSize);
+        }
+    }
+
+
+    /**
+     * @param record The 0-based number of the record among the data records
+     * @throws InvalidFieldException If the row has more fields than there are field names, so some would have none
+     */
+    private static void checkWidth(String[] row, int fieldCount, long record) throws InvalidFieldException {
+        if (row.length > fieldCount)
+            throw new InvalidFieldException("Record " + (record + 1) + " has " + row.length + " fields, more than the "
+                    + fieldCount + " of the header (or the first record)");
+    }
+
+
+    /**
+     * Picks up to sampleSize distinct records found at random byte offsets between dataStart and the end of the file,
+     * giving up after a few times that many offsets so a file with fewer records than asked for still returns.
+     *
+     * @return The number of records read
+     * @throws IOException If the file could not be read, or no offset led to a record with the expected fields
+     */
+    private static long seekSample(RecordReader reader, ICSVParser parser, long size, long dataStart, int fieldCount,
+                                   int sampleSize, Random random, List<Sampled> sample) throws IOException {
+        Map<Long, String[]> found = new TreeMap<>();
+        long records = 0;
+        long attempts = (long) sampleSize * SEEK_ATTEMPTS_PER_ROW;
+        IOException lastError = null;
+
+        for (long attempt = 0; attempt < attempts && found.size() < sampleSize && size > dataStart; attempt++) {
+            long offset = dataStart + (long) (random.nextDouble() * (size - dataStart));
+            try {
+                // Move on to the start of the next line, unless the offset is already the first
+                if (offset == dataStart) {
+                    reader.seek(offset);
+                } else {
+                    reader.seek(offset - 1);
+                    reader.skipLines(1);
+                }
+
+                // Move on line by line until a record has the expected number of fields
+                for (int line = 0; line < RESYNC_LINES; line++) {
+                    long recordOffset = reader.getOffset();
+                    if (recordOffset >= size) break;
+
+                    String[] row;
+                    try {
+                        row = reader.readRecord(parser);
+                    } catch (IOException e) {
+                        // Most likely a quote inside a field read as the start of one; it ran to the end of the file
+                        parser = ParseHelper.copyParser(parser);
+                        reader.seek(recordOffset);
+                        reader.skipLines(1);
+                        continue;
+                    }
+                    records++;
+                    if (row == null) break;
+                    if (row.length == fieldCount || fieldCount == 0) {
+                        found.putIfAbsent(recordOffset, row);
+                        break;
+                    }
+                    reader.seek(recordOffset);
+                    reader.skipLines(1);
+                }
+            } catch (IOException e) {
+                lastError = e;
+            }
+        }
+
+        // A file with rows to sample should give at least one, so finding none means no offset could be resynced
+        if (found.isEmpty() && size > dataStart) {
+            if (lastError != null) throw lastError;
+            throw new IOException("No record with " + fieldCount + " fields was found at " + attempts
+                    + " random offsets; use the " + RESERVOIR + " method for this file");
+        }
+
+        for (Map.Entry<Long, String[]> entry : found.entrySet())
+            sample.add(new Sampled(entry.getKey(), entry.getValue()));
+        LOG.debug("seekSample: {} records found in {} reads", sample.size(), records);
+        return records;
+    }
+
+
+    /**
+     * @return A random double greater than 0 and at most 1, which has a logarithm
+     */
+    private static double nextOpenDouble(Random random) {
+        return 1.0 - random.nextDouble();
+    }
+
+
+    /**
+     * @param method A sampling method name, in any case, or null
+     * @return RESERVOIR or SEEK, or null if the name is neither
+     */
+    public static String normalizeMethod(String method) {
+        for (String known : Arrays.asList(RESERVOIR, SEEK))
+            if (known.equalsIgnoreCase(method)) return known;
+        return null;
+    }
+}
@@ -0,0 +1,207 @@
+package com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers;
+
+import com.appiancorp.ps.plugins.typetransformer.AppianList;
+import com.appiancorp.ps.plugins.typetransformer.AppianObject;
+import com.appiancorp.ps.plugins.typetransformer.AppianTypeFactory;
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers.DelimFileToolsMetrics.Counter;
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers.DelimFileToolsMetrics.Phase;
+import com.appiancorp.suiteapi.type.AppianType;
+import com.appiancorp.suiteapi.type.TypedValue;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.core.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.Arrays;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+
+/**
+ * Class for searching the lines of text files found in Appian's content management store in a single streaming pass.
+ * Lines are matched as bytes, and only the lines that match are decoded into Text.
+ */
+public class SearchHelper {
+    private static final Logger LOG = (Logger) LogManager.getLogger(SearchHelper.class);
+
+    private static final byte[] NEWLINE = {'\n'};
+
+    /**
+     * Matches the bytes of one line (or record)
+     */
+    private interface LineMatcher {
+        boolean matches(byte[] bytes, int length);
+    }
+
+
+    /**
+     * Searches a file, returning the matching lines and their 1-based line numbers
+     *
+     * @param typeFactory An instance of the TypeTransformer's AppianTypeFactory, build using the TypeService injected by Appian
+     * @param file        The file to search
+     * @param pattern     The text, or regular expression, to find
+     * @param isRegex     If true, pattern is a java.util.regex regular expression; otherwise it is matched literally
+     * @param ignoreCase  If true, letters match regardless of case (ASCII letters only for a literal pattern)
+     * @param maxResults  Stop after this many matches
+     * @param quoteChar   If not null, lines inside a field quoted with this character are joined to the line that opened it, so a record is matched as a whole
+     * @return A Dictionary of success, values (lineNumber and line), matchCount, linesScanned and truncated
+     */
+    public static TypedValue grepFile(AppianTypeFactory typeFactory, File file, String pattern, boolean isRegex, boolean ignoreCase, int maxResults, Character quoteChar) {
+        long start = System.nanoTime();
+        AppianList values = typeFactory.createList(AppianType.DICTIONARY);
+        int matchCount = 0;
+        long lineNumber = 0;
+        boolean truncated = false;
+
+        try (RecordReader reader = new RecordReader(file)) {
+            Charset charset = reader.getCharset();
+            LineMatcher matcher = isRegex ? regexMatcher(pattern, ignoreCase, charset) : literalMatcher(pattern, ignoreCase, charset);
+            byte quote = quoteChar == null ? 0 : (byte) quoteChar.charValue();
+
+            byte[] record = new byte[256];
+            while (reader.readLineBytes()) {
+                lineNumber++;
+                long recordLine = lineNumber;
+                byte[] bytes = reader.getLineBytes();
+                int length = reader.getLineLength();
+
+                // Join the lines of a record whose quoted field runs over a line break
+                if (quoteChar != null && countQuotes(bytes, length, quote) % 2 == 1) {
+                    int quotes = 1;
+                    record = copy(record, 0, bytes, length);
+                    int recordLength = length;
+                    while (quotes % 2 == 1 && reader.readLineBytes()) {
+                        lineNumber++;
+                        record = copy(record, recordLength, NEWLINE, 1);
+                        recordLength++;
+                        record = copy(record, recordLength, reader.getLineBytes(), reader.getLineLength());
+                        recordLength += reader.getLineLength();
+                        quotes += countQuotes(reader.getLineBytes(), reader.getLineLength(), quote);
+                    }
+                    bytes = record;
+                    length = recordLength;
+                }
+
+                if (!matcher.matches(bytes, length)) continue;
+
+                if (matchCount == maxResults) {
+                    truncated = true;
+                    break;
+                }
+                matchCount++;
+
+                AppianObject match = (AppianObject) typeFactory.createElement(AppianType.DICTIONARY);
+                match.put("lineNumber", typeFactory.createLong(recordLine));
+                match.put("line", typeFactory.createString(new String(bytes, 0, length, charset)));
+                values.add(match);
+            }
+
+        } catch (PatternSyntaxException e) {
+            return ParseHelper.getErrorReturnValue(typeFactory, "Invalid regular expression: " + e.getMessage());
+        } catch (IOException e) {
+            String errorMessage = "IOException caught: " + e.getMessage();
+            LOG.error(errorMessage);
+            return ParseHelper.getErrorReturnValue(typeFactory, errorMessage);
+        }
+
+        DelimFileToolsMetrics.record(Phase.SEARCH, start);
+        DelimFileToolsMetrics.add(Counter.LINES_SEARCHED, lineNumber);
+        LOG.debug("grepFile: {} matches in {} lines, truncated: {}", matchCount, lineNumber, truncated);
+
+        AppianObject dictionary = (AppianObject) typeFactory.createElement(AppianType.DICTIONARY);
+        dictionary.put("success", typeFactory.createBoolean(true));
+        dictionary.put("values", values);
+        dictionary.put("matchCount", typeFactory.createLong((long) matchCount));
+        dictionary.put("linesScanned", typeFactory.createLong(lineNumber));
+        dictionary.put("truncated", typeFactory.createBoolean(truncated));
+        return typeFactory.toTypedValue(dictionary);
+    }
+
+
+    private static int countQuotes(byte[] bytes, int length, byte quote) {
+        int count = 0;
+        for (int i = 0; i < length; i++)
+            if (bytes[i] == quote) count++;
+        return count;
+    }
+
+
+    private static byte[] copy(byte[] target, int offset, byte[] source, int length) {
+        if (offset + length > target.length) {
+            byte[] grown = new byte[Math.max(target.length * 2, offset + length)];
+            System.arraycopy(target, 0, grown, 0, offset);
+            target = grown;
+        }
+        System.arraycopy(source, 0, target, offset, length);
+        return target;
+    }
+
+
+    /**
+     * A Boyer-Moore-Horspool search for the pattern's bytes, skipping ahead by up to the pattern's length on a mismatch
+     */
+    private static LineMatcher literalMatcher(String pattern, final boolean ignoreCase, Charset charset) {
+        final byte[] needle = pattern.getBytes(charset);
+        if (ignoreCase)
+            for (int i = 0; i < needle.length; i++) needle[i] = fold(needle[i]);
+
+        final int[] shift = new int[256];
+        Arrays.fill(shift, needle.length);
+        for (int i = 0; i < needle.length - 1; i++)
+            shift[needle[i] & 0xFF] = needle.length - 1 - i;
+
+        return (bytes, length) -> {
+            int last = needle.length - 1;
+            for (int i = 0; i + last < length; ) {
+                int j = last;
+                while (j >= 0 && (ignoreCase ? fold(bytes[i + j]) : bytes[i + j]) == needle[j])
+                    j--;
+                if (j < 0) return true;
+                byte end = bytes[i + last];
+                i += shift[(ignoreCase ? fold(end) : end) & 0xFF];
+            }
+            return needle.length == 0;
+        };
+    }
+
+
+    private static byte fold(byte b) {
+        return b >= 'A' && b <= 'Z' ? (byte) (b + ('a' - 'A')) : b;
+    }
+
+
+    /**
+     * Decodes each line into one reused CharBuffer and runs one reused Matcher over it
+     */
+    private static LineMatcher regexMatcher(String pattern, boolean ignoreCase, Charset charset) {
+        final Matcher matcher = Pattern.compile(pattern, ignoreCase ? Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE : 0).matcher("");
+        final CharsetDecoder decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+        return new LineMatcher() {
+            private CharBuffer chars = CharBuffer.allocate(256);
+
+            @Override
+            public boolean matches(byte[] bytes, int length) {
+                int needed = (int) Math.ceil(length * (double) decoder.maxCharsPerByte());
+                if (chars.capacity() < needed) chars = CharBuffer.allocate(Math.max(needed, chars.capacity() * 2));
+
+                chars.clear();
+                decoder.reset();
+                ByteBuffer in = ByteBuffer.wrap(bytes, 0, length);
+                decoder.decode(in, chars, true);
+                decoder.flush(chars);
+                chars.flip();
+
+                return matcher.reset(chars).find();
+            }
+        };
+    }
+}
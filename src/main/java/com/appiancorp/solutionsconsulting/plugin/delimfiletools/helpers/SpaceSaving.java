@@ -0,0 +1,116 @@
+package com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * Finds the most frequent values in a stream while holding a fixed number of counters (the Space-Saving algorithm).
+ * When every counter is taken, a new value replaces the least frequent one and inherits its count as an overestimate,
+ * so each counter also keeps that error; a count less its error is how often the value was certainly seen.
+ * <p>
+ * The counters form a min-heap on count, so each value costs O(log capacity).
+ */
+public class SpaceSaving {
+
+    private static final int MAX_VALUE_LENGTH = 200;
+
+    private final int capacity;
+    private final String[] values;
+    private final long[] counts;
+    private final long[] errors;
+    private final Map<String, Integer> slots; // value -> heap position
+    private int size = 0;
+
+
+    /**
+     * @param capacity The number of counters; several times the number of top values wanted gives accurate results
+     */
+    public SpaceSaving(int capacity) {
+        this.capacity = capacity;
+        this.values = new String[capacity];
+        this.counts = new long[capacity];
+        this.errors = new long[capacity];
+        this.slots = new HashMap<>(capacity * 2);
+    }
+
+
+    public void add(String value) {
+        if (value.length() > MAX_VALUE_LENGTH) value = value.substring(0, MAX_VALUE_LENGTH);
+
+        Integer slot = slots.get(value);
+        if (slot != null) {
+            counts[slot]++;
+            siftDown(slot);
+        } else if (size < capacity) {
+            values[size] = value;
+            counts[size] = 1;
+            errors[size] = 0;
+            slots.put(value, size);
+            siftUp(size++);
+        } else {
+            // Replace the least frequent value, at the top of the heap
+            slots.remove(values[0]);
+            values[0] = value;
+            errors[0] = counts[0];
+            counts[0]++;
+            slots.put(value, 0);
+            siftDown(0);
+        }
+    }
+
+
+    /**
+     * @param n The number of values wanted
+     * @return Up to n [value, count] pairs, most frequent first, where count is the number of times the value was
+     * certainly seen; values whose counter has only ever been an overestimate are left out
+     */
+    public List<Object[]> top(int n) {
+        List<Object[]> top = new ArrayList<>(size);
+        for (int i = 0; i < size; i++)
+            if (counts[i] > errors[i]) top.add(new Object[]{values[i], counts[i] - errors[i]});
+        top.sort((a, b) -> Long.compare((Long) b[1], (Long) a[1]));
+        return top.subList(0, Math.min(n, top.size()));
+    }
+
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) / 2;
+            if (counts[parent] <= counts[i]) return;
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+
+    private void siftDown(int i) {
+        while (true) {
+            int smallest = i;
+            int left = 2 * i + 1;
+            int right = left + 1;
+            if (left < size && counts[left] < counts[smallest]) smallest = left;
+            if (right < size && counts[right] < counts[smallest]) smallest = right;
+            if (smallest == i) return;
+            swap(i, smallest);
+            i = smallest;
+        }
+    }
+
+
+    private void swap(int a, int b) {
+        String value = values[a];
+        values[a] = values[b];
+        values[b] = value;
+        long count = counts[a];
+        counts[a] = counts[b];
+        counts[b] = count;
+        long error = errors[a];
+        errors[a] = errors[b];
+        errors[b] = error;
+        slots.put(values[a], a);
+        slots.put(values[b], b);
+    }
+}
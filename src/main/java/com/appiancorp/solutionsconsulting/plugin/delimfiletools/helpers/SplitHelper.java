@@ -0,0 +1,281 @@
+package com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers;
+
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.exceptions.InvalidFieldException;
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers.DelimFileToolsMetrics.Counter;
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers.DelimFileToolsMetrics.Phase;
+import com.appiancorp.suiteapi.common.exceptions.PrivilegeException;
+import com.appiancorp.suiteapi.common.exceptions.StorageLimitException;
+import com.appiancorp.suiteapi.content.ContentService;
+import com.appiancorp.suiteapi.content.exceptions.DuplicateUuidException;
+import com.appiancorp.suiteapi.content.exceptions.InsufficientNameUniquenessException;
+import com.appiancorp.suiteapi.content.exceptions.InvalidContentException;
+import com.opencsv.ICSVParser;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.core.Logger;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+
+/**
+ * Splits a delimited file into pieces by copying byte ranges of it, so no record is split into fields and written
+ * again. Where the pieces start is found in one pass that hands the parser only the lines containing the quote
+ * character (see RecordReader.skipRecord()), so a piece never starts inside a quoted field. The pieces are then copied
+ * in parallel with FileChannel.transferTo, which lets the operating system copy the bytes without them passing through
+ * the JVM.
+ * <p>
+ * A split makes at most delimfiletools.split.maxPieces (default 1000) documents.
+ */
+public class SplitHelper {
+    private static final Logger LOG = (Logger) LogManager.getLogger(SplitHelper.class);
+
+    public static final int MAX_PIECES = Math.max(1, Integer.getInteger("delimfiletools.split.maxPieces", 1000));
+
+
+    /**
+     * A run of whole records to copy to one piece
+     */
+    static final class Piece {
+        private final long start;
+        private final long end;
+        private final long rows;
+
+        Piece(long start, long end, long rows) {
+            this.start = start;
+            this.end = end;
+            this.rows = rows;
+        }
+
+        public long getStart() {
+            return start;
+        }
+
+        public long getEnd() {
+            return end;
+        }
+
+        public long getRows() {
+            return rows;
+        }
+    }
+
+
+    /**
+     * Where a file's header ends and each of its pieces starts and ends
+     */
+    static final class SplitPlan {
+        private final long headerEnd;
+        private final List<Piece> pieces;
+
+        SplitPlan(long headerEnd, List<Piece> pieces) {
+            this.headerEnd = headerEnd;
+            this.pieces = pieces;
+        }
+
+        /**
+         * @return The byte offset of the first record after the header, or 0 without a header row
+         */
+        public long getHeaderEnd() {
+            return headerEnd;
+        }
+
+        public List<Piece> getPieces() {
+            return pieces;
+        }
+    }
+
+
+    /**
+     * Splits a document into new documents named after docName with the piece's number, e.g. orders_01, orders_02.
+     * The documents are created on the calling thread, which holds the user's Appian context, and only the copying
+     * is done in parallel. If the split fails, the documents already created are deleted.
+     *
+     * @param contentService A ContentService instance injected by Appian
+     * @param version        The document version to split
+     * @param parser         A valid ICSVParser instance
+     * @param hasHeaderRow   If true, the first record is a header row and not part of any piece
+     * @param includeHeader  If true, the header row is copied to the start of each piece
+     * @param pieceCount     Split into this many pieces of about the same number of bytes, or 0
+     * @param maxRows        Split into pieces of at most this many records, or 0
+     * @param maxBytes       Split into pieces of at most this many bytes, not counting a header, or 0
+     * @param parentFolder   The ID of the folder to save the pieces in
+     * @param docName        The base name of the pieces, not including extension
+     * @param extension      The file extension of the pieces
+     * @param rowCounts      Receives the number of records copied to each piece, not counting a header
+     * @return The new documents, in the order of the pieces in the file
+     * @throws IOException                         If a file could not be read or written
+     * @throws InvalidFieldException               If the file would be split into more than MAX_PIECES pieces
+     * @throws InvalidContentException             thrown by Appian
+     * @throws InsufficientNameUniquenessException thrown by Appian
+     * @throws DuplicateUuidException              thrown by Appian
+     * @throws StorageLimitException               thrown by Appian
+     * @throws PrivilegeException                  thrown by Appian
+     */
+    public static List<Long> split(ContentService contentService, DocumentVersion version, ICSVParser parser, boolean hasHeaderRow, boolean includeHeader,
+                                   int pieceCount, long maxRows, long maxBytes, Long parentFolder, String docName, String extension, List<Long> rowCounts)
+            throws IOException, InvalidFieldException, InvalidContentException, InsufficientNameUniquenessException, DuplicateUuidException, StorageLimitException, PrivilegeException {
+        long start = System.nanoTime();
+        SplitPlan plan = findPieces(version, parser, hasHeaderRow, pieceCount, maxRows, maxBytes);
+        List<Piece> pieces = plan.getPieces();
+
+        String nameFormat = "%s_%0" + Integer.toString(pieces.size()).length() + "d";
+        List<Long> documents = new ArrayList<>(pieces.size());
+        List<File> targets = new ArrayList<>(pieces.size());
+        boolean complete = false;
+        try {
+            for (int i = 0; i < pieces.size(); i++) {
+                Long document = WriteHelper.createAppianDocument(contentService, String.format(nameFormat, docName, i + 1), extension, parentFolder);
+                documents.add(document);
+                targets.add(new File(contentService.getInternalFilename(document)));
+            }
+
+            copyPieces(version.getFile(), plan, includeHeader && hasHeaderRow, targets);
+
+            for (Long document : documents)
+                contentService.setSizeOfDocumentVersion(document);
+            complete = true;
+        } finally {
+            if (!complete)
+                for (Long document : documents) WriteHelper.deleteAppianDocument(contentService, document);
+        }
+
+        for (Piece piece : pieces)
+            rowCounts.add(piece.getRows());
+
+        DelimFileToolsMetrics.add(Counter.DOCUMENTS_WRITTEN, documents.size());
+        DelimFileToolsMetrics.record(Phase.SPLIT, start);
+        return documents;
+    }
+
+
+    /**
+     * Finds where to split a file. Exactly one of the limits should be above zero; every piece has at least one
+     * record, so a file with fewer records than pieceCount gives fewer pieces, and a record longer than maxBytes
+     * is a piece by itself.
+     *
+     * @param version      The document version to split
+     * @param parser       A valid ICSVParser instance
+     * @param hasHeaderRow If true, the first record is a header row and not part of any piece
+     * @param pieceCount   Split into this many pieces of about the same number of bytes, or 0
+     * @param maxRows      Split into pieces of at most this many records, or 0
+     * @param maxBytes     Split into pieces of at most this many bytes, not counting a header, or 0
+     * @return The pieces, of which there is one, with no rows, if the file has no records
+     * @throws IOException           If the file could not be read, or it ends inside a quoted field
+     * @throws InvalidFieldException If there would be more than MAX_PIECES pieces
+     */
+    static SplitPlan findPieces(DocumentVersion version, ICSVParser parser, boolean hasHeaderRow, int pieceCount, long maxRows, long maxBytes)
+            throws IOException, InvalidFieldException {
+        long size = version.getSize();
+        List<Piece> pieces = new ArrayList<>();
+
+        try (RecordReader reader = new RecordReader(version.getFile())) {
+            long dataStart = hasHeaderRow ? HeaderRecord.read(version, ParseHelper.delimited(parser), reader).getEndOffset() : 0;
+            reader.seek(dataStart);
+
+            long pieceStart = dataStart;
+            long boundary = dataStart;
+            long rows = 0;
+            while (reader.skipRecord(parser)) {
+                long end = reader.getOffset();
+
+                // Close the piece before this record if the record would take it over its limit
+                boolean cut;
+                if (maxRows > 0)
+                    cut = rows >= maxRows;
+                else if (maxBytes > 0)
+                    cut = end - pieceStart > maxBytes;
+                else
+                    cut = pieces.size() < pieceCount - 1 && boundary >= dataStart + (size - dataStart) * (pieces.size() + 1) / pieceCount;
+
+                if (cut && rows > 0) {
+                    if (pieces.size() + 1 >= MAX_PIECES)
+                        throw new InvalidFieldException("The file would be split into more than " + MAX_PIECES + " pieces", "TooManyPieces");
+                    pieces.add(new Piece(pieceStart, boundary, rows));
+                    pieceStart = boundary;
+                    rows = 0;
+                }
+                rows++;
+                boundary = end;
+            }
+            if (rows > 0 || pieces.isEmpty())
+                pieces.add(new Piece(pieceStart, boundary, rows));
+
+            LOG.debug("findPieces: {} pieces after a header of {} bytes", pieces.size(), dataStart);
+            return new SplitPlan(dataStart, pieces);
+        }
+    }
+
+
+    /**
+     * Copies each piece of a file to its own file, in parallel
+     *
+     * @param source        The file split
+     * @param plan          The pieces to copy
+     * @param includeHeader If true, the header's bytes are copied to the start of each piece
+     * @param targets       The file to copy each piece to, in the order of the plan's pieces
+     * @throws IOException If a file could not be read or written
+     */
+    static void copyPieces(File source, SplitPlan plan, boolean includeHeader, List<File> targets) throws IOException {
+        List<Piece> pieces = plan.getPieces();
+        long headerEnd = includeHeader ? plan.getHeaderEnd() : 0;
+
+        List<Future<Long>> copies = new ArrayList<>(pieces.size());
+        try {
+            for (int i = 0; i < pieces.size(); i++) {
+                final Piece piece = pieces.get(i);
+                final File target = targets.get(i);
+                copies.add(BatchParser.EXECUTOR.submit(() -> copyPiece(source, headerEnd, piece, target)));
+            }
+
+            long bytesWritten = 0;
+            for (Future<Long> copy : copies)
+                bytesWritten += copy.get();
+            DelimFileToolsMetrics.add(Counter.BYTES_WRITTEN, bytesWritten);
+
+        } catch (ExecutionException e) {
+            for (Future<Long> copy : copies) copy.cancel(true);
+            Throwable cause = e.getCause();
+            throw cause instanceof IOException ? (IOException) cause : new IOException(String.valueOf(cause), cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            for (Future<Long> copy : copies) copy.cancel(true);
+            throw new InterruptedIOException("Interrupted while copying the pieces");
+        }
+    }
+
+
+    /**
+     * @return The number of bytes written
+     */
+    private static long copyPiece(File source, long headerEnd, Piece piece, File target) throws IOException {
+        try (FileChannel in = new FileInputStream(source).getChannel();
+             FileChannel out = new FileOutputStream(target).getChannel()) {
+            transfer(in, 0, headerEnd, out);
+            transfer(in, piece.start, piece.end, out);
+        }
+        long bytes = headerEnd + piece.end - piece.start;
+        DelimFileToolsMetrics.add(Counter.BYTES_READ, bytes);
+        return bytes;
+    }
+
+
+    /**
+     * Copies a byte range of one file to the current position of another
+     */
+    static void transfer(FileChannel in, long start, long end, FileChannel out) throws IOException {
+        long position = start;
+        while (position < end) {
+            long n = in.transferTo(position, end - position, out);
+            if (n <= 0) throw new IOException("File truncated while copying");
+            position += n;
+        }
+    }
+}
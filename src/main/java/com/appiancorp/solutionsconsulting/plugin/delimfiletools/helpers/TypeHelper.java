@@ -11,23 +11,91 @@ import com.appiancorp.type.AppianTypeLong;
 import com.appiancorp.type.DataTypeProperties;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 
 public class TypeHelper {
 
+    /**
+     * The shapes of source data that can be turned into delimited rows
+     */
+    public enum SourceKind {
+        LIST_OF_DICTIONARY,
+        DICTIONARY,
+        LIST_OF_CDT,
+        CDT,
+        OTHER
+    }
+
+    // Type IDs never change shape once created (a new CDT version gets a new ID), so this never needs invalidating
+    private static final ConcurrentHashMap<Long, SourceKind> SOURCE_KINDS = new ConcurrentHashMap<>();
+
+
+    /**
+     * Classifies the given value by its instance type, consulting the TypeService only the first time a type is seen.
+     *
+     * @param typeService
+     * @param typedValue
+     * @return The SourceKind for the value's type; OTHER if it is not a Dictionary or CDT, or a list of them
+     */
+    public static SourceKind getSourceKind(TypeService typeService, TypedValue typedValue) {
+        if (typedValue == null || typedValue.getInstanceType() == null) return SourceKind.OTHER;
+
+        Long type = typedValue.getInstanceType();
+        SourceKind kind = SOURCE_KINDS.get(type);
+        if (kind == null) {
+            DelimFileToolsMetrics.increment(DelimFileToolsMetrics.Counter.TYPE_CACHE_MISSES);
+            kind = classify(typeService, type);
+            SOURCE_KINDS.putIfAbsent(type, kind);
+        } else {
+            DelimFileToolsMetrics.increment(DelimFileToolsMetrics.Counter.TYPE_CACHE_HITS);
+        }
+        return kind;
+    }
+
+
+    /**
+     * @param typeService
+     * @param type
+     * @return
+     */
+    private static SourceKind classify(TypeService typeService, Long type) {
+        long typeId = type;
+        if (typeId == AppianTypeLong.LIST_OF_DICTIONARY) return SourceKind.LIST_OF_DICTIONARY;
+        if (typeId == AppianTypeLong.DICTIONARY) return SourceKind.DICTIONARY;
+        if (typeId == AppianTypeLong.LIST_OF_VARIANT) return SourceKind.OTHER; // Contents vary per value, so can't be cached
+
+        try {
+            DatatypeProperties typeProperties = typeService.getDatatypeProperties(type);
+            if (typeProperties == null || typeProperties.hasFlag(DataTypeProperties.FLAG_SYSTEM)) return SourceKind.OTHER;
+
+            Datatype datatype = typeService.getType(type);
+            if (!datatype.isListType())
+                return datatype.isRecordType() ? SourceKind.CDT : SourceKind.OTHER;
+
+            Datatype elementType = typeService.getType(datatype.getTypeof());
+            return elementType.isRecordType() ? SourceKind.LIST_OF_CDT : SourceKind.OTHER;
+        } catch (Exception e) {
+            return SourceKind.OTHER;
+        }
+    }
+
+
     /**
      * @param typeService
      * @param typedValue
      * @return
-     * @throws InvalidCdtException
      */
     public static Boolean isListDictOrCdt(TypeService typeService, TypedValue typedValue) {
         if (typedValue == null) return false;
+        if (getSourceKind(typeService, typedValue) != SourceKind.OTHER) return true;
+
+        // Untyped values (e.g. List of Variant) can only be checked by trying the casts
         try {
-            new ArrayList<>(Arrays.asList((HashMap<TypedValue, TypedValue>[]) typeService.cast(AppianTypeLong.LIST_OF_DICTIONARY, typedValue).getValue()));
+            typeService.cast(AppianTypeLong.LIST_OF_DICTIONARY, typedValue);
         } catch (Exception e1) {
             try {
-                typeService.cast(AppianTypeLong.DICTIONARY, typedValue).getValue();
+                typeService.cast(AppianTypeLong.DICTIONARY, typedValue);
             } catch (Exception e2) {
                 return false;
             }
@@ -44,18 +112,47 @@ public class TypeHelper {
      */
     public static ArrayList<HashMap<TypedValue, TypedValue>> toMapList(TypeService typeService, TypedValue typedValue) throws InvalidCdtException {
         try {
-            return new ArrayList<HashMap<TypedValue, TypedValue>>(Arrays.asList((HashMap<TypedValue, TypedValue>[]) typeService.cast(AppianTypeLong.LIST_OF_DICTIONARY, typedValue).getValue()));
+            switch (getSourceKind(typeService, typedValue)) {
+                case LIST_OF_DICTIONARY:
+                    return toMapList(typedValue.getValue());
+                case DICTIONARY:
+                    return toMapList(new Object[]{typedValue.getValue()});
+                case LIST_OF_CDT:
+                    return toMapList(typeService.cast(AppianTypeLong.LIST_OF_DICTIONARY, typedValue).getValue());
+                case CDT:
+                    return toMapList(new Object[]{typeService.cast(AppianTypeLong.DICTIONARY, typedValue).getValue()});
+                default:
+                    break;
+            }
+        } catch (Exception e) {
+            throw new InvalidCdtException("Invalid CDT");
+        }
+
+        // Untyped values (e.g. List of Variant) can only be converted by trying the casts
+        try {
+            return toMapList(typeService.cast(AppianTypeLong.LIST_OF_DICTIONARY, typedValue).getValue());
         } catch (Exception e1) {
             try {
-                HashMap<TypedValue, TypedValue> returnMap = (HashMap<TypedValue, TypedValue>) typeService.cast(AppianTypeLong.DICTIONARY, typedValue).getValue();
-                ArrayList<HashMap<TypedValue, TypedValue>> returnList = new ArrayList<HashMap<TypedValue, TypedValue>>();
-                returnList.add(returnMap);
-                return (ArrayList<HashMap<TypedValue, TypedValue>>) returnList.clone();
+                return toMapList(new Object[]{typeService.cast(AppianTypeLong.DICTIONARY, typedValue).getValue()});
             } catch (Exception e2) {
                 throw new InvalidCdtException("Invalid CDT");
             }
         }
+    }
+
+
+    /**
+     * @param value The value of a List of Dictionary, i.e. an array of maps
+     * @return
+     */
+    private static ArrayList<HashMap<TypedValue, TypedValue>> toMapList(Object value) {
+        if (value == null) return new ArrayList<>(0);
 
+        Object[] maps = (Object[]) value;
+        ArrayList<HashMap<TypedValue, TypedValue>> returnList = new ArrayList<>(maps.length);
+        for (Object map : maps)
+            returnList.add((HashMap<TypedValue, TypedValue>) map);
+        return returnList;
     }
 
 
@@ -0,0 +1,141 @@
+package com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers;
+
+import com.appiancorp.ps.plugins.typetransformer.AppianList;
+import com.appiancorp.ps.plugins.typetransformer.AppianObject;
+import com.appiancorp.ps.plugins.typetransformer.AppianTypeFactory;
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers.DelimFileToolsMetrics.Counter;
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers.DelimFileToolsMetrics.Phase;
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers.ValidationSpec.ColumnRule;
+import com.appiancorp.suiteapi.type.AppianType;
+import com.appiancorp.suiteapi.type.TypedValue;
+import com.opencsv.ICSVParser;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.core.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+
+/**
+ * Class for checking the rows of delimited files found in Appian's content management store against per-column
+ * rules in a single streaming pass. Only the violations are built into Appian values; valid rows are dropped as soon
+ * as they have been checked.
+ */
+public class ValidateHelper {
+    private static final Logger LOG = (Logger) LogManager.getLogger(ValidateHelper.class);
+
+    private static final int MAX_VALUE_LENGTH = 200;
+
+
+    /**
+     * Validates every row of a file
+     *
+     * @param typeFactory   An instance of the TypeTransformer's AppianTypeFactory, build using the TypeService injected by Appian
+     * @param file          The file to validate
+     * @param parser        A valid ICSVParser instance
+     * @param hasHeaderRow  If true, the first line of the file contains the column / field names
+     * @param spec          The rules to check
+     * @param maxViolations The most violations to return; the rest are only counted
+     * @return A Dictionary of success, valid, values (the violations), rowCount, invalidRowCount, violationCount,
+     * violationsByColumn, violationsByRule and truncated
+     */
+    public static TypedValue validateFile(AppianTypeFactory typeFactory, File file, ICSVParser parser, boolean hasHeaderRow, ValidationSpec spec, int maxViolations) {
+        long start = System.nanoTime();
+        AppianList violations = typeFactory.createList(AppianType.DICTIONARY);
+        long rowCount = 0;
+        long invalidRowCount = 0;
+        long violationCount = 0;
+
+        String[] names = spec.getColumns().keySet().toArray(new String[0]);
+        ColumnRule[] rules = spec.getColumns().values().toArray(new ColumnRule[0]);
+        int[] indexes = new int[names.length];
+        long[] columnCounts = new long[names.length];
+        Map<String, Long> ruleCounts = new LinkedHashMap<>();
+
+        try (RecordReader reader = new RecordReader(file)) {
+            // Find the field each rule applies to
+            String[] header = null;
+            if (hasHeaderRow) {
+                header = reader.readRecord(parser);
+                if (header == null) header = new String[0];
+            }
+            for (int i = 0; i < names.length; i++) {
+                indexes[i] = KeyColumns.indexOf(names[i], header);
+                if (indexes[i] < 0)
+                    return ParseHelper.getErrorReturnValue(typeFactory, "There is a rule for column " + names[i] + " but the file has no such column");
+            }
+
+            String[] row;
+            long lineNumber = reader.getLinesRead() + 1;
+            while ((row = reader.readRecord(parser)) != null) {
+                rowCount++;
+                boolean rowValid = true;
+
+                for (int i = 0; i < rules.length; i++) {
+                    String value = indexes[i] < row.length ? row[indexes[i]] : null;
+                    String broken;
+                    if (value == null || ColumnProfile.isBlank(value))
+                        broken = rules[i].isRequired() ? "required" : null;
+                    else
+                        broken = rules[i].check(value);
+                    if (broken == null) continue;
+
+                    rowValid = false;
+                    violationCount++;
+                    columnCounts[i]++;
+                    Long ruleCount = ruleCounts.get(broken);
+                    ruleCounts.put(broken, ruleCount == null ? 1 : ruleCount + 1);
+
+                    if (violations.size() < maxViolations)
+                        violations.add(toViolation(typeFactory, rowCount, lineNumber, names[i], indexes[i], broken, rules[i], value));
+                }
+
+                if (!rowValid) invalidRowCount++;
+                lineNumber = reader.getLinesRead() + 1;
+            }
+
+        } catch (IOException e) {
+            String errorMessage = "IOException caught: " + e.getMessage();
+            LOG.error(errorMessage);
+            return ParseHelper.getErrorReturnValue(typeFactory, errorMessage);
+        }
+
+        DelimFileToolsMetrics.record(Phase.VALIDATE, start);
+        DelimFileToolsMetrics.add(Counter.ROWS_PARSED, rowCount);
+        LOG.debug("validateFile: {} rows, {} invalid, {} violations", rowCount, invalidRowCount, violationCount);
+
+        AppianObject byColumn = (AppianObject) typeFactory.createElement(AppianType.DICTIONARY);
+        for (int i = 0; i < names.length; i++)
+            byColumn.put(names[i], typeFactory.createLong(columnCounts[i]));
+        AppianObject byRule = (AppianObject) typeFactory.createElement(AppianType.DICTIONARY);
+        for (Map.Entry<String, Long> ruleCount : ruleCounts.entrySet())
+            byRule.put(ruleCount.getKey(), typeFactory.createLong(ruleCount.getValue()));
+
+        AppianObject dictionary = (AppianObject) typeFactory.createElement(AppianType.DICTIONARY);
+        dictionary.put("success", typeFactory.createBoolean(true));
+        dictionary.put("valid", typeFactory.createBoolean(violationCount == 0));
+        dictionary.put("values", violations);
+        dictionary.put("rowCount", typeFactory.createLong(rowCount));
+        dictionary.put("invalidRowCount", typeFactory.createLong(invalidRowCount));
+        dictionary.put("violationCount", typeFactory.createLong(violationCount));
+        dictionary.put("violationsByColumn", byColumn);
+        dictionary.put("violationsByRule", byRule);
+        dictionary.put("truncated", typeFactory.createBoolean(violationCount > violations.size()));
+        return typeFactory.toTypedValue(dictionary);
+    }
+
+
+    private static AppianObject toViolation(AppianTypeFactory typeFactory, long rowNumber, long lineNumber, String column, int columnIndex, String broken, ColumnRule rule, String value) {
+        AppianObject violation = (AppianObject) typeFactory.createElement(AppianType.DICTIONARY);
+        violation.put("rowNumber", typeFactory.createLong(rowNumber));
+        violation.put("lineNumber", typeFactory.createLong(lineNumber));
+        violation.put("column", typeFactory.createString(column));
+        violation.put("columnIndex", typeFactory.createLong((long) columnIndex + 1));
+        violation.put("rule", typeFactory.createString(broken));
+        violation.put("message", typeFactory.createString(rule.describe(broken)));
+        violation.put("value", typeFactory.createString(value == null || value.length() <= MAX_VALUE_LENGTH ? value : value.substring(0, MAX_VALUE_LENGTH)));
+        return violation;
+    }
+}
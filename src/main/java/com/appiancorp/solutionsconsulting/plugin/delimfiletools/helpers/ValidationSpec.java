@@ -0,0 +1,182 @@
+package com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers;
+
+import com.appiancorp.ps.plugins.typetransformer.AppianElement;
+import com.appiancorp.ps.plugins.typetransformer.AppianList;
+import com.appiancorp.ps.plugins.typetransformer.AppianObject;
+import com.appiancorp.ps.plugins.typetransformer.AppianPrimitive;
+import com.appiancorp.ps.plugins.typetransformer.AppianTypeFactory;
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.exceptions.InvalidDictionaryException;
+import com.appiancorp.suiteapi.type.TypeService;
+import com.appiancorp.suiteapi.type.TypedValue;
+
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+
+/**
+ * The rules each column of a delimited file must follow, as passed in a rules Dictionary keyed by column name, e.g.
+ * <pre>
+ * {
+ *   id: { required: true, type: "integer" },
+ *   email: { regex: "[^@]+@[^@]+", maxLength: 100 },
+ *   status: { allowedValues: { "OPEN", "CLOSED" } }
+ * }
+ * </pre>
+ * Column names are the Dictionary keys parseDelimFile would return (c1, c2, ... without a header row). Every rule is
+ * optional; all but required apply only to values that are not blank. A type is one of integer, decimal, boolean,
+ * date (yyyy-MM-dd), datetime or text, or the inferredType returned by profileDelimFile.
+ */
+public class ValidationSpec {
+
+    /**
+     * The rules for one column. Not thread-safe: each holds its own regex Matcher.
+     */
+    public static class ColumnRule {
+        private boolean required;
+        private ValueType type;
+        private Matcher regex;
+        private Integer maxLength;
+        private Set<String> allowedValues;
+
+        public boolean isRequired() {
+            return required;
+        }
+
+        /**
+         * @param value A value that is not blank
+         * @return The name of the first rule the value breaks, or null if it follows them all
+         */
+        public String check(String value) {
+            if (maxLength != null && value.length() > maxLength) return "maxLength";
+            if (type != null && type != ValueType.TEXT && !type.parses(value.trim())) return "type";
+            if (allowedValues != null && !allowedValues.contains(value)) return "allowedValues";
+            if (regex != null && !regex.reset(value).matches()) return "regex";
+            return null;
+        }
+
+        /**
+         * @return A message describing the broken rule
+         */
+        public String describe(String rule) {
+            switch (rule) {
+                case "required":
+                    return "A value is required";
+                case "maxLength":
+                    return "Longer than " + maxLength + " characters";
+                case "type":
+                    return "Not a valid " + type.getDisplayName();
+                case "allowedValues":
+                    return "Not one of the allowed values";
+                case "regex":
+                    return "Does not match " + regex.pattern().pattern();
+                default:
+                    return rule;
+            }
+        }
+    }
+
+    private final Map<String, ColumnRule> columns = new LinkedHashMap<>();
+
+
+    /**
+     * Reads a ValidationSpec from a Dictionary
+     *
+     * @param typeService TypeService injected by Appian
+     * @param rules       The Dictionary passed in by the user
+     * @return The ValidationSpec
+     * @throws InvalidDictionaryException If rules is not a Dictionary of Dictionaries, or a rule is not valid
+     */
+    public static ValidationSpec fromTypedValue(TypeService typeService, TypedValue rules) throws InvalidDictionaryException {
+        if (rules == null || rules.getValue() == null) throw new InvalidDictionaryException("You must supply the rules to validate against");
+
+        AppianElement element;
+        try {
+            element = AppianTypeFactory.newInstance(typeService).toAppianElement(rules);
+        } catch (Exception e) {
+            throw new InvalidDictionaryException("rules must be a Dictionary");
+        }
+        if (!(element instanceof AppianObject)) throw new InvalidDictionaryException("rules must be a Dictionary");
+
+        ValidationSpec spec = new ValidationSpec();
+        for (Map.Entry<String, AppianElement> column : ((AppianObject) element).entrySet()) {
+            if (!(column.getValue() instanceof AppianObject))
+                throw new InvalidDictionaryException("rules." + column.getKey() + " must be a Dictionary");
+            spec.columns.put(column.getKey(), fromAppianObject(column.getKey(), (AppianObject) column.getValue()));
+        }
+        if (spec.columns.isEmpty()) throw new InvalidDictionaryException("You must supply the rules to validate against");
+        return spec;
+    }
+
+
+    private static ColumnRule fromAppianObject(String column, AppianObject object) throws InvalidDictionaryException {
+        ColumnRule rule = new ColumnRule();
+        for (Map.Entry<String, AppianElement> entry : object.entrySet()) {
+            String key = entry.getKey();
+            String path = "rules." + column + "." + key;
+            AppianElement value = entry.getValue();
+
+            if ("allowedValues".equals(key)) {
+                rule.allowedValues = new HashSet<>();
+                if (value instanceof AppianList) {
+                    for (AppianElement allowed : (AppianList) value) {
+                        if (!(allowed instanceof AppianPrimitive))
+                            throw new InvalidDictionaryException(path + " must be a list of values");
+                        if (!((AppianPrimitive) allowed).isNull())
+                            rule.allowedValues.add(((AppianPrimitive) allowed).getValue().toString());
+                    }
+                } else if (value instanceof AppianPrimitive && !((AppianPrimitive) value).isNull()) {
+                    rule.allowedValues.add(((AppianPrimitive) value).getValue().toString());
+                } else {
+                    throw new InvalidDictionaryException(path + " must be a list of values");
+                }
+                continue;
+            }
+
+            if (!(value instanceof AppianPrimitive))
+                throw new InvalidDictionaryException(path + " must be a single value");
+            Object raw = ((AppianPrimitive) value).getValue();
+            if (raw == null) continue;
+
+            switch (key) {
+                case "required":
+                    if (!((AppianPrimitive) value).isBoolean())
+                        throw new InvalidDictionaryException(path + " must be true or false");
+                    rule.required = ((AppianPrimitive) value).getBoolean();
+                    break;
+                case "type":
+                    rule.type = ValueType.fromName(raw.toString());
+                    if (rule.type == null)
+                        throw new InvalidDictionaryException(path + " must be one of integer, decimal, boolean, date, datetime or text");
+                    break;
+                case "regex":
+                    try {
+                        rule.regex = Pattern.compile(raw.toString()).matcher("");
+                    } catch (PatternSyntaxException e) {
+                        throw new InvalidDictionaryException(path + " is not a valid regular expression: " + e.getDescription());
+                    }
+                    break;
+                case "maxLength":
+                    if (!(raw instanceof Number) || ((Number) raw).intValue() < 0)
+                        throw new InvalidDictionaryException(path + " must be a number of 0 or more");
+                    rule.maxLength = ((Number) raw).intValue();
+                    break;
+                default:
+                    throw new InvalidDictionaryException(path + " is not a recognized rule");
+            }
+        }
+        return rule;
+    }
+
+
+    /**
+     * @return The rules by column name, in the order given
+     */
+    public Map<String, ColumnRule> getColumns() {
+        return columns;
+    }
+}
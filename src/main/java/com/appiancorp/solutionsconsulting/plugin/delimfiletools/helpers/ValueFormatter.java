@@ -0,0 +1,207 @@
+package com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers;
+
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.exceptions.InvalidDictionaryException;
+import com.appiancorp.suiteapi.type.AppianType;
+import com.appiancorp.suiteapi.type.Datatype;
+import com.appiancorp.suiteapi.type.TypeService;
+import com.appiancorp.suiteapi.type.TypedValue;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.TemporalAccessor;
+
+
+/**
+ * Turns the raw values of one column into the text written to a delimited file. A formatter is compiled once per
+ * column from a FormatSpec and the column's Appian type, then reused for every row of a write.
+ * <p>
+ * Instances keep a scratch buffer and are not thread safe; compile a new set for each write.
+ */
+public class ValueFormatter {
+
+    // Appian's internal day/millisecond counts are relative to 1 January 2035 GMT
+    private static final LocalDate APPIAN_EPOCH_DATE = LocalDate.of(2035, 1, 1);
+    private static final long APPIAN_EPOCH_MILLIS = APPIAN_EPOCH_DATE.atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+    private static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+
+    private static final String DEFAULT_DATE_PATTERN = "yyyy-MM-dd";
+    private static final String DEFAULT_DATE_TIME_PATTERN = "yyyy-MM-dd HH:mm:ss";
+    private static final String DEFAULT_TIME_PATTERN = "HH:mm:ss";
+
+    private enum Kind {DATE, DATE_TIME, TIME, DECIMAL, BOOLEAN, OTHER}
+
+    private final Kind kind;
+    private final ZoneId zone;
+    private final DateTimeFormatter dateFormatter;
+    private final DateTimeFormatter dateTimeFormatter;
+    private final DateTimeFormatter timeFormatter;
+    private final int decimalScale; // -1 leaves decimals as they are
+    private final String trueValue;
+    private final String falseValue;
+    private final String nullValue;
+
+    private final StringBuilder buffer = new StringBuilder(32);
+
+
+    private ValueFormatter(Kind kind, FormatSpec spec) throws InvalidDictionaryException {
+        this.kind = kind;
+        try {
+            this.zone = spec.getTimeZone() == null ? ZoneOffset.UTC : ZoneId.of(spec.getTimeZone());
+        } catch (DateTimeException e) {
+            throw new InvalidDictionaryException("formatSpec.timeZone is not a valid time zone: " + spec.getTimeZone());
+        }
+        this.dateFormatter = toFormatter(spec.getDatePattern(), DEFAULT_DATE_PATTERN, "datePattern");
+        this.dateTimeFormatter = toFormatter(spec.getDateTimePattern(), DEFAULT_DATE_TIME_PATTERN, "dateTimePattern");
+        this.timeFormatter = toFormatter(spec.getTimePattern(), DEFAULT_TIME_PATTERN, "timePattern");
+        this.decimalScale = spec.getDecimalScale() == null ? -1 : spec.getDecimalScale();
+        this.trueValue = spec.getTrueValue() == null ? "true" : spec.getTrueValue();
+        this.falseValue = spec.getFalseValue() == null ? "false" : spec.getFalseValue();
+        this.nullValue = spec.getNullValue() == null ? "" : spec.getNullValue();
+    }
+
+
+    private static DateTimeFormatter toFormatter(String pattern, String defaultPattern, String option) throws InvalidDictionaryException {
+        try {
+            return DateTimeFormatter.ofPattern(pattern == null ? defaultPattern : pattern);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidDictionaryException("formatSpec." + option + " is not a valid pattern: " + e.getMessage());
+        }
+    }
+
+
+    /**
+     * Compiles a formatter for each column
+     *
+     * @param typeService TypeService injected by Appian
+     * @param spec        The user's format options
+     * @param columnNames The column names, as returned by ColumnExtractor.getColumnNames()
+     * @param columnTypes The column types, as returned by ColumnExtractor.getColumnTypes()
+     * @return One formatter per column
+     * @throws InvalidDictionaryException If a pattern or time zone in the spec is invalid
+     */
+    public static ValueFormatter[] compile(TypeService typeService, FormatSpec spec, String[] columnNames, Long[] columnTypes) throws InvalidDictionaryException {
+        ValueFormatter[] formatters = new ValueFormatter[columnNames.length];
+        for (int i = 0; i < columnNames.length; i++)
+            formatters[i] = new ValueFormatter(getKind(typeService, columnTypes[i]), spec.forColumn(columnNames[i]));
+        return formatters;
+    }
+
+
+    private static Kind getKind(TypeService typeService, Long type) {
+        if (type == null) return Kind.OTHER;
+
+        long typeId = type;
+        try {
+            Datatype datatype = typeService.getType(type);
+            if (datatype != null && datatype.isListType() && datatype.getTypeof() != null)
+                typeId = datatype.getTypeof();
+        } catch (Exception ignored) {
+            // Treat unknown types as text
+        }
+
+        if (typeId == AppianType.DATE) return Kind.DATE;
+        if (typeId == AppianType.TIMESTAMP) return Kind.DATE_TIME;
+        if (typeId == AppianType.TIME) return Kind.TIME;
+        if (typeId == AppianType.DOUBLE) return Kind.DECIMAL;
+        if (typeId == AppianType.BOOLEAN) return Kind.BOOLEAN;
+        return Kind.OTHER;
+    }
+
+
+    /**
+     * @param value A raw value from ColumnExtractor.extract()
+     * @return The text to write; lists are written as their formatted items separated by semicolons
+     */
+    public String format(Object value) {
+        if (value == null) return nullValue;
+        if (!(value instanceof Object[])) return formatScalar(value);
+
+        StringBuilder sb = new StringBuilder();
+        Object[] items = (Object[]) value;
+        for (int i = 0; i < items.length; i++) {
+            if (i > 0) sb.append(';');
+            Object item = items[i] instanceof TypedValue ? ((TypedValue) items[i]).getValue() : items[i];
+            sb.append(item == null ? nullValue : formatScalar(item));
+        }
+        return sb.toString();
+    }
+
+
+    private String formatScalar(Object value) {
+        switch (kind) {
+            case DATE:
+                return formatTemporal(dateFormatter, toLocalDate(value), value);
+            case DATE_TIME:
+                return formatTemporal(dateTimeFormatter, toZonedInstant(value), value);
+            case TIME:
+                return formatTemporal(timeFormatter, toLocalTime(value), value);
+            case DECIMAL:
+                return formatDecimal(value);
+            case BOOLEAN:
+                return formatBoolean(value);
+            default:
+                // Untyped (Dictionary) columns: go by the value itself
+                if (value instanceof java.sql.Date) return formatTemporal(dateFormatter, toLocalDate(value), value);
+                if (value instanceof java.sql.Time) return formatTemporal(timeFormatter, toLocalTime(value), value);
+                if (value instanceof java.util.Date) return formatTemporal(dateTimeFormatter, toZonedInstant(value), value);
+                if (value instanceof Double || value instanceof Float || value instanceof BigDecimal) return formatDecimal(value);
+                if (value instanceof Boolean) return formatBoolean(value);
+                return value.toString();
+        }
+    }
+
+
+    private String formatTemporal(DateTimeFormatter formatter, TemporalAccessor temporal, Object original) {
+        if (temporal == null) return original.toString();
+        buffer.setLength(0);
+        formatter.formatTo(temporal, buffer);
+        return buffer.toString();
+    }
+
+
+    private LocalDate toLocalDate(Object value) {
+        if (value instanceof java.sql.Date) return ((java.sql.Date) value).toLocalDate();
+        if (value instanceof java.util.Date) return Instant.ofEpochMilli(((java.util.Date) value).getTime()).atZone(zone).toLocalDate();
+        if (value instanceof Number) return APPIAN_EPOCH_DATE.plusDays(((Number) value).longValue());
+        return null;
+    }
+
+
+    private TemporalAccessor toZonedInstant(Object value) {
+        if (value instanceof java.util.Date) return Instant.ofEpochMilli(((java.util.Date) value).getTime()).atZone(zone);
+        if (value instanceof Number) return Instant.ofEpochMilli(APPIAN_EPOCH_MILLIS + ((Number) value).longValue()).atZone(zone);
+        return null;
+    }
+
+
+    private LocalTime toLocalTime(Object value) {
+        if (value instanceof java.sql.Time) return ((java.sql.Time) value).toLocalTime();
+        if (value instanceof Number) return LocalTime.ofNanoOfDay(Math.floorMod(((Number) value).longValue(), MILLIS_PER_DAY) * 1000000L);
+        return null;
+    }
+
+
+    private String formatDecimal(Object value) {
+        if (decimalScale < 0 || !(value instanceof Number)) return value.toString();
+
+        double d = ((Number) value).doubleValue();
+        if (Double.isNaN(d) || Double.isInfinite(d)) return nullValue;
+
+        BigDecimal decimal = value instanceof BigDecimal ? (BigDecimal) value : BigDecimal.valueOf(d);
+        return decimal.setScale(decimalScale, RoundingMode.HALF_UP).toPlainString();
+    }
+
+
+    private String formatBoolean(Object value) {
+        if (value instanceof Boolean) return (Boolean) value ? trueValue : falseValue;
+        if (value instanceof Number) return ((Number) value).longValue() != 0 ? trueValue : falseValue;
+        return value.toString();
+    }
+}
@@ -0,0 +1,209 @@
+package com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers;
+
+import com.appiancorp.ps.plugins.typetransformer.AppianElement;
+import com.appiancorp.ps.plugins.typetransformer.AppianTypeFactory;
+
+import java.sql.Timestamp;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.util.regex.Pattern;
+
+
+/**
+ * The Appian types a delimited text value can be read as, recognized from its characters alone. Dates are
+ * yyyy-MM-dd and date-times ISO 8601, as Appian writes them.
+ */
+public enum ValueType {
+    INTEGER("integer", "Number (Integer)"),
+    DECIMAL("decimal", "Number (Decimal)"),
+    BOOLEAN("boolean", "Boolean"),
+    DATE("date", "Date"),
+    DATE_TIME("datetime", "Date and Time"),
+    TEXT("text", "Text");
+
+    private static final Pattern DATE_TIME_PATTERN =
+            Pattern.compile("\\d{4}-\\d{2}-\\d{2}[T ]\\d{2}:\\d{2}(:\\d{2}(\\.\\d+)?)?(Z|[+-]\\d{2}:?\\d{2})?");
+
+    private final String key;
+    private final String displayName;
+
+
+    ValueType(String key, String displayName) {
+        this.key = key;
+        this.displayName = displayName;
+    }
+
+
+    /**
+     * @return The short name used in rules, e.g. "integer"
+     */
+    public String getKey() {
+        return key;
+    }
+
+
+    /**
+     * @return The Appian type's name, e.g. "Number (Integer)"
+     */
+    public String getDisplayName() {
+        return displayName;
+    }
+
+
+    /**
+     * @param type Another type
+     * @return True if every value of that type can also be read as this one, e.g. a Decimal accepts any Integer and a
+     * Date and Time accepts a Date (as midnight)
+     */
+    public boolean accepts(ValueType type) {
+        return type == this || this == TEXT || (this == DECIMAL && type == INTEGER) || (this == DATE_TIME && type == DATE);
+    }
+
+
+    /**
+     * @param name A short name or an Appian type name, in any case
+     * @return The type, or null if the name is not recognized
+     */
+    public static ValueType fromName(String name) {
+        for (ValueType type : values())
+            if (type.key.equalsIgnoreCase(name) || type.displayName.equalsIgnoreCase(name)) return type;
+        return null;
+    }
+
+
+    /**
+     * @param value A non-blank, trimmed value
+     * @return The narrowest type the value can be read as
+     */
+    public static ValueType classify(String value) {
+        char first = value.charAt(0);
+        if ((first >= '0' && first <= '9') || first == '-' || first == '+' || first == '.') {
+            ValueType number = classifyNumber(value);
+            if (number != null) return number;
+            if (value.length() == 10 && isDate(value)) return DATE;
+            if (value.length() > 10 && isDate(value) && DATE_TIME_PATTERN.matcher(value).matches()) return DATE_TIME;
+            return TEXT;
+        }
+        if (value.equalsIgnoreCase("true") || value.equalsIgnoreCase("false")) return BOOLEAN;
+        return TEXT;
+    }
+
+
+    /**
+     * Checks that a value can be read as this type. Unlike classify(), this parses dates and date-times, so a day
+     * past the end of its month or an hour past 23 is not accepted.
+     *
+     * @param value A non-blank, trimmed value
+     * @return True if toElement() would read the value
+     */
+    public boolean parses(String value) {
+        if (!accepts(classify(value))) return false;
+        try {
+            if (this == DATE) LocalDate.parse(value);
+            else if (this == DATE_TIME) parseDateTime(value);
+            return true;
+        } catch (DateTimeException e) {
+            return false;
+        }
+    }
+
+
+    /**
+     * Reads a value as this type. Date-times without an offset are read in the server's time zone.
+     *
+     * @param typeFactory An instance of the TypeTransformer's AppianTypeFactory, build using the TypeService injected by Appian
+     * @param value       The value; leading and trailing white space is ignored
+     * @return The Appian value, or a null value of this type if the value is blank
+     * @throws IllegalArgumentException If the value cannot be read as this type
+     */
+    public AppianElement toElement(AppianTypeFactory typeFactory, String value) {
+        String trimmed = value == null ? "" : value.trim();
+        if (this == TEXT) return typeFactory.createString(value);
+        boolean blank = trimmed.isEmpty();
+        if (!blank && !accepts(classify(trimmed))) throw new IllegalArgumentException("Not a valid " + displayName);
+
+        try {
+            switch (this) {
+                case INTEGER:
+                    return typeFactory.createLong(blank ? null : Long.parseLong(trimmed));
+                case DECIMAL:
+                    return typeFactory.createDouble(blank ? null : Double.parseDouble(trimmed));
+                case BOOLEAN:
+                    return typeFactory.createBoolean(blank ? null : Boolean.parseBoolean(trimmed));
+                case DATE:
+                    return typeFactory.createDate(blank ? null : java.sql.Date.valueOf(LocalDate.parse(trimmed)));
+                default:
+                    return typeFactory.createDateTime(blank ? null : parseDateTime(trimmed));
+            }
+        } catch (DateTimeException e) {
+            throw new IllegalArgumentException("Not a valid " + displayName, e);
+        }
+    }
+
+
+    /**
+     * @param value A date or ISO 8601 date-time, as accepted by DATE_TIME
+     */
+    private static Timestamp parseDateTime(String value) {
+        if (value.length() == 10) return Timestamp.valueOf(LocalDate.parse(value).atStartOfDay());
+
+        StringBuilder iso = new StringBuilder(value);
+        iso.setCharAt(10, 'T');
+        int offset = Math.max(iso.indexOf("Z", 11), Math.max(iso.indexOf("+", 11), iso.indexOf("-", 11)));
+        if (offset < 0) return Timestamp.valueOf(LocalDateTime.parse(iso));
+
+        // ISO_OFFSET_DATE_TIME needs the offset's colon
+        if (iso.length() - offset == 5) iso.insert(offset + 3, ':');
+        return Timestamp.from(OffsetDateTime.parse(iso).toInstant());
+    }
+
+
+    /**
+     * @return INTEGER, DECIMAL, or null if the value is not a plain number
+     */
+    private static ValueType classifyNumber(String value) {
+        int i = 0;
+        int length = value.length();
+        if (value.charAt(0) == '-' || value.charAt(0) == '+') i++;
+
+        int digits = 0;
+        boolean point = false;
+        boolean exponent = false;
+        for (; i < length; i++) {
+            char c = value.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits++;
+            } else if (c == '.' && !point && !exponent) {
+                point = true;
+            } else if ((c == 'e' || c == 'E') && digits > 0 && !exponent && i + 1 < length) {
+                exponent = true;
+                if (value.charAt(i + 1) == '-' || value.charAt(i + 1) == '+') i++;
+                if (i + 1 >= length) return null;
+            } else {
+                return null;
+            }
+        }
+        if (digits == 0) return null;
+        return point || exponent || digits > 18 ? DECIMAL : INTEGER;
+    }
+
+
+    /**
+     * @return True if the value starts with a yyyy-MM-dd date whose month and day are in range
+     */
+    private static boolean isDate(String value) {
+        for (int i = 0; i < 10; i++) {
+            char c = value.charAt(i);
+            if (i == 4 || i == 7) {
+                if (c != '-') return false;
+            } else if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        int month = (value.charAt(5) - '0') * 10 + (value.charAt(6) - '0');
+        int day = (value.charAt(8) - '0') * 10 + (value.charAt(9) - '0');
+        return month >= 1 && month <= 12 && day >= 1 && day <= 31;
+    }
+}
@@ -1,6 +1,9 @@
 package com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers;
 
 import com.appiancorp.solutionsconsulting.plugin.delimfiletools.exceptions.InvalidCdtException;
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.exceptions.InvalidDictionaryException;
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers.DelimFileToolsMetrics.Counter;
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers.DelimFileToolsMetrics.Phase;
 import com.appiancorp.suiteapi.common.exceptions.PrivilegeException;
 import com.appiancorp.suiteapi.common.exceptions.StorageLimitException;
 import com.appiancorp.suiteapi.content.ContentConstants;
@@ -15,13 +18,12 @@ import com.opencsv.CSVWriter;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.core.Logger;
 
+import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.Writer;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Set;
 
 
 /**
@@ -86,10 +88,13 @@ public class WriteHelper {
         // Write the file to the FileWriter
         writeDelimFileToWriter(fileWriter, headerRow, rows, separator, quoteChar, applyQuotesToAll, escapeChar, lineEnd);
 
+        // Fails if the file was deleted or permissions changed during writing
+        closeWriterForAppianDocument(contentService, fileWriter, newDoc);
+
         try {
-            closeWriterForAppianDocument(contentService, fileWriter, newDoc);
-        } catch (InvalidContentException | PrivilegeException ignored) {
-            // This could only happen if the file was deleted or permissions changed during writing
+            DelimFileToolsMetrics.add(Counter.BYTES_WRITTEN, new File(contentService.getInternalFilename(newDoc)).length());
+        } catch (InvalidContentException e) {
+            LOG.debug("Could not measure document {} for the metrics: {}", newDoc, e.getMessage());
         }
 
         return newDoc;
@@ -127,6 +132,7 @@ public class WriteHelper {
 
         LOG.debug("Entering writeDelimFileToWriter");
 
+        long start = System.nanoTime();
         if (applyQuotesToAll == null) applyQuotesToAll = false;
 
         // Get a CSVWriter instance, ready for writing to the empty doc
@@ -141,36 +147,32 @@ public class WriteHelper {
 
         // Cleanup
         csvWriter.close();
+
+        DelimFileToolsMetrics.record(Phase.WRITE, start);
+        DelimFileToolsMetrics.add(Counter.ROWS_WRITTEN, rows.size());
     }
 
 
     /**
-     * Takes the first object (Dictionary or CDT) in the sourceObjects and returns the field names, useful for
+     * Returns the column names of the sourceObjects (Dictionary or CDT), in the same order the values are written by
+     * getValueStringsFromSourceObjects. Nested CDT fields are named with dots, e.g. "address.city".
      *
      * @param typeService
      * @param sourceObjects
      * @return
      */
     public static String[] getFieldNamesFromSourceObjects(TypeService typeService, TypedValue sourceObjects) throws Exception {
-        ArrayList<HashMap<TypedValue, TypedValue>> maps = new ArrayList<HashMap<TypedValue, TypedValue>>();
-        try {
-            maps = TypeHelper.toMapList(typeService, sourceObjects);
-        } catch (InvalidCdtException e) {
-            e.printStackTrace();
-        }
+        Object[] rows = ColumnExtractor.getRows(typeService, sourceObjects);
+        ColumnExtractor extractor = ColumnExtractor.forSource(typeService, sourceObjects, rows);
 
-        if (maps.isEmpty()) throw new Exception("sourceObjects was empty");
+        if (extractor == null) throw new Exception("sourceObjects was empty");
 
-        Set<TypedValue> keySet = maps.get(0).keySet();
-        ArrayList<String> fieldNames = new ArrayList<>(keySet.size());
-        for (TypedValue key : keySet) {
-            String fieldName = key.getValue().toString();
-            fieldName = fieldName.replaceAll("[_]", " ");
-            fieldNames.add(fieldName);
-        }
+        String[] header = extractor.getColumnNames();
+        for (int i = 0; i < header.length; i++)
+            header[i] = header[i].replace('_', ' ');
 
-        String[] header = fieldNames.toArray(new String[fieldNames.size()]);
-        LOG.debug("Got header values: " + String.join(", ", header));
+        if (LOG.isDebugEnabled())
+            LOG.debug("Got header values: " + String.join(", ", header));
 
         return header;
     }
@@ -181,35 +183,43 @@ public class WriteHelper {
      *
      * @param typeService
      * @param sourceObjects
+     * @param formatSpec    How to write dates, decimals, booleans and nulls
      * @return
+     * @throws InvalidDictionaryException If the formatSpec contains an invalid pattern or time zone
+     * @throws InvalidCdtException        If the sourceObjects are not a list of Dictionary or CDT
      */
-    public static List<String[]> getValueStringsFromSourceObjects(TypeService typeService, TypedValue sourceObjects) {
-        ArrayList<HashMap<TypedValue, TypedValue>> maps = new ArrayList<HashMap<TypedValue, TypedValue>>();
+    public static List<String[]> getValueStringsFromSourceObjects(TypeService typeService, TypedValue sourceObjects, FormatSpec formatSpec)
+            throws InvalidDictionaryException, InvalidCdtException {
+        long start = System.nanoTime();
+        Object[] rows;
+        ColumnExtractor extractor;
         try {
-            maps = TypeHelper.toMapList(typeService, sourceObjects);
+            rows = ColumnExtractor.getRows(typeService, sourceObjects);
+            extractor = ColumnExtractor.forSource(typeService, sourceObjects, rows);
         } catch (InvalidCdtException e) {
-            e.printStackTrace();
+            LOG.error("Could not read the sourceObjects: " + e.getMessage());
+            throw e;
         }
 
-        LOG.debug(" * Got Map List: count: " + maps.size() + " - " + maps.toString());
+        LOG.debug(" * Got rows: count: {}", rows.length);
 
-        ArrayList<String[]> output = new ArrayList<>();
+        ArrayList<String[]> output = new ArrayList<>(rows.length);
+        if (extractor == null) return output;
 
-        for (HashMap<TypedValue, TypedValue> row : maps) {
-            LOG.debug("   * Got row: value count: " + row.values().size() + " - " + row.toString());
+        ValueFormatter[] formatters = ValueFormatter.compile(typeService, formatSpec, extractor.getColumnNames(), extractor.getColumnTypes());
 
-            ArrayList<String> outRowList = new ArrayList<>();
+        Object[] values = new Object[extractor.getColumnCount()];
+        for (Object row : rows) {
+            extractor.extract(row, values);
 
-            for (TypedValue value : row.values()) {
-                // TODO: Handle gracefully if a nested type or list is passed
-                outRowList.add(value.getValue().toString());
-            }
-
-            String[] stringArray = outRowList.toArray(new String[outRowList.size()]);
+            String[] stringArray = new String[values.length];
+            for (int i = 0; i < values.length; i++)
+                stringArray[i] = formatters[i].format(values[i]);
 
             output.add(stringArray);
         }
 
+        DelimFileToolsMetrics.record(Phase.EXTRACT, start);
         return output;
     }
 
@@ -228,19 +238,36 @@ public class WriteHelper {
      * @throws StorageLimitException               thrown by Appian
      * @throws PrivilegeException                  thrown by Appian
      */
-    private static Long createAppianDocument(ContentService contentService, String docName, String extension, Long saveInFolder) throws InsufficientNameUniquenessException, InvalidContentException, DuplicateUuidException, StorageLimitException, PrivilegeException {
+    static Long createAppianDocument(ContentService contentService, String docName, String extension, Long saveInFolder) throws InsufficientNameUniquenessException, InvalidContentException, DuplicateUuidException, StorageLimitException, PrivilegeException {
         Document doc = new Document();
         doc.setName(docName);
         doc.setExtension(extension);
         doc.setParent(saveInFolder);
 
         Long newDoc = contentService.create(doc, ContentConstants.UNIQUE_NONE);
-        LOG.debug("Created new Appian document, id = " + newDoc);
+        LOG.debug("Created new Appian document, id = {}", newDoc);
 
         return newDoc;
     }
 
 
+    /**
+     * Deletes a document this plugin created but could not finish writing, so no partial output is left behind. A
+     * failure to delete it is logged rather than thrown, so it does not hide the error that made it incomplete.
+     *
+     * @param contentService A ContentService instance injected by Appian
+     * @param document       The Appian Document to delete
+     */
+    static void deleteAppianDocument(ContentService contentService, Long document) {
+        try {
+            contentService.delete(document, true);
+            LOG.debug("Deleted incomplete Appian document, id = {}", document);
+        } catch (Exception e) {
+            LOG.warn("Could not delete the incomplete document {}: {}", document, e.getMessage());
+        }
+    }
+
+
     /**
      * Creates a FileWriter instance for an Appian Document
      *
@@ -250,7 +277,7 @@ public class WriteHelper {
      * @throws InvalidContentException thrown by Appian
      * @throws IOException             if the named file exists but is a directory rather than a regular file, does not exist but cannot be created, or cannot be opened for any other reason
      */
-    private static FileWriter getWriterForAppianDocument(ContentService contentService, Long document) throws InvalidContentException, IOException {
+    static FileWriter getWriterForAppianDocument(ContentService contentService, Long document) throws InvalidContentException, IOException {
         String fileName = contentService.getInternalFilename(document);
         return new FileWriter(fileName);
     }
@@ -266,7 +293,7 @@ public class WriteHelper {
      * @throws PrivilegeException      thrown by Appian
      * @throws IOException             If an I/O error occurs
      */
-    private static void closeWriterForAppianDocument(ContentService contentService, FileWriter writer, Long document) throws InvalidContentException, PrivilegeException, IOException {
+    static void closeWriterForAppianDocument(ContentService contentService, FileWriter writer, Long document) throws InvalidContentException, PrivilegeException, IOException {
         writer.close();
         contentService.setSizeOfDocumentVersion(document);
     }
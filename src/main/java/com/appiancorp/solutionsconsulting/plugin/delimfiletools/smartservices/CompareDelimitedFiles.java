@@ -0,0 +1,314 @@
+package com.appiancorp.solutionsconsulting.plugin.delimfiletools.smartservices;
+
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.exceptions.AdmissionRejectedException;
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.exceptions.InvalidFieldException;
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers.AdmissionController;
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers.ByteBudget;
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers.DelimFileToolsMetrics;
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers.DelimFileToolsMetrics.Counter;
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers.DelimFileToolsMetrics.Phase;
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers.DelimitedDocumentWriter;
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers.DiffHelper;
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers.DiffHelper.DiffResult;
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers.RecordSpill;
+import com.appiancorp.suiteapi.common.Name;
+import com.appiancorp.suiteapi.common.exceptions.PrivilegeException;
+import com.appiancorp.suiteapi.common.exceptions.StorageLimitException;
+import com.appiancorp.suiteapi.content.ContentService;
+import com.appiancorp.suiteapi.content.exceptions.DuplicateUuidException;
+import com.appiancorp.suiteapi.content.exceptions.InsufficientNameUniquenessException;
+import com.appiancorp.suiteapi.content.exceptions.InvalidContentException;
+import com.appiancorp.suiteapi.knowledge.DocumentDataType;
+import com.appiancorp.suiteapi.knowledge.FolderDataType;
+import com.appiancorp.suiteapi.process.exceptions.SmartServiceException;
+import com.appiancorp.suiteapi.process.framework.*;
+import com.appiancorp.suiteapi.process.palette.PaletteInfo;
+import com.opencsv.CSVParserBuilder;
+import com.opencsv.ICSVParser;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.core.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Objects;
+
+
+@PaletteInfo(paletteCategory = "Custom Services", palette = "Delimited File Tools")
+@Order({
+        "oldFile",
+        "newFile",
+        "keyColumns",
+        "hasHeaderRow",
+        "fieldSeparator",
+        "quoteCharacter",
+        "escapeCharacter",
+        "parentFolder",
+        "outputFileName",
+        "lineEndingStyle",
+        "maxMemoryBytes"
+})
+public class CompareDelimitedFiles extends AppianSmartService {
+
+    private static final Logger LOG = (Logger) LogManager.getLogger(CompareDelimitedFiles.class);
+
+    private SmartServiceContext smartServiceCtx;
+    private ContentService contentService;
+
+    private Long oldFile;
+    private Long newFile;
+    private String[] keyColumns;
+    private Boolean hasHeaderRow = true;
+    private String separator;
+    private String quoteChar;
+    private String escapeChar;
+    private Long parentFolder;
+    private String docName;
+    private String lineEndings;
+    private Long maxMemoryBytes;
+
+    private Boolean success;
+    private String errorMessage;
+    private Long outputFile;
+    private Long addedCount;
+    private Long removedCount;
+    private Long changedCount;
+    private Long unchangedCount;
+    private Long duplicateKeyCount;
+
+
+    @Override
+    public void run() throws SmartServiceException {
+        LOG.debug("Running CompareDelimitedFiles");
+
+        long start = System.nanoTime();
+        compareFiles();
+
+        if (Boolean.TRUE.equals(this.success)) {
+            DelimFileToolsMetrics.increment(Counter.DOCUMENTS_WRITTEN);
+            DelimFileToolsMetrics.record(Phase.DIFF, start);
+        } else {
+            DelimFileToolsMetrics.increment(Counter.ERRORS);
+        }
+    }
+
+
+    private void compareFiles() {
+        char cSeparator = this.separator.charAt(0);
+        char cQuoteChar = this.quoteChar.charAt(0);
+        char cEscapeChar = this.escapeChar.charAt(0);
+
+        ICSVParser parser = new CSVParserBuilder()
+                .withSeparator(cSeparator)
+                .withQuoteChar(cQuoteChar)
+                .withEscapeChar(cEscapeChar)
+                .build();
+
+        // Determine line endings from enumeration value
+        String lineEnd = (Objects.equals(this.lineEndings, "dos")) ? "\r\n" : "\n";
+
+        File oldVersion;
+        File newVersion;
+        try {
+            oldVersion = new File(contentService.getInternalFilename(this.oldFile));
+            newVersion = new File(contentService.getInternalFilename(this.newFile));
+        } catch (InvalidContentException e) {
+            this.success = false;
+            this.errorMessage = "Appian returned a InvalidContentException exception: " + e.getLocalizedMessage();
+            return;
+        }
+
+        // The operation holds at most its memory budget, and no more than a few times the size of its files
+        ByteBudget memory = RecordSpill.memoryBudget(this.maxMemoryBytes);
+        long estimatedBytes = Math.min(memory.getLimit(), (oldVersion.length() + newVersion.length()) * 4);
+
+        DelimitedDocumentWriter writer = null;
+        boolean complete = false;
+        try (AdmissionController.Permit ignored = AdmissionController.acquire(estimatedBytes)) {
+            // Find a bad key or header before there is an output document to clean up
+            DiffHelper.checkColumns(oldVersion, newVersion, parser, Boolean.TRUE.equals(this.hasHeaderRow), this.keyColumns);
+
+            writer = new DelimitedDocumentWriter(contentService, this.parentFolder, this.docName, (cSeparator == ',') ? "csv" : "txt",
+                    cSeparator, cQuoteChar, false, cEscapeChar, lineEnd);
+
+            DiffResult result = DiffHelper.diff(oldVersion, newVersion, parser, Boolean.TRUE.equals(this.hasHeaderRow), this.keyColumns,
+                    memory, writer);
+            writer.close();
+            complete = true;
+
+            this.outputFile = writer.getDocumentId();
+            this.addedCount = result.getAdded();
+            this.removedCount = result.getRemoved();
+            this.changedCount = result.getChanged();
+            this.unchangedCount = result.getUnchanged();
+            this.duplicateKeyCount = result.getDuplicateKeys();
+        } catch (AdmissionRejectedException e) {
+            this.success = false;
+            this.errorMessage = e.getLocalizedMessage();
+            return;
+        } catch (InvalidFieldException e) {
+            this.success = false;
+            this.errorMessage = e.getLocalizedMessage();
+            return;
+        } catch (IOException e) {
+            this.success = false;
+            this.errorMessage = "An IOException exception was thrown: " + e.getLocalizedMessage();
+            return;
+        } catch (StorageLimitException e) {
+            this.success = false;
+            this.errorMessage = "Appian returned a StorageLimitException exception: " + e.getLocalizedMessage();
+            return;
+        } catch (InsufficientNameUniquenessException e) {
+            this.success = false;
+            this.errorMessage = "Appian returned a InsufficientNameUniquenessException exception: " + e.getLocalizedMessage();
+            return;
+        } catch (InvalidContentException e) {
+            this.success = false;
+            this.errorMessage = "Appian returned a InvalidContentException exception: " + e.getLocalizedMessage();
+            return;
+        } catch (PrivilegeException e) {
+            this.success = false;
+            this.errorMessage = "Appian returned a PrivilegeException exception: " + e.getLocalizedMessage();
+            return;
+        } catch (DuplicateUuidException e) {
+            this.success = false;
+            this.errorMessage = "Appian returned a DuplicateUuidException exception: " + e.getLocalizedMessage();
+            return;
+        } finally {
+            // An incomplete comparison is not returned, so it is not left behind either
+            if (writer != null && !complete) writer.abort();
+        }
+
+        this.success = true;
+    }
+
+
+    public CompareDelimitedFiles(SmartServiceContext smartServiceCtx, ContentService contentService) {
+        super();
+        this.smartServiceCtx = smartServiceCtx;
+        this.contentService = contentService;
+    }
+
+
+    public void onSave(MessageContainer messages) {
+    }
+
+
+    public void validate(MessageContainer messages) {
+        if (this.separator.length() != 1) messages.addError("Separator", "separator.singlechar");
+        if (this.quoteChar.length() != 1) messages.addError("Quote Character", "quoteChar.singlechar");
+        if (this.escapeChar.length() != 1) messages.addError("Escape Character", "escapeChar.singlechar");
+        if (this.keyColumns == null || this.keyColumns.length == 0) messages.addError("Key Columns", "keyColumns.required");
+    }
+
+
+    @Input(required = Required.ALWAYS)
+    @Name("oldFile")
+    @DocumentDataType
+    public void setOldFile(Long val) {
+        this.oldFile = val;
+    }
+
+    @Input(required = Required.ALWAYS)
+    @Name("newFile")
+    @DocumentDataType
+    public void setNewFile(Long val) {
+        this.newFile = val;
+    }
+
+    @Input(required = Required.ALWAYS)
+    @Name("keyColumns")
+    public void setKeyColumns(String[] val) {
+        this.keyColumns = val;
+    }
+
+    @Input(required = Required.ALWAYS, defaultValue = "true")
+    @Name("hasHeaderRow")
+    public void setHasHeaderRow(Boolean val) {
+        this.hasHeaderRow = val;
+    }
+
+    @Input(required = Required.ALWAYS, defaultValue = ",")
+    @Name("fieldSeparator")
+    public void setSeparator(String val) {
+        this.separator = val;
+    }
+
+    @Input(required = Required.ALWAYS, defaultValue = "\"")
+    @Name("quoteCharacter")
+    public void setQuoteChar(String val) {
+        this.quoteChar = val;
+    }
+
+    @Input(required = Required.ALWAYS, defaultValue = "\\")
+    @Name("escapeCharacter")
+    public void setEscapeChar(String val) {
+        this.escapeChar = val;
+    }
+
+    @Input(required = Required.ALWAYS)
+    @Name("parentFolder")
+    @FolderDataType
+    public void setParentFolder(Long val) {
+        this.parentFolder = val;
+    }
+
+    @Input(required = Required.ALWAYS)
+    @Name("outputFileName")
+    public void setDocName(String val) {
+        this.docName = val;
+    }
+
+    @Input(required = Required.ALWAYS, enumeration = "line-endings", defaultValue = "unix")
+    @Name("lineEndingStyle")
+    public void setLineEndings(String val) {
+        this.lineEndings = val;
+    }
+
+    @Input(required = Required.OPTIONAL)
+    @Name("maxMemoryBytes")
+    public void setMaxMemoryBytes(Long val) {
+        this.maxMemoryBytes = val;
+    }
+
+
+    @Name("success")
+    public Boolean getSuccess() {
+        return this.success;
+    }
+
+    @Name("errorMessage")
+    public String getErrorMessage() {
+        return this.errorMessage;
+    }
+
+    @Name("outputFile")
+    @DocumentDataType
+    public Long getOutputFile() {
+        return this.outputFile;
+    }
+
+    @Name("addedCount")
+    public Long getAddedCount() {
+        return this.addedCount;
+    }
+
+    @Name("removedCount")
+    public Long getRemovedCount() {
+        return this.removedCount;
+    }
+
+    @Name("changedCount")
+    public Long getChangedCount() {
+        return this.changedCount;
+    }
+
+    @Name("unchangedCount")
+    public Long getUnchangedCount() {
+        return this.unchangedCount;
+    }
+
+    @Name("duplicateKeyCount")
+    public Long getDuplicateKeyCount() {
+        return this.duplicateKeyCount;
+    }
+}
@@ -0,0 +1,314 @@
+package com.appiancorp.solutionsconsulting.plugin.delimfiletools.smartservices;
+
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.exceptions.AdmissionRejectedException;
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.exceptions.InvalidFieldException;
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers.AdmissionController;
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers.ByteBudget;
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers.DelimFileToolsMetrics;
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers.DelimFileToolsMetrics.Counter;
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers.DelimFileToolsMetrics.Phase;
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers.DelimitedDocumentWriter;
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers.JoinHelper;
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers.JoinHelper.JoinResult;
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers.RecordSpill;
+import com.appiancorp.suiteapi.common.Name;
+import com.appiancorp.suiteapi.common.exceptions.PrivilegeException;
+import com.appiancorp.suiteapi.common.exceptions.StorageLimitException;
+import com.appiancorp.suiteapi.content.ContentService;
+import com.appiancorp.suiteapi.content.exceptions.DuplicateUuidException;
+import com.appiancorp.suiteapi.content.exceptions.InsufficientNameUniquenessException;
+import com.appiancorp.suiteapi.content.exceptions.InvalidContentException;
+import com.appiancorp.suiteapi.knowledge.DocumentDataType;
+import com.appiancorp.suiteapi.knowledge.FolderDataType;
+import com.appiancorp.suiteapi.process.exceptions.SmartServiceException;
+import com.appiancorp.suiteapi.process.framework.*;
+import com.appiancorp.suiteapi.process.palette.PaletteInfo;
+import com.opencsv.CSVParserBuilder;
+import com.opencsv.ICSVParser;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.core.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Objects;
+
+
+@PaletteInfo(paletteCategory = "Custom Services", palette = "Delimited File Tools")
+@Order({
+        "leftFile",
+        "rightFile",
+        "leftKeyColumns",
+        "rightKeyColumns",
+        "joinType",
+        "hasHeaderRow",
+        "fieldSeparator",
+        "quoteCharacter",
+        "escapeCharacter",
+        "parentFolder",
+        "outputFileName",
+        "lineEndingStyle",
+        "maxMemoryBytes"
+})
+public class JoinDelimitedFiles extends AppianSmartService {
+
+    private static final Logger LOG = (Logger) LogManager.getLogger(JoinDelimitedFiles.class);
+
+    private SmartServiceContext smartServiceCtx;
+    private ContentService contentService;
+
+    private Long leftFile;
+    private Long rightFile;
+    private String[] leftKeyColumns;
+    private String[] rightKeyColumns;
+    private String joinType;
+    private Boolean hasHeaderRow = true;
+    private String separator;
+    private String quoteChar;
+    private String escapeChar;
+    private Long parentFolder;
+    private String docName;
+    private String lineEndings;
+    private Long maxMemoryBytes;
+
+    private Boolean success;
+    private String errorMessage;
+    private Long outputFile;
+    private Long rowsWritten;
+    private Long unmatchedLeftRows;
+
+
+    @Override
+    public void run() throws SmartServiceException {
+        LOG.debug("Running JoinDelimitedFiles");
+
+        long start = System.nanoTime();
+        joinFiles();
+
+        if (Boolean.TRUE.equals(this.success)) {
+            DelimFileToolsMetrics.increment(Counter.DOCUMENTS_WRITTEN);
+            DelimFileToolsMetrics.record(Phase.JOIN, start);
+        } else {
+            DelimFileToolsMetrics.increment(Counter.ERRORS);
+        }
+    }
+
+
+    private void joinFiles() {
+        char cSeparator = this.separator.charAt(0);
+        char cQuoteChar = this.quoteChar.charAt(0);
+        char cEscapeChar = this.escapeChar.charAt(0);
+
+        ICSVParser parser = new CSVParserBuilder()
+                .withSeparator(cSeparator)
+                .withQuoteChar(cQuoteChar)
+                .withEscapeChar(cEscapeChar)
+                .build();
+
+        // Determine line endings from enumeration value
+        String lineEnd = (Objects.equals(this.lineEndings, "dos")) ? "\r\n" : "\n";
+
+        // The right file's key columns default to the left file's names
+        String[] rightKeys = this.rightKeyColumns != null && this.rightKeyColumns.length > 0 ? this.rightKeyColumns : this.leftKeyColumns;
+
+        File left;
+        File right;
+        try {
+            left = new File(contentService.getInternalFilename(this.leftFile));
+            right = new File(contentService.getInternalFilename(this.rightFile));
+        } catch (InvalidContentException e) {
+            this.success = false;
+            this.errorMessage = "Appian returned a InvalidContentException exception: " + e.getLocalizedMessage();
+            return;
+        }
+
+        // The operation holds at most its memory budget, and no more than a few times the size of its files
+        ByteBudget memory = RecordSpill.memoryBudget(this.maxMemoryBytes);
+        long estimatedBytes = Math.min(memory.getLimit(), (left.length() + right.length()) * 4);
+
+        DelimitedDocumentWriter writer = null;
+        boolean complete = false;
+        try (AdmissionController.Permit ignored = AdmissionController.acquire(estimatedBytes)) {
+            // Find a bad key before there is an output document to clean up
+            JoinHelper.checkColumns(left, right, parser, Boolean.TRUE.equals(this.hasHeaderRow), this.leftKeyColumns, rightKeys);
+
+            writer = new DelimitedDocumentWriter(contentService, this.parentFolder, this.docName, (cSeparator == ',') ? "csv" : "txt",
+                    cSeparator, cQuoteChar, false, cEscapeChar, lineEnd);
+
+            JoinResult result = JoinHelper.join(left, right, parser, Boolean.TRUE.equals(this.hasHeaderRow), this.leftKeyColumns, rightKeys,
+                    Objects.equals(this.joinType, "left"), memory, writer);
+            writer.close();
+            complete = true;
+
+            this.outputFile = writer.getDocumentId();
+            this.rowsWritten = result.getRowsWritten();
+            this.unmatchedLeftRows = result.getUnmatchedLeftRows();
+        } catch (AdmissionRejectedException e) {
+            this.success = false;
+            this.errorMessage = e.getLocalizedMessage();
+            return;
+        } catch (InvalidFieldException e) {
+            this.success = false;
+            this.errorMessage = e.getLocalizedMessage();
+            return;
+        } catch (IOException e) {
+            this.success = false;
+            this.errorMessage = "An IOException exception was thrown: " + e.getLocalizedMessage();
+            return;
+        } catch (StorageLimitException e) {
+            this.success = false;
+            this.errorMessage = "Appian returned a StorageLimitException exception: " + e.getLocalizedMessage();
+            return;
+        } catch (InsufficientNameUniquenessException e) {
+            this.success = false;
+            this.errorMessage = "Appian returned a InsufficientNameUniquenessException exception: " + e.getLocalizedMessage();
+            return;
+        } catch (InvalidContentException e) {
+            this.success = false;
+            this.errorMessage = "Appian returned a InvalidContentException exception: " + e.getLocalizedMessage();
+            return;
+        } catch (PrivilegeException e) {
+            this.success = false;
+            this.errorMessage = "Appian returned a PrivilegeException exception: " + e.getLocalizedMessage();
+            return;
+        } catch (DuplicateUuidException e) {
+            this.success = false;
+            this.errorMessage = "Appian returned a DuplicateUuidException exception: " + e.getLocalizedMessage();
+            return;
+        } finally {
+            // An incomplete join is not returned, so it is not left behind either
+            if (writer != null && !complete) writer.abort();
+        }
+
+        this.success = true;
+    }
+
+
+    public JoinDelimitedFiles(SmartServiceContext smartServiceCtx, ContentService contentService) {
+        super();
+        this.smartServiceCtx = smartServiceCtx;
+        this.contentService = contentService;
+    }
+
+
+    public void onSave(MessageContainer messages) {
+    }
+
+
+    public void validate(MessageContainer messages) {
+        if (this.separator.length() != 1) messages.addError("Separator", "separator.singlechar");
+        if (this.quoteChar.length() != 1) messages.addError("Quote Character", "quoteChar.singlechar");
+        if (this.escapeChar.length() != 1) messages.addError("Escape Character", "escapeChar.singlechar");
+        if (this.leftKeyColumns == null || this.leftKeyColumns.length == 0) messages.addError("Left Key Columns", "keyColumns.required");
+        if (this.rightKeyColumns != null && this.rightKeyColumns.length > 0 && this.leftKeyColumns != null && this.rightKeyColumns.length != this.leftKeyColumns.length)
+            messages.addError("Right Key Columns", "keyColumns.samecount");
+    }
+
+
+    @Input(required = Required.ALWAYS)
+    @Name("leftFile")
+    @DocumentDataType
+    public void setLeftFile(Long val) {
+        this.leftFile = val;
+    }
+
+    @Input(required = Required.ALWAYS)
+    @Name("rightFile")
+    @DocumentDataType
+    public void setRightFile(Long val) {
+        this.rightFile = val;
+    }
+
+    @Input(required = Required.ALWAYS)
+    @Name("leftKeyColumns")
+    public void setLeftKeyColumns(String[] val) {
+        this.leftKeyColumns = val;
+    }
+
+    @Input(required = Required.OPTIONAL)
+    @Name("rightKeyColumns")
+    public void setRightKeyColumns(String[] val) {
+        this.rightKeyColumns = val;
+    }
+
+    @Input(required = Required.ALWAYS, enumeration = "join-types", defaultValue = "left")
+    @Name("joinType")
+    public void setJoinType(String val) {
+        this.joinType = val;
+    }
+
+    @Input(required = Required.ALWAYS, defaultValue = "true")
+    @Name("hasHeaderRow")
+    public void setHasHeaderRow(Boolean val) {
+        this.hasHeaderRow = val;
+    }
+
+    @Input(required = Required.ALWAYS, defaultValue = ",")
+    @Name("fieldSeparator")
+    public void setSeparator(String val) {
+        this.separator = val;
+    }
+
+    @Input(required = Required.ALWAYS, defaultValue = "\"")
+    @Name("quoteCharacter")
+    public void setQuoteChar(String val) {
+        this.quoteChar = val;
+    }
+
+    @Input(required = Required.ALWAYS, defaultValue = "\\")
+    @Name("escapeCharacter")
+    public void setEscapeChar(String val) {
+        this.escapeChar = val;
+    }
+
+    @Input(required = Required.ALWAYS)
+    @Name("parentFolder")
+    @FolderDataType
+    public void setParentFolder(Long val) {
+        this.parentFolder = val;
+    }
+
+    @Input(required = Required.ALWAYS)
+    @Name("outputFileName")
+    public void setDocName(String val) {
+        this.docName = val;
+    }
+
+    @Input(required = Required.ALWAYS, enumeration = "line-endings", defaultValue = "unix")
+    @Name("lineEndingStyle")
+    public void setLineEndings(String val) {
+        this.lineEndings = val;
+    }
+
+    @Input(required = Required.OPTIONAL)
+    @Name("maxMemoryBytes")
+    public void setMaxMemoryBytes(Long val) {
+        this.maxMemoryBytes = val;
+    }
+
+
+    @Name("success")
+    public Boolean getSuccess() {
+        return this.success;
+    }
+
+    @Name("errorMessage")
+    public String getErrorMessage() {
+        return this.errorMessage;
+    }
+
+    @Name("outputFile")
+    @DocumentDataType
+    public Long getOutputFile() {
+        return this.outputFile;
+    }
+
+    @Name("rowsWritten")
+    public Long getRowsWritten() {
+        return this.rowsWritten;
+    }
+
+    @Name("unmatchedLeftRows")
+    public Long getUnmatchedLeftRows() {
+        return this.unmatchedLeftRows;
+    }
+}
@@ -0,0 +1,222 @@
+package com.appiancorp.solutionsconsulting.plugin.delimfiletools.smartservices;
+
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.exceptions.InvalidFieldException;
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers.DelimFileToolsMetrics;
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers.DelimFileToolsMetrics.Counter;
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers.DocumentVersion;
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers.MergeHelper;
+import com.appiancorp.suiteapi.common.Name;
+import com.appiancorp.suiteapi.common.exceptions.PrivilegeException;
+import com.appiancorp.suiteapi.common.exceptions.StorageLimitException;
+import com.appiancorp.suiteapi.content.ContentService;
+import com.appiancorp.suiteapi.content.exceptions.DuplicateUuidException;
+import com.appiancorp.suiteapi.content.exceptions.InsufficientNameUniquenessException;
+import com.appiancorp.suiteapi.content.exceptions.InvalidContentException;
+import com.appiancorp.suiteapi.knowledge.DocumentDataType;
+import com.appiancorp.suiteapi.knowledge.FolderDataType;
+import com.appiancorp.suiteapi.process.exceptions.SmartServiceException;
+import com.appiancorp.suiteapi.process.framework.*;
+import com.appiancorp.suiteapi.process.palette.PaletteInfo;
+import com.opencsv.CSVParserBuilder;
+import com.opencsv.ICSVParser;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.core.Logger;
+
+import java.io.IOException;
+import java.util.Objects;
+
+
+@PaletteInfo(paletteCategory = "Custom Services", palette = "Delimited File Tools")
+@Order({
+        "sourceFiles",
+        "hasHeaderRow",
+        "fieldSeparator",
+        "quoteCharacter",
+        "escapeCharacter",
+        "parentFolder",
+        "outputFileName",
+        "lineEndingStyle"
+})
+public class MergeDelimitedFiles extends AppianSmartService {
+
+    private static final Logger LOG = (Logger) LogManager.getLogger(MergeDelimitedFiles.class);
+
+    private SmartServiceContext smartServiceCtx;
+    private ContentService contentService;
+
+    private Long[] sourceFiles;
+    private Boolean hasHeaderRow = true;
+    private String separator;
+    private String quoteChar;
+    private String escapeChar;
+    private Long parentFolder;
+    private String docName;
+    private String lineEndings;
+
+    private Boolean success;
+    private String errorMessage;
+    private Long outputFile;
+
+
+    @Override
+    public void run() throws SmartServiceException {
+        LOG.debug("Running MergeDelimitedFiles");
+
+        mergeFiles();
+
+        if (!Boolean.TRUE.equals(this.success))
+            DelimFileToolsMetrics.increment(Counter.ERRORS);
+    }
+
+
+    private void mergeFiles() {
+        char cSeparator = this.separator.charAt(0);
+
+        ICSVParser parser = new CSVParserBuilder()
+                .withSeparator(cSeparator)
+                .withQuoteChar(this.quoteChar.charAt(0))
+                .withEscapeChar(this.escapeChar.charAt(0))
+                .build();
+
+        // Determine line endings from enumeration value
+        String lineEnd = (Objects.equals(this.lineEndings, "dos")) ? "\r\n" : "\n";
+
+        try {
+            DocumentVersion[] versions = new DocumentVersion[this.sourceFiles.length];
+            for (int i = 0; i < versions.length; i++)
+                versions[i] = DocumentVersion.resolve(contentService, this.sourceFiles[i]);
+
+            // Keep the header of the first file that has one, and leave it out of the rest
+            long[] skipFrom = new long[versions.length];
+            if (Boolean.TRUE.equals(this.hasHeaderRow)) {
+                long[] headerEnds = MergeHelper.checkHeaders(versions, parser);
+                boolean headerKept = false;
+                for (int i = 0; i < versions.length; i++) {
+                    if (versions[i].getSize() == 0) continue;
+                    skipFrom[i] = headerKept ? headerEnds[i] : 0;
+                    headerKept = true;
+                }
+            }
+
+            this.outputFile = MergeHelper.merge(contentService, versions, skipFrom, lineEnd,
+                    this.parentFolder, this.docName, (cSeparator == ',') ? "csv" : "txt");
+        } catch (InvalidFieldException e) {
+            this.success = false;
+            this.errorMessage = e.getLocalizedMessage();
+            return;
+        } catch (IOException e) {
+            this.success = false;
+            this.errorMessage = "An IOException exception was thrown: " + e.getLocalizedMessage();
+            return;
+        } catch (StorageLimitException e) {
+            this.success = false;
+            this.errorMessage = "Appian returned a StorageLimitException exception: " + e.getLocalizedMessage();
+            return;
+        } catch (InsufficientNameUniquenessException e) {
+            this.success = false;
+            this.errorMessage = "Appian returned a InsufficientNameUniquenessException exception: " + e.getLocalizedMessage();
+            return;
+        } catch (InvalidContentException e) {
+            this.success = false;
+            this.errorMessage = "Appian returned a InvalidContentException exception: " + e.getLocalizedMessage();
+            return;
+        } catch (PrivilegeException e) {
+            this.success = false;
+            this.errorMessage = "Appian returned a PrivilegeException exception: " + e.getLocalizedMessage();
+            return;
+        } catch (DuplicateUuidException e) {
+            this.success = false;
+            this.errorMessage = "Appian returned a DuplicateUuidException exception: " + e.getLocalizedMessage();
+            return;
+        }
+
+        this.success = true;
+    }
+
+
+    public MergeDelimitedFiles(SmartServiceContext smartServiceCtx, ContentService contentService) {
+        super();
+        this.smartServiceCtx = smartServiceCtx;
+        this.contentService = contentService;
+    }
+
+
+    public void onSave(MessageContainer messages) {
+    }
+
+
+    public void validate(MessageContainer messages) {
+        if (this.separator.length() != 1) messages.addError("Separator", "separator.singlechar");
+        if (this.quoteChar.length() != 1) messages.addError("Quote Character", "quoteChar.singlechar");
+        if (this.escapeChar.length() != 1) messages.addError("Escape Character", "escapeChar.singlechar");
+        if (this.sourceFiles == null || this.sourceFiles.length == 0) messages.addError("Source Files", "sourceFiles.required");
+    }
+
+
+    @Input(required = Required.ALWAYS)
+    @Name("sourceFiles")
+    @DocumentDataType
+    public void setSourceFiles(Long[] val) {
+        this.sourceFiles = val;
+    }
+
+    @Input(required = Required.ALWAYS, defaultValue = "true")
+    @Name("hasHeaderRow")
+    public void setHasHeaderRow(Boolean val) {
+        this.hasHeaderRow = val;
+    }
+
+    @Input(required = Required.ALWAYS, defaultValue = ",")
+    @Name("fieldSeparator")
+    public void setSeparator(String val) {
+        this.separator = val;
+    }
+
+    @Input(required = Required.ALWAYS, defaultValue = "\"")
+    @Name("quoteCharacter")
+    public void setQuoteChar(String val) {
+        this.quoteChar = val;
+    }
+
+    @Input(required = Required.ALWAYS, defaultValue = "\\")
+    @Name("escapeCharacter")
+    public void setEscapeChar(String val) {
+        this.escapeChar = val;
+    }
+
+    @Input(required = Required.ALWAYS)
+    @Name("parentFolder")
+    @FolderDataType
+    public void setParentFolder(Long val) {
+        this.parentFolder = val;
+    }
+
+    @Input(required = Required.ALWAYS)
+    @Name("outputFileName")
+    public void setDocName(String val) {
+        this.docName = val;
+    }
+
+    @Input(required = Required.ALWAYS, enumeration = "line-endings", defaultValue = "unix")
+    @Name("lineEndingStyle")
+    public void setLineEndings(String val) {
+        this.lineEndings = val;
+    }
+
+
+    @Name("success")
+    public Boolean getSuccess() {
+        return this.success;
+    }
+
+    @Name("errorMessage")
+    public String getErrorMessage() {
+        return this.errorMessage;
+    }
+
+    @Name("outputFile")
+    @DocumentDataType
+    public Long getOutputFile() {
+        return this.outputFile;
+    }
+}
@@ -0,0 +1,254 @@
+package com.appiancorp.solutionsconsulting.plugin.delimfiletools.smartservices;
+
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.exceptions.InvalidFieldException;
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers.DelimFileToolsMetrics;
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers.DelimFileToolsMetrics.Counter;
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers.DocumentVersion;
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers.SplitHelper;
+import com.appiancorp.suiteapi.common.Name;
+import com.appiancorp.suiteapi.common.exceptions.PrivilegeException;
+import com.appiancorp.suiteapi.common.exceptions.StorageLimitException;
+import com.appiancorp.suiteapi.content.ContentService;
+import com.appiancorp.suiteapi.content.exceptions.DuplicateUuidException;
+import com.appiancorp.suiteapi.content.exceptions.InsufficientNameUniquenessException;
+import com.appiancorp.suiteapi.content.exceptions.InvalidContentException;
+import com.appiancorp.suiteapi.knowledge.DocumentDataType;
+import com.appiancorp.suiteapi.knowledge.FolderDataType;
+import com.appiancorp.suiteapi.process.exceptions.SmartServiceException;
+import com.appiancorp.suiteapi.process.framework.*;
+import com.appiancorp.suiteapi.process.palette.PaletteInfo;
+import com.opencsv.CSVParserBuilder;
+import com.opencsv.ICSVParser;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.core.Logger;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+
+@PaletteInfo(paletteCategory = "Custom Services", palette = "Delimited File Tools")
+@Order({
+        "sourceFile",
+        "hasHeaderRow",
+        "includeHeaderRow",
+        "pieceCount",
+        "maxRowsPerPiece",
+        "maxBytesPerPiece",
+        "fieldSeparator",
+        "quoteCharacter",
+        "escapeCharacter",
+        "parentFolder",
+        "outputFileName"
+})
+public class SplitDelimitedFile extends AppianSmartService {
+
+    private static final Logger LOG = (Logger) LogManager.getLogger(SplitDelimitedFile.class);
+
+    private SmartServiceContext smartServiceCtx;
+    private ContentService contentService;
+
+    private Long sourceFile;
+    private Boolean hasHeaderRow = true;
+    private Boolean includeHeaderRow = true;
+    private Long pieceCount;
+    private Long maxRowsPerPiece;
+    private Long maxBytesPerPiece;
+    private String separator;
+    private String quoteChar;
+    private String escapeChar;
+    private Long parentFolder;
+    private String docName;
+
+    private Boolean success;
+    private String errorMessage;
+    private Long[] outputFiles;
+    private Long[] rowCounts;
+
+
+    @Override
+    public void run() throws SmartServiceException {
+        LOG.debug("Running SplitDelimitedFile");
+
+        splitFile();
+
+        if (!Boolean.TRUE.equals(this.success))
+            DelimFileToolsMetrics.increment(Counter.ERRORS);
+    }
+
+
+    private void splitFile() {
+        char cSeparator = this.separator.charAt(0);
+
+        ICSVParser parser = new CSVParserBuilder()
+                .withSeparator(cSeparator)
+                .withQuoteChar(this.quoteChar.charAt(0))
+                .withEscapeChar(this.escapeChar.charAt(0))
+                .build();
+
+        try {
+            DocumentVersion version = DocumentVersion.resolve(contentService, this.sourceFile);
+
+            // The pieces are copied a byte range at a time, so no rows are held in memory
+            List<Long> counts = new ArrayList<>();
+            List<Long> documents = SplitHelper.split(contentService, version, parser,
+                    Boolean.TRUE.equals(this.hasHeaderRow), Boolean.TRUE.equals(this.includeHeaderRow),
+                    this.pieceCount == null ? 0 : (int) Math.min(Integer.MAX_VALUE, this.pieceCount),
+                    this.maxRowsPerPiece == null ? 0 : this.maxRowsPerPiece,
+                    this.maxBytesPerPiece == null ? 0 : this.maxBytesPerPiece,
+                    this.parentFolder, this.docName, (cSeparator == ',') ? "csv" : "txt", counts);
+
+            this.outputFiles = documents.toArray(new Long[0]);
+            this.rowCounts = counts.toArray(new Long[0]);
+        } catch (InvalidFieldException e) {
+            this.success = false;
+            this.errorMessage = e.getLocalizedMessage();
+            return;
+        } catch (IOException e) {
+            this.success = false;
+            this.errorMessage = "An IOException exception was thrown: " + e.getLocalizedMessage();
+            return;
+        } catch (StorageLimitException e) {
+            this.success = false;
+            this.errorMessage = "Appian returned a StorageLimitException exception: " + e.getLocalizedMessage();
+            return;
+        } catch (InsufficientNameUniquenessException e) {
+            this.success = false;
+            this.errorMessage = "Appian returned a InsufficientNameUniquenessException exception: " + e.getLocalizedMessage();
+            return;
+        } catch (InvalidContentException e) {
+            this.success = false;
+            this.errorMessage = "Appian returned a InvalidContentException exception: " + e.getLocalizedMessage();
+            return;
+        } catch (PrivilegeException e) {
+            this.success = false;
+            this.errorMessage = "Appian returned a PrivilegeException exception: " + e.getLocalizedMessage();
+            return;
+        } catch (DuplicateUuidException e) {
+            this.success = false;
+            this.errorMessage = "Appian returned a DuplicateUuidException exception: " + e.getLocalizedMessage();
+            return;
+        }
+
+        this.success = true;
+    }
+
+
+    public SplitDelimitedFile(SmartServiceContext smartServiceCtx, ContentService contentService) {
+        super();
+        this.smartServiceCtx = smartServiceCtx;
+        this.contentService = contentService;
+    }
+
+
+    public void onSave(MessageContainer messages) {
+    }
+
+
+    public void validate(MessageContainer messages) {
+        if (this.separator.length() != 1) messages.addError("Separator", "separator.singlechar");
+        if (this.quoteChar.length() != 1) messages.addError("Quote Character", "quoteChar.singlechar");
+        if (this.escapeChar.length() != 1) messages.addError("Escape Character", "escapeChar.singlechar");
+
+        int limits = 0;
+        for (Long limit : new Long[]{this.pieceCount, this.maxRowsPerPiece, this.maxBytesPerPiece}) {
+            if (limit == null) continue;
+            if (limit < 1) messages.addError("Piece Limit", "pieceLimit.positive");
+            limits++;
+        }
+        if (limits != 1) messages.addError("Piece Limit", "pieceLimit.exactlyone");
+        if (this.pieceCount != null && this.pieceCount > SplitHelper.MAX_PIECES)
+            messages.addError("Piece Count", "pieceCount.max", SplitHelper.MAX_PIECES);
+    }
+
+
+    @Input(required = Required.ALWAYS)
+    @Name("sourceFile")
+    @DocumentDataType
+    public void setSourceFile(Long val) {
+        this.sourceFile = val;
+    }
+
+    @Input(required = Required.ALWAYS, defaultValue = "true")
+    @Name("hasHeaderRow")
+    public void setHasHeaderRow(Boolean val) {
+        this.hasHeaderRow = val;
+    }
+
+    @Input(required = Required.ALWAYS, defaultValue = "true")
+    @Name("includeHeaderRow")
+    public void setIncludeHeaderRow(Boolean val) {
+        this.includeHeaderRow = val;
+    }
+
+    @Input(required = Required.OPTIONAL)
+    @Name("pieceCount")
+    public void setPieceCount(Long val) {
+        this.pieceCount = val;
+    }
+
+    @Input(required = Required.OPTIONAL)
+    @Name("maxRowsPerPiece")
+    public void setMaxRowsPerPiece(Long val) {
+        this.maxRowsPerPiece = val;
+    }
+
+    @Input(required = Required.OPTIONAL)
+    @Name("maxBytesPerPiece")
+    public void setMaxBytesPerPiece(Long val) {
+        this.maxBytesPerPiece = val;
+    }
+
+    @Input(required = Required.ALWAYS, defaultValue = ",")
+    @Name("fieldSeparator")
+    public void setSeparator(String val) {
+        this.separator = val;
+    }
+
+    @Input(required = Required.ALWAYS, defaultValue = "\"")
+    @Name("quoteCharacter")
+    public void setQuoteChar(String val) {
+        this.quoteChar = val;
+    }
+
+    @Input(required = Required.ALWAYS, defaultValue = "\\")
+    @Name("escapeCharacter")
+    public void setEscapeChar(String val) {
+        this.escapeChar = val;
+    }
+
+    @Input(required = Required.ALWAYS)
+    @Name("parentFolder")
+    @FolderDataType
+    public void setParentFolder(Long val) {
+        this.parentFolder = val;
+    }
+
+    @Input(required = Required.ALWAYS)
+    @Name("outputFileName")
+    public void setDocName(String val) {
+        this.docName = val;
+    }
+
+
+    @Name("success")
+    public Boolean getSuccess() {
+        return this.success;
+    }
+
+    @Name("errorMessage")
+    public String getErrorMessage() {
+        return this.errorMessage;
+    }
+
+    @Name("outputFiles")
+    @DocumentDataType
+    public Long[] getOutputFiles() {
+        return this.outputFiles;
+    }
+
+    @Name("rowCounts")
+    public Long[] getRowCounts() {
+        return this.rowCounts;
+    }
+}
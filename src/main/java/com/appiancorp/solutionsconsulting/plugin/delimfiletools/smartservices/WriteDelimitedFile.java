@@ -1,5 +1,13 @@
 package com.appiancorp.solutionsconsulting.plugin.delimfiletools.smartservices;
 
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.exceptions.AdmissionRejectedException;
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.exceptions.InvalidCdtException;
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.exceptions.InvalidDictionaryException;
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers.AdmissionController;
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers.DelimFileToolsMetrics;
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers.DelimFileToolsMetrics.Counter;
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers.DelimFileToolsMetrics.Phase;
+import com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers.FormatSpec;
 import com.appiancorp.solutionsconsulting.plugin.delimfiletools.helpers.WriteHelper;
 import com.appiancorp.suiteapi.common.Name;
 import com.appiancorp.suiteapi.common.exceptions.PrivilegeException;
@@ -35,7 +43,8 @@ import java.util.Objects;
         "quoteCharacter",
         "applyQuotesToAll",
         "escapeCharacter",
-        "lineEndingStyle"
+        "lineEndingStyle",
+        "formatSpec"
 })
 public class WriteDelimitedFile extends AppianSmartService {
 
@@ -56,6 +65,7 @@ public class WriteDelimitedFile extends AppianSmartService {
     private Boolean applyQuotesToAll = false;
     private String escapeChar;
     private String lineEndings;
+    private TypedValue formatSpec;
 
     private Boolean success;
     private String errorMessage;
@@ -66,6 +76,29 @@ public class WriteDelimitedFile extends AppianSmartService {
     public void run() throws SmartServiceException {
         LOG.debug("Running WriteDelimitedFile");
 
+        long start = System.nanoTime();
+
+        // The rows are all held as strings before they are written
+        Object value = this.sourceObjects == null ? null : this.sourceObjects.getValue();
+        long rowCount = value instanceof Object[] ? ((Object[]) value).length : 1;
+
+        try (AdmissionController.Permit ignored = AdmissionController.acquire(AdmissionController.estimateRows(rowCount))) {
+            writeFile();
+        } catch (AdmissionRejectedException e) {
+            this.success = false;
+            this.errorMessage = e.getLocalizedMessage();
+        }
+
+        if (Boolean.TRUE.equals(this.success)) {
+            DelimFileToolsMetrics.increment(Counter.DOCUMENTS_WRITTEN);
+            DelimFileToolsMetrics.record(Phase.WRITE_DOCUMENT, start);
+        } else {
+            DelimFileToolsMetrics.increment(Counter.ERRORS);
+        }
+    }
+
+
+    private void writeFile() {
         char cSeparator = this.separator.toCharArray()[0];
         char cQuoteChar = this.quoteChar.toCharArray()[0];
         char cEscapeChar = this.escapeChar.toCharArray()[0];
@@ -97,7 +130,18 @@ public class WriteDelimitedFile extends AppianSmartService {
             header = null;
 
         // Get the values of each object as strings
-        List<String[]> data = WriteHelper.getValueStringsFromSourceObjects(typeService, sourceObjects);
+        List<String[]> data;
+        try {
+            data = WriteHelper.getValueStringsFromSourceObjects(typeService, sourceObjects, FormatSpec.fromTypedValue(typeService, formatSpec));
+        } catch (InvalidDictionaryException e) {
+            this.success = false;
+            this.errorMessage = "Invalid formatSpec: " + e.getLocalizedMessage();
+            return;
+        } catch (InvalidCdtException e) {
+            this.success = false;
+            this.errorMessage = "Invalid sourceObjects: " + e.getLocalizedMessage();
+            return;
+        }
 
         try {
             this.outputFile = WriteHelper.writeDelimFile(
@@ -230,6 +274,12 @@ public class WriteDelimitedFile extends AppianSmartService {
         this.lineEndings = val;
     }
 
+    @Input(required = Required.OPTIONAL)
+    @Name("formatSpec")
+    public void setFormatSpec(TypedValue val) {
+        this.formatSpec = val;
+    }
+
 
     @Name("success")
     public Boolean getSuccess() {